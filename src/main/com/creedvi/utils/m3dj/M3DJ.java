@@ -1,14 +1,47 @@
 package com.creedvi.utils.m3dj;
 
+import com.creedvi.utils.m3dj.M3DJ_ProgressListener.Stage;
+import com.creedvi.utils.m3dj.io.BufferChunkReader;
+import com.creedvi.utils.m3dj.io.ByteBufferInputStream;
+import com.creedvi.utils.m3dj.io.ChunkIndex;
+import com.creedvi.utils.m3dj.io.ChunkReader;
+import com.creedvi.utils.m3dj.io.ChunkReader.Magic;
+import com.creedvi.utils.m3dj.io.Decompressor;
 import com.creedvi.utils.m3dj.io.IO;
+import com.creedvi.utils.m3dj.io.MappedChunkReader;
+import com.creedvi.utils.m3dj.io.PipelinedChunkReader;
+import com.creedvi.utils.m3dj.io.StreamChunkReader;
 import com.creedvi.utils.m3dj.io.Tracelog;
+import com.creedvi.utils.m3dj.model.M3DJ_Arena;
 import com.creedvi.utils.m3dj.model.M3DJ_Model;
+import com.creedvi.utils.m3dj.model.M3DJ_ModelInfo;
+import com.creedvi.utils.m3dj.model.M3DJ_ModelSnapshot;
+import com.creedvi.utils.m3dj.model.M3DJ_OffHeapModel;
+import com.creedvi.utils.m3dj.model.M3DJ_PackedFaces;
+import com.creedvi.utils.m3dj.model.M3DJ_PackedModel;
+import com.creedvi.utils.m3dj.model.M3DJ_QuantizedBuffer;
+import com.creedvi.utils.m3dj.model.M3DJ_Submesh;
 import com.creedvi.utils.m3dj.model.chunks.*;
 
 import java.io.*;
 import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.zip.*;
 
 import static com.creedvi.utils.m3dj.model.chunks.VariableTypes.VariableType.UNDEFINED;
@@ -16,20 +49,63 @@ import static com.creedvi.utils.m3dj.model.chunks.M3DJ_Property.*;
 
 public class M3DJ {
 
+    /**
+     * Flags selecting chunks the parser should skip rather than decode. Flags may be combined with '|'.
+     */
+    public static class LoadOptions {
+        public final static int
+            LOAD_ALL = 0,
+            SKIP_PREVIEW = 1,
+            SKIP_TEXTURE_MAP = 1 << 1,
+            SKIP_MATERIALS = 1 << 2,
+            SKIP_SKELETON = 1 << 3,
+            SKIP_ANIMATION = 1 << 4,
+            SKIP_LABELS = 1 << 5,
+            SKIP_SHAPES = 1 << 6,
+            SKIP_PROCEDURAL = 1 << 7,
+            SKIP_VOXELS = 1 << 8,
+            SKIP_ASSETS = 1 << 9;
+
+        public final static int
+            NO_ANIMATION = SKIP_SKELETON | SKIP_ANIMATION,
+            GEOMETRY_ONLY = SKIP_PREVIEW | SKIP_TEXTURE_MAP | SKIP_MATERIALS | SKIP_SKELETON | SKIP_ANIMATION |
+                            SKIP_LABELS | SKIP_SHAPES | SKIP_PROCEDURAL | SKIP_ASSETS;
+    }
+
     public static final int M3D_UNDEF = -1;
     public static final int M3D_NUMBONE = 4;
 
     private final int MAGIC_LENGTH = 4;
     private final int M3D_BONEMAXLEVEL = 64;
+    private final int STREAM_BUFFER_SIZE = 8 * 1024;
+    private final int MESH_PARALLEL_THRESHOLD = 256 * 1024;
+    private final int MESH_TASK_FACES = 16 * 1024;
+    private final int VISIT_BATCH = 4 * 1024;
+    // Elements decoded on the heap before they are copied into the buffers of an off-heap model.
+    private final int OFF_HEAP_BATCH = 4 * 1024;
 
     private boolean DEBUG = false;
     private boolean VERTEX_MAX = false;
+    private boolean MEMORY_MAP = false;
+    private boolean PIPELINE = false;
+    private boolean PARALLEL = false;
+    private boolean SPLIT_SUBMESHES = false;
+    private boolean QUANTIZED = false;
+    private int LOAD_OPTIONS = LoadOptions.LOAD_ALL;
+
+    // Per-load state. Loads run on a snapshot of the parser (see Snapshot), so these only ever describe one load.
     private boolean CMAP_Loaded = false;
     private boolean TMAP_Loaded = false;
     private boolean VRTS_Loaded = false;
     private boolean BONE_Loaded = false;
     private boolean VOXT_Loaded = false;
+    // Future of an asynchronous load, checked between chunks so a cancelled load stops early.
+    private CompletableFuture<?> task = null;
+    // Leased on the load's first inflate and held until M3DJ_Release, so nested loads cannot reset it.
+    private Decompressor decompressor = null;
 
+    // Shared by every parser for asynchronous loads started without an executor.
+    private static ExecutorService asyncExecutor;
 
     private Tracelog logger;
 
@@ -51,16 +127,134 @@ public class M3DJ {
         this.logger = new Tracelog(verbosity);
     }
 
+    /**
+     * Copies the configuration of another parser, with fresh per-load state.
+     */
+    private M3DJ(M3DJ parser) {
+        this.logger = parser.logger;
+        this.DEBUG = parser.DEBUG;
+        this.VERTEX_MAX = parser.VERTEX_MAX;
+        this.MEMORY_MAP = parser.MEMORY_MAP;
+        this.PIPELINE = parser.PIPELINE;
+        this.PARALLEL = parser.PARALLEL;
+        this.SPLIT_SUBMESHES = parser.SPLIT_SUBMESHES;
+        this.QUANTIZED = parser.QUANTIZED;
+        this.LOAD_OPTIONS = parser.LOAD_OPTIONS;
+    }
+
+    /**
+     * Every load runs on its own snapshot of the parser, which holds the state of that load alone.
+     * A configured parser is therefore never modified by loading and can serve any number of loads at once;
+     * reconfiguring it only affects loads started afterwards.
+     * @return Copy of the parser's current configuration with fresh per-load state.
+     */
+    synchronized M3DJ Snapshot() {
+        return new M3DJ(this);
+    }
+
+    /**
+     * @return Log the parser writes to, shared with helpers that load through it.
+     */
+    Tracelog GetLogger() {
+        return logger;
+    }
+
+    /**
+     * @return Decompressor leased by this load, acquired on first use.
+     */
+    private Decompressor GetDecompressor() {
+        if (decompressor == null) {
+            decompressor = Decompressor.Acquire();
+        }
+        return decompressor;
+    }
+
+    /**
+     * Ends a load, handing its decompressor back to the thread. Data the load inflated without detaching it,
+     * such as a body returned by M3DJ_ReadBody, must not be read afterwards.
+     */
+    void M3DJ_Release() {
+        if (decompressor != null) {
+            decompressor.Release();
+            decompressor = null;
+        }
+    }
+
 
     /**
      * Set to configure the parser to evaluate vertex maximums.
      * Default is disabled.
      * @param b true enables maximum parsing; false disables maximum parsing.
      */
-    public void EnableVertexMax(boolean b) {
+    public synchronized void EnableVertexMax(boolean b) {
         VERTEX_MAX = b;
     }
 
+    /**
+     * Set to configure the parser to memory-map model files rather than reading them onto the heap.
+     * Uncompressed models are then parsed directly from the mapped pages.
+     * Default is disabled.
+     * @param b true enables memory mapping; false disables memory mapping.
+     */
+    public synchronized void EnableMemoryMapping(boolean b) {
+        MEMORY_MAP = b;
+    }
+
+    /**
+     * Set to configure the parser to inflate compressed models on a background thread while chunks that have
+     * already been inflated are decoded, rather than inflating the whole model before decoding begins.
+     * Default is disabled.
+     * @param b true enables pipelined loading; false disables pipelined loading.
+     */
+    public synchronized void EnablePipelining(boolean b) {
+        PIPELINE = b;
+    }
+
+    /**
+     * Set to configure the parser to decode independent chunks of a model concurrently on the common fork-join
+     * pool. Chunks are located first and then decoded in dependency order: the colour map and texture map first,
+     * vertices and materials once the colour map is available, and meshes once all materials are known.
+     * Pipelined loading takes precedence for compressed models when both are enabled.
+     * Default is disabled.
+     * @param b true enables parallel decoding; false disables parallel decoding.
+     */
+    public synchronized void EnableParallelDecoding(boolean b) {
+        PARALLEL = b;
+    }
+
+    /**
+     * Set to configure the parser to split the faces of packed models into submeshes that can be drawn with
+     * 16-bit indices from a per-submesh base vertex. Submeshes follow material runs and are split further
+     * wherever their vertices would span more than M3DJ_Submesh.MAX_VERTICES.
+     * Default is disabled.
+     * @param b true enables submesh splitting; false disables submesh splitting.
+     */
+    public synchronized void EnableSubmeshSplitting(boolean b) {
+        SPLIT_SUBMESHES = b;
+    }
+
+    /**
+     * Set to configure the parser to keep INT8 and INT16 vertex positions and texture coordinates of packed
+     * models in their quantized form, rather than expanding them to float. M3DJ_PackedModel then dequantizes them
+     * on access. Skin weights are not decoded by this parser and are unaffected.
+     * Default is disabled.
+     * @param b true enables quantized residency; false disables quantized residency.
+     */
+    public synchronized void EnableQuantizedResidency(boolean b) {
+        QUANTIZED = b;
+    }
+
+    /**
+     * Set to configure which chunks the parser skips. Skipped chunks are passed over without reading their
+     * payload, by seeking where the source allows it.
+     * The colour map and vertex data are always loaded, as other chunks depend on them.
+     * Default is LoadOptions.LOAD_ALL.
+     * @param options Combination of LoadOptions flags.
+     */
+    public synchronized void SetLoadOptions(int options) {
+        LOAD_OPTIONS = options;
+    }
+
     /**
      * Loads a 3D model from an M3D format file (.m3d, .a3d).
      * @param fileName String path to the file location.
@@ -68,729 +262,2351 @@ public class M3DJ {
      * @throws IOException if the file fails to load into memory.
      */
     public M3DJ_Model LoadFile(String fileName) throws IOException {
-        M3DJ_Model result = new M3DJ_Model();
-        int fileSize;
+        return Snapshot().M3DJ_LoadFile(fileName, new M3DJ_Model());
+    }
+
+    /**
+     * Loads a 3D model from an M3D format file (.m3d, .a3d) into packed primitive arrays.
+     * Vertices, the colour map and the texture map are stored without allocating an object per element.
+     * @param fileName String path to the file location.
+     * @return Packed model specified by the given file.
+     * @throws IOException if the file fails to load into memory.
+     */
+    public M3DJ_PackedModel LoadFilePacked(String fileName) throws IOException {
+        M3DJ load = Snapshot();
+        return load.SplitSubmeshes((M3DJ_PackedModel) load.M3DJ_LoadFile(fileName, new M3DJ_PackedModel()));
+    }
 
-        CMAP_Loaded = false;
-        TMAP_Loaded = false;
-        VRTS_Loaded = false;
-        BONE_Loaded = false;
-        VOXT_Loaded = false;
+    /**
+     * Loads a binary M3D model into off-heap buffers allocated from the given arena.
+     * Vertices, the colour map, the texture map and the face streams are decoded straight into the arena's
+     * buffers, so they take no heap space, and are freed when the arena is closed. The file is read through
+     * long offsets, one mapped window at a time, so files over 2 GiB can be loaded; every chunk and every decoded
+     * buffer must still be smaller than 2 GiB. Chunks are decoded sequentially.
+     * Buffers allocated by a load that fails stay in the arena until it is closed.
+     * @param fileName String path to the file location.
+     * @param arena Arena that owns the model's buffers.
+     * @return Off-heap model specified by the given file, or null if the file is not a valid binary M3D model.
+     * @throws IOException if the file cannot be read.
+     */
+    public M3DJ_OffHeapModel LoadFileOffHeap(String fileName, M3DJ_Arena arena) throws IOException {
+        return (M3DJ_OffHeapModel) Snapshot().M3DJ_LoadMapped(fileName, new M3DJ_OffHeapModel(arena));
+    }
+
+    /**
+     * Loads a 3D model from an M3D format file (.m3d, .a3d) on a shared pool of daemon threads.
+     * @see #LoadFileAsync(String, Executor)
+     * @param fileName String path to the file location.
+     * @return Future completed with the model specified by the given file.
+     */
+    public CompletableFuture<M3DJ_Model> LoadFileAsync(String fileName) {
+        return LoadFileAsync(fileName, GetAsyncExecutor());
+    }
+
+    /**
+     * Loads a 3D model from an M3D format file (.m3d, .a3d) on the given executor.
+     * The future is completed with the model, with null if the file is not a valid model, or exceptionally with
+     * the IOException that made the load fail. Cancelling the future stops the load before its next chunk is
+     * decoded, so an abandoned load does not keep its thread busy until the end of the file.
+     * @param fileName String path to the file location.
+     * @param executor Executor the load runs on.
+     * @return Future completed with the model specified by the given file.
+     */
+    public CompletableFuture<M3DJ_Model> LoadFileAsync(String fileName, Executor executor) {
+        M3DJ load = Snapshot();
+        CompletableFuture<M3DJ_Model> result = new CompletableFuture<>();
+        load.task = result;
+
+        try {
+            executor.execute(() -> {
+                // Cancelled while still queued.
+                if (result.isDone()) {
+                    return;
+                }
+                try {
+                    result.complete(load.M3DJ_LoadFile(fileName, new M3DJ_Model()));
+                }
+                catch (Throwable e) {
+                    result.completeExceptionally(e);
+                }
+            });
+        }
+        catch (RejectedExecutionException e) {
+            result.completeExceptionally(e);
+        }
+
+        return result;
+    }
+
+    private static synchronized Executor GetAsyncExecutor() {
+        if (asyncExecutor == null) {
+            asyncExecutor = Executors.newCachedThreadPool(runnable -> {
+                Thread thread = new Thread(runnable, "M3DJ-Load");
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+        return asyncExecutor;
+    }
+
+    /**
+     * @return true if the load runs asynchronously and its future has been cancelled.
+     */
+    private boolean IsCancelled() {
+        if (task != null && task.isCancelled()) {
+            logger.out(Tracelog.LogType.LOG_INFO, "Load cancelled. Returning null object...");
+            return true;
+        }
+        return false;
+    }
 
+    M3DJ_Model M3DJ_LoadFile(String fileName, M3DJ_Model model) throws IOException {
         if (fileName.substring(fileName.lastIndexOf(".")).equalsIgnoreCase(".m3d") ||
             fileName.substring(fileName.lastIndexOf(".")).equalsIgnoreCase(".a3d")) {
-            ByteBuffer fileData = ByteBuffer.wrap(IO.LoadFileData(fileName));
-            fileData.order(ByteOrder.LITTLE_ENDIAN);
+            if (Files.size(Paths.get(fileName)) > Integer.MAX_VALUE) {
+                // Too large to be held in a single buffer.
+                return M3DJ_LoadMapped(fileName, model);
+            }
+
+            return M3DJ_LoadData(ReadFileData(fileName), model);
+        }
+
+        return model;
+    }
 
-            StringBuilder magic = new StringBuilder();
-            for (int i = 0; i < MAGIC_LENGTH; i++) {
-                magic.append((char) (fileData.get()));
+    /**
+     * Reads a model file into memory so it can be decoded later by M3DJ_LoadData, letting reading and decoding
+     * run on different threads.
+     * @return The file's data, or null if the file has to be loaded through M3DJ_LoadFile instead.
+     */
+    ByteBuffer M3DJ_ReadFile(String fileName) throws IOException {
+        if (fileName.substring(fileName.lastIndexOf(".")).equalsIgnoreCase(".m3d") ||
+            fileName.substring(fileName.lastIndexOf(".")).equalsIgnoreCase(".a3d")) {
+            if (Files.size(Paths.get(fileName)) <= Integer.MAX_VALUE) {
+                return ReadFileData(fileName);
             }
+        }
+        return null;
+    }
+
+    /**
+     * Locates the chunks of a binary model file held in memory, inflating them if the body is compressed.
+     * The preview is copied into the model.
+     * @return Buffer positioned at the header chunk and ending after the end chunk, or null if the data is not a
+     * binary model. A decompressed body is held by this load's decompressor and is only valid until M3DJ_Release.
+     */
+    ByteBuffer M3DJ_ReadBody(ByteBuffer fileData, M3DJ_Model model) {
+        fileData = fileData.duplicate().order(ByteOrder.LITTLE_ENDIAN);
+        if (fileData.remaining() < ChunkReader.HEADER_LENGTH || ChunkReader.ReadMagic(fileData, fileData.position()) != Magic.BINARY) {
+            logger.out(Tracelog.LogType.LOG_WARNING, "Bad magic identified. Returning null object.");
+            return null;
+        }
+        fileData.position(fileData.position() + ChunkReader.HEADER_LENGTH);
+
+        M3DJ_ReadPreview(fileData, model);
+
+        if (ChunkReader.ReadMagic(fileData, fileData.position()) != Magic.HEAD) {
+            fileData = DecompressDataBuffer(fileData.slice(fileData.position(), fileData.remaining()), false);
+        }
+        return fileData;
+    }
+
+    /**
+     * Decodes a whole model file held in memory.
+     */
+    M3DJ_Model M3DJ_LoadData(ByteBuffer fileData, M3DJ_Model model) throws IOException {
+        int fileSize;
+
+        int magic = fileData.remaining() < MAGIC_LENGTH ? 0 : ChunkReader.ReadMagic(fileData, fileData.position());
+        fileData.position(fileData.position() + Math.min(MAGIC_LENGTH, fileData.remaining()));
 
-            if (magic.toString().equals("3DMO")) {
-                fileSize = fileData.getInt();
-                logger.out(Tracelog.LogType.LOG_INFO, "Binary magic found. File size: " + fileSize + "B");
-                result = M3DJ_LoadBinary(fileData);
+        if (magic == Magic.BINARY) {
+            fileSize = fileData.getInt();
+            logger.out(Tracelog.LogType.LOG_INFO, "Binary magic found. File size: " + fileSize + "B");
+            try {
+                return M3DJ_LoadBinary(fileData, model);
             }
-            else if (magic.toString().equals("3dmo")) {
-                fileSize = fileData.getInt();
-                logger.out(Tracelog.LogType.LOG_INFO, "ASCII magic found. File size: " + fileSize + "B");
-                logger.out(Tracelog.LogType.LOG_WARNING, "ASCII parsing is not supported at this time! Object returned will be null...");
-                result = M3DJ_LoadAscii(fileData);
+            finally {
+                M3DJ_Release();
             }
-            else {
-                logger.out(Tracelog.LogType.LOG_WARNING, "Bad magic identified. Returning null object.");
+        }
+        else if (magic == Magic.ASCII) {
+            fileSize = fileData.getInt();
+            logger.out(Tracelog.LogType.LOG_INFO, "ASCII magic found. File size: " + fileSize + "B");
+            logger.out(Tracelog.LogType.LOG_WARNING, "ASCII parsing is not supported at this time! Object returned will be null...");
+            return M3DJ_LoadAscii(fileData);
+        }
+        else {
+            logger.out(Tracelog.LogType.LOG_WARNING, "Bad magic identified. Returning null object.");
+            return null;
+        }
+    }
+
+    /**
+     * Loads a binary M3D model incrementally from a stream.
+     * Chunks are decoded as soon as their bytes arrive and compressed bodies are inflated on the fly,
+     * so the model never has to be staged in memory as a whole.
+     * The stream is read up to the end chunk and is not closed.
+     * @param stream Stream positioned at the start of the model file.
+     * @return M3DJ object of the model read from the stream.
+     * @throws IOException if reading from the stream fails.
+     */
+    public M3DJ_Model LoadStream(InputStream stream) throws IOException {
+        return Snapshot().M3DJ_LoadStream(stream, new M3DJ_Model());
+    }
+
+    /**
+     * Loads a binary M3D model incrementally from a stream into packed primitive arrays.
+     * The stream is read up to the end chunk and is not closed.
+     * @param stream Stream positioned at the start of the model file.
+     * @return Packed model read from the stream.
+     * @throws IOException if reading from the stream fails.
+     */
+    public M3DJ_PackedModel LoadStreamPacked(InputStream stream) throws IOException {
+        M3DJ load = Snapshot();
+        return load.SplitSubmeshes((M3DJ_PackedModel) load.M3DJ_LoadStream(stream, new M3DJ_PackedModel()));
+    }
+
+    /**
+     * Clears the given model and loads an M3D format file into it, reusing its storage.
+     * Element objects and packed arrays of the previous load are refilled in place and only grow when the new
+     * model needs more of them, so reloading an asset allocates little beyond the file data and strings.
+     * The model's type selects the representation, as with LoadFile, LoadFilePacked and LoadFileOffHeap.
+     * @param model Model to reload. Elements taken from it beforehand must no longer be used.
+     * @param fileName String path to the file location.
+     * @return The given model, or null if the file could not be loaded; the model is then left incomplete.
+     * @throws IOException if the file fails to load into memory.
+     */
+    public M3DJ_Model LoadInto(M3DJ_Model model, String fileName) throws IOException {
+        M3DJ load = Snapshot();
+        model.Clear();
+        return load.SplitSubmeshes(load.M3DJ_LoadFile(fileName, model));
+    }
+
+    /**
+     * Clears the given model and loads a binary M3D model from a stream into it, reusing its storage.
+     * The stream is read up to the end chunk and is not closed.
+     * @see #LoadInto(M3DJ_Model, String)
+     * @param model Model to reload. Elements taken from it beforehand must no longer be used.
+     * @param stream Stream positioned at the start of the model file.
+     * @return The given model, or null if the stream could not be loaded; the model is then left incomplete.
+     * @throws IOException if reading from the stream fails.
+     */
+    public M3DJ_Model LoadInto(M3DJ_Model model, InputStream stream) throws IOException {
+        M3DJ load = Snapshot();
+        model.Clear();
+        return load.SplitSubmeshes(load.M3DJ_LoadStream(stream, model));
+    }
+
+    private M3DJ_Model SplitSubmeshes(M3DJ_Model model) {
+        if (model instanceof M3DJ_PackedModel packed) {
+            return SplitSubmeshes(packed);
+        }
+        return model;
+    }
+
+    private M3DJ_PackedModel SplitSubmeshes(M3DJ_PackedModel model) {
+        if (SPLIT_SUBMESHES && model != null) {
+            model.submeshes = model.packedFaces.BuildSubmeshes(M3DJ_Submesh.MAX_VERTICES);
+        }
+        return model;
+    }
+
+    private M3DJ_Model M3DJ_LoadStream(InputStream stream, M3DJ_Model model) throws IOException {
+        try {
+            return M3DJ_ReadStream(stream, model);
+        }
+        finally {
+            M3DJ_Release();
+        }
+    }
+
+    private M3DJ_Model M3DJ_ReadStream(InputStream stream, M3DJ_Model model) throws IOException {
+        byte[] header = new byte[ChunkReader.HEADER_LENGTH];
+
+        if (StreamChunkReader.ReadFully(stream, header, 0, header.length) < header.length) {
+            logger.out(Tracelog.LogType.LOG_WARNING, "Bad magic identified. Returning null object.");
+            return null;
+        }
+
+        int magic = ChunkReader.ReadMagic(header, 0);
+        int fileSize = ChunkReader.ReadInt(header, MAGIC_LENGTH);
+
+        if (magic == Magic.ASCII) {
+            logger.out(Tracelog.LogType.LOG_INFO, "ASCII magic found. File size: " + fileSize + "B");
+            logger.out(Tracelog.LogType.LOG_WARNING, "ASCII parsing is not supported at this time! Object returned will be null...");
+            return null;
+        }
+        else if (magic != Magic.BINARY) {
+            logger.out(Tracelog.LogType.LOG_WARNING, "Bad magic identified. Returning null object.");
+            return null;
+        }
+        logger.out(Tracelog.LogType.LOG_INFO, "Binary magic found. File size: " + fileSize + "B");
+
+        StreamChunkReader.ReadExactly(stream, header, 0, MAGIC_LENGTH);
+        magic = ChunkReader.ReadMagic(header, 0);
+
+        if (magic == Magic.PRVW) {
+            StreamChunkReader.ReadExactly(stream, header, MAGIC_LENGTH, Integer.BYTES);
+            int chunkSize = ChunkReader.ReadInt(header, MAGIC_LENGTH) - ChunkReader.HEADER_LENGTH;
+
+            if (chunkSize < 0) {
+                logger.out(Tracelog.LogType.LOG_WARNING, "Bad data found. Invalid preview chunk size. Returning null object...");
                 return null;
             }
+            if (IsChunkWanted(magic)) {
+                // Read before allocating, so a corrupt size allocates no more than the stream holds.
+                byte[] image = stream.readNBytes(chunkSize);
+                if (image.length < chunkSize) {
+                    throw new EOFException("Unexpected end of model stream.");
+                }
+                model.preview.allocateImageBuffer(chunkSize);
+                model.preview.imageData.put(0, image);
+            }
+            else {
+                stream.skipNBytes(chunkSize);
+            }
+
+            StreamChunkReader.ReadExactly(stream, header, 0, MAGIC_LENGTH);
+            magic = ChunkReader.ReadMagic(header, 0);
+        }
+
+        // The magic we just consumed belongs to the body, so it is pushed back in front of the stream.
+        InputStream body = new SequenceInputStream(new ByteArrayInputStream(header, 0, MAGIC_LENGTH), stream);
+
+        if (magic != Magic.HEAD) {
+            logger.out(Tracelog.LogType.LOG_INFO, "Failed to identify header; assuming compressed data and attempting to decompress...");
+            body = new InflaterInputStream(body, GetDecompressor().GetInflater(), STREAM_BUFFER_SIZE);
+        }
+
+        if (PIPELINE) {
+            return M3DJ_LoadChunks(new PipelinedChunkReader(body, PipelinedChunkReader.DEFAULT_RING_SIZE, this::IsChunkWanted), model);
+        }
+        return M3DJ_LoadChunks(new StreamChunkReader(body, this::IsChunkWanted), model);
+    }
+
+    /**
+     * Loads a binary M3D model incrementally from a channel.
+     * @see #LoadStream(InputStream)
+     * @param channel Channel positioned at the start of the model file.
+     * @return M3DJ object of the model read from the channel.
+     * @throws IOException if reading from the channel fails.
+     */
+    public M3DJ_Model LoadChannel(ReadableByteChannel channel) throws IOException {
+        return LoadStream(Channels.newInputStream(channel));
+    }
+
+    /**
+     * Decodes an M3D format file, passing its contents to the given visitor instead of building a model.
+     * Vertices, the colour map, the texture map and faces are handed over in batches and are never held by the
+     * parser as a whole. Chunks are decoded sequentially even with parallel decoding enabled, so the visitor is
+     * called in file order.
+     * @param fileName String path to the file location.
+     * @param visitor Visitor receiving the model's contents.
+     * @return true if the whole model was read; false if it is not a valid binary M3D model.
+     * @throws IOException if the file fails to load into memory.
+     */
+    public boolean Visit(String fileName, M3DJ_Visitor visitor) throws IOException {
+        return Snapshot().M3DJ_LoadFile(fileName, new VisitedModel(visitor)) != null;
+    }
+
+    /**
+     * Decodes a binary M3D model from a stream, passing its contents to the given visitor.
+     * The stream is read up to the end chunk and is not closed.
+     * @see #Visit(String, M3DJ_Visitor)
+     * @param stream Stream positioned at the start of the model file.
+     * @param visitor Visitor receiving the model's contents.
+     * @return true if the whole model was read; false if it is not a valid binary M3D model.
+     * @throws IOException if reading from the stream fails.
+     */
+    public boolean Visit(InputStream stream, M3DJ_Visitor visitor) throws IOException {
+        return Snapshot().M3DJ_LoadStream(stream, new VisitedModel(visitor)) != null;
+    }
+
+    /**
+     * Loads an M3D format file, reporting each part of the model to the listener as soon as it can be used: the
+     * preview, the header, the geometry, then materials, the skeleton and animations (see M3DJ_ProgressListener).
+     * Chunks are decoded sequentially even with parallel decoding enabled, so stages are reported as early as
+     * the file's layout allows.
+     * @param fileName String path to the file location.
+     * @param listener Listener receiving a snapshot of the model at each stage.
+     * @return M3DJ object of the loaded file.
+     * @throws IOException if the file fails to load into memory.
+     */
+    public M3DJ_Model LoadFileProgressive(String fileName, M3DJ_ProgressListener listener) throws IOException {
+        return Snapshot().M3DJ_LoadFile(fileName, new ProgressiveModel(listener));
+    }
+
+    /**
+     * Loads a binary M3D model from a stream, reporting each part of the model to the listener as soon as its
+     * chunks have arrived. The stream is read up to the end chunk and is not closed.
+     * @see #LoadFileProgressive(String, M3DJ_ProgressListener)
+     * @param stream Stream positioned at the start of the model file.
+     * @param listener Listener receiving a snapshot of the model at each stage.
+     * @return M3DJ object of the model read from the stream.
+     * @throws IOException if reading from the stream fails.
+     */
+    public M3DJ_Model LoadStreamProgressive(InputStream stream, M3DJ_ProgressListener listener) throws IOException {
+        return Snapshot().M3DJ_LoadStream(stream, new ProgressiveModel(listener));
+    }
+
+    /**
+     * Opens a binary M3D model for lazy decoding.
+     * Only the preview and header are decoded up front; every other chunk is located through a chunk index and
+     * decoded the first time the matching accessor of the returned model is called.
+     * @param fileName String path to the file location.
+     * @return Lazily decoded model, or null if the file is not a valid binary M3D model.
+     * @throws IOException if the file fails to load into memory.
+     */
+    public M3DJ_LazyModel LoadFileLazy(String fileName) throws IOException {
+        // The lazy model keeps decoding with the snapshot, so later reconfiguration does not affect it.
+        return Snapshot().M3DJ_LoadFileLazy(fileName);
+    }
+
+    private M3DJ_LazyModel M3DJ_LoadFileLazy(String fileName) throws IOException {
+        M3DJ_Model model = new M3DJ_Model();
+        ByteBuffer fileData = ReadFileData(fileName);
+
+        if (fileData.remaining() < ChunkReader.HEADER_LENGTH || ChunkReader.ReadMagic(fileData, 0) != Magic.BINARY) {
+            logger.out(Tracelog.LogType.LOG_WARNING, "Bad magic identified. Returning null object.");
+            return null;
+        }
+        int fileSize = fileData.getInt(MAGIC_LENGTH);
+        fileData.position(ChunkReader.HEADER_LENGTH);
+        logger.out(Tracelog.LogType.LOG_INFO, "Binary magic found. File size: " + fileSize + "B");
+
+        M3DJ_ReadPreview(fileData, model);
+
+        if (ChunkReader.ReadMagic(fileData, fileData.position()) != Magic.HEAD) {
+            logger.out(Tracelog.LogType.LOG_INFO, "Failed to identify header; assuming compressed data and attempting to decompress...");
+            // The model keeps referencing the inflated data, so it must not stay in the thread's pool.
+            fileData = DecompressDataBuffer(fileData.slice(fileData.position(), fileData.remaining()), true);
+            M3DJ_Release();
+        }
+        else {
+            fileData = fileData.slice().order(ByteOrder.LITTLE_ENDIAN);
+        }
+
+        ChunkIndex index = ChunkIndex.Build(fileData);
+        logger.out(Tracelog.LogType.LOG_DEBUG, "Chunks indexed: " + index.Count());
+
+        if (index.Count() == 0 || index.GetMagic(0) != Magic.HEAD) {
+            logger.out(Tracelog.LogType.LOG_WARNING, "Bad data found. Failed to identify Header chunk where expected. Returning null object...");
+            return null;
+        }
+        if (index.Find(Magic.OMD3, 0) < 0) {
+            logger.out(Tracelog.LogType.LOG_ERROR, "Missing end chunk. Returning null object...");
+            return null;
+        }
+
+        M3DJ_ReadHeader(index.GetData(fileData, 0), model.header);
+        if (!M3DJ_ValidateHeader(model)) {
+            return null;
+        }
+
+        return new M3DJ_LazyModel(this, model, fileData, index);
+    }
+
+    /**
+     * Reads the header, preview location and chunk table of a model file without decoding any chunk data.
+     * Chunk payloads after the header are skipped by seeking; compressed models are inflated as a stream whose
+     * output is discarded, so memory use stays near the size of the header chunk.
+     * @param fileName String path to the file location.
+     * @return Summary of the model, or null if the file is not a binary M3D model.
+     * @throws IOException if the file cannot be read.
+     */
+    public M3DJ_ModelInfo ProbeFile(String fileName) throws IOException {
+        try (FileChannel channel = FileChannel.open(Paths.get(fileName), StandardOpenOption.READ)) {
+            return ProbeStream(new BufferedInputStream(Channels.newInputStream(channel), STREAM_BUFFER_SIZE));
+        }
+    }
+
+    /**
+     * Reads the header, preview location and chunk table of a model from a stream without decoding any chunk data.
+     * @see #ProbeFile(String)
+     * @param stream Stream positioned at the start of the model file. It is not closed.
+     * @return Summary of the model, or null if the stream does not hold a binary M3D model.
+     * @throws IOException if reading from the stream fails.
+     */
+    public M3DJ_ModelInfo ProbeStream(InputStream stream) throws IOException {
+        M3DJ load = Snapshot();
+        try {
+            return load.M3DJ_ProbeStream(stream);
+        }
+        finally {
+            load.M3DJ_Release();
+        }
+    }
+
+    private M3DJ_ModelInfo M3DJ_ProbeStream(InputStream stream) throws IOException {
+        M3DJ_ModelInfo info = new M3DJ_ModelInfo();
+        byte[] header = new byte[ChunkReader.HEADER_LENGTH];
+
+        if (StreamChunkReader.ReadFully(stream, header, 0, header.length) < header.length ||
+            ChunkReader.ReadMagic(header, 0) != Magic.BINARY) {
+            logger.out(Tracelog.LogType.LOG_WARNING, "Bad magic identified. Returning null object.");
+            return null;
+        }
+        info.fileSize = ChunkReader.ReadInt(header, MAGIC_LENGTH);
+
+        StreamChunkReader.ReadExactly(stream, header, 0, MAGIC_LENGTH);
+        int magic = ChunkReader.ReadMagic(header, 0);
+
+        if (magic == Magic.PRVW) {
+            StreamChunkReader.ReadExactly(stream, header, MAGIC_LENGTH, Integer.BYTES);
+            info.previewOffset = ChunkReader.HEADER_LENGTH * 2;
+            info.previewLength = ChunkReader.ReadInt(header, MAGIC_LENGTH) - ChunkReader.HEADER_LENGTH;
+            stream.skipNBytes(info.previewLength);
+
+            StreamChunkReader.ReadExactly(stream, header, 0, MAGIC_LENGTH);
+            magic = ChunkReader.ReadMagic(header, 0);
+        }
+
+        InputStream body = new SequenceInputStream(new ByteArrayInputStream(header, 0, MAGIC_LENGTH), stream);
+        info.compressed = magic != Magic.HEAD;
+        if (info.compressed) {
+            body = new InflaterInputStream(body, GetDecompressor().GetInflater(), STREAM_BUFFER_SIZE);
+        }
+
+        StreamChunkReader reader = new StreamChunkReader(body);
+        if (!reader.Next() || reader.magic != Magic.HEAD) {
+            logger.out(Tracelog.LogType.LOG_WARNING, "Bad data found. Failed to identify Header chunk where expected. Returning null object...");
+            return null;
+        }
+        info.chunks.add(new M3DJ_ModelInfo.ChunkInfo(ChunkReader.UnpackMagic(reader.magic), reader.offset, reader.size, -1));
+        M3DJ_ReadHeader(reader.data, info.header);
+
+        while (reader.NextHeader()) {
+            info.chunks.add(new M3DJ_ModelInfo.ChunkInfo(ChunkReader.UnpackMagic(reader.magic), reader.offset, reader.size,
+                    EstimateElementCount(reader.magic, reader.size, info.header)));
+
+            if (reader.magic == Magic.OMD3) {
+                break;
+            }
+        }
+
+        return info;
+    }
+
+    /**
+     * @return Number of elements a chunk of the given size holds, an upper bound for variable sized records,
+     *         or -1 for chunks whose contents cannot be estimated from their size.
+     */
+    private int EstimateElementCount(int magic, int chunkSize, M3DJ_Header header) {
+        switch (magic) {
+            case Magic.CMAP:
+                return chunkSize / Integer.BYTES;
+            case Magic.TMAP:
+                return chunkSize / (header.VC_T.size * 2);
+            case Magic.VRTS:
+                return chunkSize / ((header.VC_T.size * 4) + header.CI_T.size + header.SK_T.size);
+            case Magic.MTRL:
+                return 1;
+            case Magic.MESH:
+                // Every triangle record holds at least its magic byte and three vertex indices.
+                return chunkSize / (Byte.BYTES + (header.VI_T.size * 3));
+            default:
+                return -1;
+        }
+    }
+
+    private ByteBuffer ReadFileData(String fileName) throws IOException {
+        ByteBuffer fileData;
+        if (MEMORY_MAP) {
+            fileData = IO.MapFileData(fileName);
+        }
+        else {
+            fileData = ByteBuffer.wrap(IO.LoadFileData(fileName));
+        }
+        fileData.order(ByteOrder.LITTLE_ENDIAN);
+
+        return fileData;
+    }
+
+    /**
+     * @return false if the load options skip chunks of the given magic; true otherwise.
+     */
+    boolean IsChunkWanted(int magic) {
+        int option = switch (magic) {
+            case Magic.PRVW -> LoadOptions.SKIP_PREVIEW;
+            case Magic.TMAP -> LoadOptions.SKIP_TEXTURE_MAP;
+            case Magic.MTRL -> LoadOptions.SKIP_MATERIALS;
+            case Magic.BONE -> LoadOptions.SKIP_SKELETON;
+            case Magic.ACTN -> LoadOptions.SKIP_ANIMATION;
+            case Magic.LBLS -> LoadOptions.SKIP_LABELS;
+            case Magic.SHPE -> LoadOptions.SKIP_SHAPES;
+            case Magic.PROC -> LoadOptions.SKIP_PROCEDURAL;
+            case Magic.VOXT, Magic.VOXD -> LoadOptions.SKIP_VOXELS;
+            case Magic.ASET -> LoadOptions.SKIP_ASSETS;
+            default -> LoadOptions.LOAD_ALL;
+        };
+        return (LOAD_OPTIONS & option) == 0;
+    }
+
+    private M3DJ_Model M3DJ_LoadAscii(ByteBuffer fileData) {
+        M3DJ_Model result = new M3DJ_Model();
+
+        while (fileData.hasRemaining()) {
+            //todo:
+        }
+
+        return null;
+    }
+
+    private M3DJ_Model M3DJ_LoadBinary(ByteBuffer fileData, M3DJ_Model model) throws IOException {
+        M3DJ_ReadPreview(fileData, model);
+
+        if (ChunkReader.ReadMagic(fileData, fileData.position()) != Magic.HEAD) {
+            logger.out(Tracelog.LogType.LOG_INFO, "Failed to identify header; assuming compressed data and attempting to decompress...");
+            ByteBuffer compressedData = fileData.slice(fileData.position(), fileData.remaining());
+
+            if (PIPELINE) {
+                InputStream body = new InflaterInputStream(new ByteBufferInputStream(compressedData), GetDecompressor().GetInflater(), STREAM_BUFFER_SIZE);
+                return M3DJ_LoadChunks(new PipelinedChunkReader(body, PipelinedChunkReader.DEFAULT_RING_SIZE, this::IsChunkWanted), model);
+            }
+
+            fileData = DecompressDataBuffer(compressedData, false);
+        }
+
+        if (fileData.remaining() < MAGIC_LENGTH ||
+            ChunkReader.ReadMagic(fileData, fileData.limit() - MAGIC_LENGTH) != Magic.OMD3) {
+            logger.out(Tracelog.LogType.LOG_ERROR, "Missing end chunk. Returning null object...");
+            return null;
+        }
+
+        // Chunks decoded in parallel would reach a visitor or progress listener out of order.
+        if (PARALLEL && !(model instanceof VisitedModel) && !(model instanceof ProgressiveModel)) {
+            return M3DJ_LoadParallel(fileData, model);
+        }
+
+        return M3DJ_LoadChunks(new BufferChunkReader(fileData, this::IsChunkWanted), model);
+    }
+
+    /**
+     * Loads a binary model through long file offsets rather than a buffer holding the whole file.
+     * Uncompressed chunks are decoded from a mapped window of the file; a compressed body is inflated as a stream.
+     */
+    private M3DJ_Model M3DJ_LoadMapped(String fileName, M3DJ_Model model) throws IOException {
+        try (FileChannel channel = FileChannel.open(Paths.get(fileName), StandardOpenOption.READ)) {
+            ByteBuffer header = ByteBuffer.allocate(ChunkReader.HEADER_LENGTH).order(ByteOrder.LITTLE_ENDIAN);
+
+            if (!ReadFully(channel, header.clear(), 0) || ChunkReader.ReadMagic(header, 0) != Magic.BINARY) {
+                logger.out(Tracelog.LogType.LOG_WARNING, "Bad magic identified. Returning null object.");
+                return null;
+            }
+            logger.out(Tracelog.LogType.LOG_INFO, "Binary magic found. File size: " + channel.size() + "B");
+
+            long body = ChunkReader.HEADER_LENGTH;
+            if (!ReadFully(channel, header.clear(), body)) {
+                logger.out(Tracelog.LogType.LOG_WARNING, "Bad data found. Failed to identify Header chunk where expected. Returning null object...");
+                return null;
+            }
+
+            if (ChunkReader.ReadMagic(header, 0) == Magic.PRVW) {
+                // Chunk size includes the length of Magic and Integer value.
+                int chunkSize = header.getInt(MAGIC_LENGTH) - ChunkReader.HEADER_LENGTH;
+
+                if (IsChunkWanted(Magic.PRVW)) {
+                    model.preview.allocateImageBuffer(chunkSize);
+                    if (!ReadFully(channel, model.preview.imageData, body + ChunkReader.HEADER_LENGTH)) {
+                        throw new EOFException("Unexpected end of model file.");
+                    }
+                }
+                body += ChunkReader.HEADER_LENGTH + chunkSize;
+
+                if (!ReadFully(channel, header.clear(), body)) {
+                    logger.out(Tracelog.LogType.LOG_WARNING, "Bad data found. Failed to identify Header chunk where expected. Returning null object...");
+                    return null;
+                }
+            }
+
+            if (ChunkReader.ReadMagic(header, 0) == Magic.HEAD) {
+                return M3DJ_LoadChunks(new MappedChunkReader(channel, body, this::IsChunkWanted), model);
+            }
+
+            logger.out(Tracelog.LogType.LOG_INFO, "Failed to identify header; assuming compressed data and attempting to decompress...");
+            InputStream stream = new InflaterInputStream(Channels.newInputStream(channel.position(body)), GetDecompressor().GetInflater(), STREAM_BUFFER_SIZE);
+
+            if (PIPELINE) {
+                return M3DJ_LoadChunks(new PipelinedChunkReader(stream, PipelinedChunkReader.DEFAULT_RING_SIZE, this::IsChunkWanted), model);
+            }
+            return M3DJ_LoadChunks(new StreamChunkReader(stream, this::IsChunkWanted), model);
+        }
+        finally {
+            M3DJ_Release();
+        }
+    }
+
+    /**
+     * Fills the remaining space of the buffer from the given offset of the channel, leaving it flipped for reading.
+     * @return false if the channel ends first.
+     */
+    private static boolean ReadFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        int start = buffer.position();
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position() - start) < 0) {
+                return false;
+            }
+        }
+        buffer.flip();
+        return true;
+    }
+
+    private M3DJ_Model M3DJ_LoadParallel(ByteBuffer fileData, M3DJ_Model model) {
+        ChunkIndex index = ChunkIndex.Build(fileData);
+
+        if (index.Count() == 0 || index.GetMagic(0) != Magic.HEAD) {
+            logger.out(Tracelog.LogType.LOG_WARNING, "Bad data found. Failed to identify Header chunk where expected. Returning null object...");
+            return null;
+        }
+        if (index.Find(Magic.OMD3, 0) < 0) {
+            logger.out(Tracelog.LogType.LOG_ERROR, "Missing end chunk. Returning null object...");
+            return null;
+        }
+
+        M3DJ_ReadHeader(index.GetData(fileData, 0), model.header);
+        if (!M3DJ_ValidateHeader(model)) {
+            return null;
+        }
+
+        ForkJoinPool pool = ForkJoinPool.commonPool();
+        ForkJoinTask<?> colorMap = null;
+        ForkJoinTask<?> textureMap = null;
+        ByteBuffer vertexData = null;
+        ArrayList<ByteBuffer> materialData = new ArrayList<>();
+        ArrayList<ByteBuffer> meshData = new ArrayList<>();
+
+        // Chunk checks run in file order, exactly as the sequential loader would, so only decoding is deferred.
+        for (int i = 1; i < index.Count(); i++) {
+            int magic = index.GetMagic(i);
+            ByteBuffer chunk = index.GetData(fileData, i);
+
+            if (!IsChunkWanted(magic)) {
+                continue;
+            }
+            if (IsCancelled()) {
+                return null;
+            }
+
+            if (logger.isEnabled(Tracelog.LogType.LOG_DEBUG)) {
+                logger.out(Tracelog.LogType.LOG_DEBUG, "===");
+                logger.out(Tracelog.LogType.LOG_DEBUG, "Magic reads: " + ChunkReader.UnpackMagic(magic));
+            }
+
+            switch (magic) {
+                case Magic.CMAP:
+                    if (CMAP_Loaded){
+                        logger.out(Tracelog.LogType.LOG_ERROR, "Additional color map chunk encountered. Color map chunk must be unique.");
+                        break;
+                    }
+                    if (model.header.TI_T == UNDEFINED) {
+                        logger.out(Tracelog.LogType.LOG_ERROR, "Encountered color map chunk while datatype is null.");
+                        break;
+                    }
+                    CMAP_Loaded = true;
+
+                    colorMap = pool.submit(() -> ReadColorMap(chunk, model));
+                    break;
+
+                case Magic.TMAP:
+                    if (TMAP_Loaded){
+                        logger.out(Tracelog.LogType.LOG_ERROR, "Additional texture map chunk encountered. Texture map chunk must be unique.");
+                        break;
+                    }
+                    if (model.header.TI_T == UNDEFINED) {
+                        logger.out(Tracelog.LogType.LOG_ERROR, "Encountered texture map chunk while datatype is null.");
+                        break;
+                    }
+                    TMAP_Loaded = true;
+
+                    textureMap = pool.submit(() -> ReadTextureMap(chunk, model));
+                    break;
+
+                case Magic.VRTS:
+                    if (VRTS_Loaded){
+                        logger.out(Tracelog.LogType.LOG_ERROR, "Additional vertex data chunk encountered. Vertex data chunk must be unique.");
+                        break;
+                    }
+                    if (model.header.CI_T != UNDEFINED && model.header.CI_T.size < 4 && !CMAP_Loaded) {
+                        logger.out(Tracelog.LogType.LOG_WARNING, "No Color map loaded prior to vertex data. There may be issues with the model.");
+                    }
+                    VRTS_Loaded = true;
+
+                    vertexData = chunk;
+                    break;
+
+                case Magic.MTRL:
+                    materialData.add(chunk);
+                    break;
+
+                case Magic.MESH:
+                    if (!VRTS_Loaded) {
+                        logger.out(Tracelog.LogType.LOG_ERROR, "No vertex data loaded prior to mesh data.");
+                    }
+                    meshData.add(chunk);
+                    break;
+
+                case Magic.OMD3:
+                    logger.out(Tracelog.LogType.LOG_DEBUG, "End of file reached.");
+                    break;
+
+                default:
+                    if (!M3DJ_ReadChunk(magic, chunk, model)) {
+                        return null;
+                    }
+                    break;
+            }
+        }
+
+        // Vertices and materials read colour indices, so they wait for the colour map.
+        if (colorMap != null) {
+            colorMap.join();
+        }
+
+        ForkJoinTask<?> vertices = null;
+        if (vertexData != null) {
+            ByteBuffer chunk = vertexData;
+            vertices = pool.submit(() -> ReadVertices(chunk, model));
+        }
+
+        ArrayList<M3DJ_Model> materialParts = new ArrayList<>();
+        ArrayList<ForkJoinTask<?>> materials = new ArrayList<>();
+        for (ByteBuffer chunk : materialData) {
+            M3DJ_Model part = NewFragment(model);
+            materialParts.add(part);
+            materials.add(pool.submit(() -> ReadMaterial(chunk, part)));
+        }
+
+        for (int i = 0; i < materials.size(); i++) {
+            materials.get(i).join();
+            for (M3DJ_Material material : materialParts.get(i).materials) {
+                for (M3DJ_Material mat: model.materials) {
+                    if (mat.name.equals(material.name)) {
+                        logger.out(Tracelog.LogType.LOG_ERROR, "Multiple definitions for material " + material.name + ".");
+                        break;
+                    }
+                }
+                model.materials.add(material);
+            }
+        }
+
+        // Meshes resolve material names, so they are decoded once every material is known,
+        // while the vertex and texture map tasks keep running.
+        boolean meshesValid = true;
+        for (ByteBuffer chunk : meshData) {
+            if (IsCancelled() || !ReadMesh(chunk, model)) {
+                meshesValid = false;
+                break;
+            }
+        }
+
+        if (vertices != null) {
+            vertices.join();
+        }
+        if (textureMap != null) {
+            textureMap.join();
+        }
+
+        return meshesValid ? model : null;
+    }
+
+    /**
+     * Creates a model that shares the header and colour map of another, so a chunk can be decoded into it
+     * independently and merged afterwards.
+     */
+    private M3DJ_Model NewFragment(M3DJ_Model model) {
+        M3DJ_Model fragment;
+        if (model instanceof M3DJ_PackedModel packed) {
+            M3DJ_PackedModel packedFragment = new M3DJ_PackedModel();
+            packedFragment.colorCount = packed.colorCount;
+            packedFragment.palette = packed.palette;
+            fragment = packedFragment;
+        }
+        else {
+            fragment = new M3DJ_Model();
+        }
+        fragment.header = model.header;
+        fragment.colors = model.colors;
+        return fragment;
+    }
+
+    /**
+     * Copies the optional preview chunk into the model and leaves the buffer positioned after it.
+     */
+    private void M3DJ_ReadPreview(ByteBuffer fileData, M3DJ_Model model) {
+        if (ChunkReader.ReadMagic(fileData, fileData.position()) == Magic.PRVW) {
+            // Chunk size includes the length of Magic and Integer value.
+            int chunkSize = fileData.getInt(fileData.position() + MAGIC_LENGTH) - ChunkReader.HEADER_LENGTH;
+            fileData.position(fileData.position() + ChunkReader.HEADER_LENGTH);
+
+            if (IsChunkWanted(Magic.PRVW)) {
+                model.preview.allocateImageBuffer(chunkSize);
+                model.preview.imageData.put(fileData.slice(fileData.position(), chunkSize));
+                model.preview.imageData.flip();
+            }
+            fileData.position(fileData.position() + chunkSize);
+        }
+
+        // Reported before a compressed body is inflated.
+        if (model instanceof ProgressiveModel progressive) {
+            progressive.Report(Stage.PREVIEW);
+        }
+    }
+
+    M3DJ_Model M3DJ_LoadChunks(ChunkReader reader, M3DJ_Model model) throws IOException {
+        try {
+            return M3DJ_ReadChunks(reader, model);
+        }
+        finally {
+            reader.Close();
+        }
+    }
+
+    private M3DJ_Model M3DJ_ReadChunks(ChunkReader reader, M3DJ_Model model) throws IOException {
+        if (model instanceof ProgressiveModel progressive) {
+            progressive.Report(Stage.PREVIEW);
+        }
+
+        if (reader.Next() && reader.magic == Magic.HEAD) {
+            logger.out(Tracelog.LogType.LOG_DEBUG, "Header chunk size: " + (reader.data.limit() + ChunkReader.HEADER_LENGTH));
+            M3DJ_ReadHeader(reader.data, model.header);
+        }
+        else {
+            logger.out(Tracelog.LogType.LOG_WARNING, "Bad data found. Failed to identify Header chunk where expected. Returning null object...");
+            return null;
+        }
+
+        if (!M3DJ_ValidateHeader(model)) {
+            return null;
+        }
+        if (model instanceof VisitedModel visited) {
+            visited.visitor.VisitHeader(model.header);
+        }
+        if (model instanceof ProgressiveModel progressive) {
+            progressive.Report(Stage.HEADER);
+        }
+
+        while (reader.Next()) {
+            if (IsCancelled()) {
+                return null;
+            }
+            if (model instanceof ProgressiveModel progressive) {
+                progressive.Report(ReadyStage(reader.magic));
+            }
+
+            if (logger.isEnabled(Tracelog.LogType.LOG_DEBUG)) {
+                logger.out(Tracelog.LogType.LOG_DEBUG, "===");
+                logger.out(Tracelog.LogType.LOG_DEBUG, "Magic reads: " + ChunkReader.UnpackMagic(reader.magic));
+            }
+
+            if (reader.magic == Magic.OMD3) {
+                logger.out(Tracelog.LogType.LOG_DEBUG, "End of file reached.");
+                if (model instanceof VisitedModel visited) {
+                    visited.visitor.VisitEnd();
+                }
+                return model;
+            }
+
+            if (!M3DJ_ReadChunk(reader.magic, reader.data, model)) {
+                return null;
+            }
+
+            logger.out(Tracelog.LogType.LOG_DEBUG, "Current position: " + reader.data.position());
+        }
+
+        // Model is only valid if end chunk exists.
+        logger.out(Tracelog.LogType.LOG_ERROR, "Missing end chunk. Returning null object...");
+        return null;
+    }
+
+    /**
+     * @return false if the header describes a model this parser cannot load; true otherwise.
+     */
+    private boolean M3DJ_ValidateHeader(M3DJ_Model model) {
+        if(model.header.VC_T.size > 4) {
+            logger.out(Tracelog.LogType.LOG_WARNING, "Double precision coordinates are not supported, coordinates will be truncated to float...");
+        }
+
+        if(model.header.VI_T.size > 4 || model.header.SI_T.size > 4 || model.header.VP_T.size == 4) {
+            logger.out(Tracelog.LogType.LOG_ERROR, "Invalid index size, unable to load model. Returning null object...");
+            return false;
+        }
+
+        if(model.header.NB_T.value > M3D_NUMBONE) {
+            logger.out(Tracelog.LogType.LOG_ERROR, "Model has more bones per vertex than what importer was configured to support");
+
+        }
+
+        return true;
+    }
+
+    private void M3DJ_ReadHeader(ByteBuffer fileData, M3DJ_Header header) {
+        header.scale = fileData.getFloat();
+        if (header.scale <= 0.0f) {
+            header.scale = 1.0f;
+        }
+        logger.out(Tracelog.LogType.LOG_DEBUG, "Scaling factor: " + header.scale);
+
+        int bitField = fileData.getInt();
+        header.VC_T = VariableTypes.GetVertexCoordTypeByBytePattern(((bitField >> 0) & 3));
+        header.VI_T = VariableTypes.GetVariableTypeByBytePattern(((bitField >> 2) & 3));
+        header.SI_T = VariableTypes.GetVariableTypeByBytePattern(((bitField >> 4) & 3));
+        header.CI_T = VariableTypes.GetVariableTypeByBytePattern(((bitField >> 6) & 3));
+        header.TI_T = VariableTypes.GetVariableTypeByBytePattern(((bitField >> 8) & 3));
+        header.BI_T = VariableTypes.GetVariableTypeByBytePattern(((bitField >> 10) & 3));
+        header.NB_T = VariableTypes.GetBonesPerVertexByBytePattern(((bitField >> 12) & 3));
+        header.SK_T = VariableTypes.GetVariableTypeByBytePattern(((bitField >> 14) & 3));
+        header.FC_T = VariableTypes.GetVariableTypeByBytePattern(((bitField >> 16) & 3));
+        header.HI_T = VariableTypes.GetVariableTypeByBytePattern(((bitField >> 18) & 3));
+        header.FI_T = VariableTypes.GetVariableTypeByBytePattern(((bitField >> 20) & 3));
+        header.VD_T = VariableTypes.GetVariableTypeByBytePattern(((bitField >> 22) & 3));
+        header.VP_T = VariableTypes.GetVariableTypeByBytePattern(((bitField >> 24) & 3));
+
+        if(header.CI_T == null) {
+            header.CI_T = UNDEFINED;
+        }
+        if(header.TI_T == null) {
+            header.TI_T = UNDEFINED;
+        }
+        if(header.BI_T == null) {
+            header.BI_T = UNDEFINED;
+        }
+        if(header.SK_T == null) {
+            header.SK_T = UNDEFINED;
+        }
+        if(header.FC_T == null) {
+            header.FC_T = UNDEFINED;
+        }
+        if(header.HI_T == null) {
+            header.HI_T = UNDEFINED;
+        }
+        if(header.FI_T == null) {
+            header.FI_T = UNDEFINED;
+        }
+
+        header.DumpBitField(logger);
+
+        // Other chunks reference strings by their offset into this table, so offsets are kept alongside.
+        int tableStart = fileData.position();
+        int[] offsets = header.stringOffsets;
+        int count = 0;
+        while (fileData.hasRemaining()) {
+            if (count == offsets.length) {
+                offsets = Arrays.copyOf(offsets, Math.max(16, count * 2));
+            }
+            offsets[count++] = fileData.position() - tableStart;
+            header.stringTable.add(ReadString(fileData));
+        }
+        header.stringOffsets = offsets;
+
+        header.title = header.stringTable.get(0);
+        header.licence = header.stringTable.get(1);
+        header.author = header.stringTable.get(2);
+        header.description = header.stringTable.get(3);
+
+
+        logger.out(Tracelog.LogType.LOG_INFO,
+       "Model metadata:\n" +
+                "\tModel: "  + header.title + "\n" +
+                "\tLicence: "  + header.licence + "\n" +
+                "\tAuthor: "  + header.author + "\n" +
+                "\tDescription: "  + header.description
+        );
+    }
+
+    /**
+     * Decodes a single chunk payload into the model.
+     * @return false if the chunk invalidates the model; true otherwise.
+     */
+    private boolean M3DJ_ReadChunk(int magic, ByteBuffer fileData, M3DJ_Model model) {
+        int chunkSize = fileData.limit();
+
+        switch (magic) {
+            case Magic.CMAP:
+                if (CMAP_Loaded){
+                    logger.out(Tracelog.LogType.LOG_ERROR, "Additional color map chunk encountered. Color map chunk must be unique.");
+                    return true;
+                }
+                if (model.header.TI_T == UNDEFINED) {
+                    logger.out(Tracelog.LogType.LOG_ERROR, "Encountered color map chunk while datatype is null.");
+                    return true;
+                }
+                CMAP_Loaded = true;
+
+                ReadColorMap(fileData, model);
+                break;
+
+            case Magic.TMAP:
+                if (TMAP_Loaded){
+                    logger.out(Tracelog.LogType.LOG_ERROR, "Additional texture map chunk encountered. Texture map chunk must be unique.");
+                    return true;
+                }
+                if (model.header.TI_T == UNDEFINED) {
+                    logger.out(Tracelog.LogType.LOG_ERROR, "Encountered texture map chunk while datatype is null.");
+                    return true;
+                }
+                TMAP_Loaded = true;
+
+                ReadTextureMap(fileData, model);
+                break;
+
+            case Magic.VRTS:
+                if (VRTS_Loaded){
+                    logger.out(Tracelog.LogType.LOG_ERROR, "Additional vertex data chunk encountered. Vertex data chunk must be unique.");
+                    return true;
+                }
+                if (model.header.CI_T != UNDEFINED && model.header.CI_T.size < 4 && !CMAP_Loaded) {
+                    logger.out(Tracelog.LogType.LOG_WARNING, "No Color map loaded prior to vertex data. There may be issues with the model.");
+                }
+                VRTS_Loaded = true;
+
+                ReadVertices(fileData, model);
+                break;
+
+            case Magic.BONE:
+                if (BONE_Loaded){
+                    logger.out(Tracelog.LogType.LOG_ERROR, "Additional bone data chunk encountered. Bone data chunk must be unique.");
+                    return true;
+                }
+                if (model.header.BI_T == UNDEFINED) {
+                    logger.out(Tracelog.LogType.LOG_ERROR, "Encountered bone data chunk while datatype is null.");
+                    return true;
+                }
+                if (!VRTS_Loaded) {
+                    logger.out(Tracelog.LogType.LOG_ERROR, "No vertex data was loaded prior to bone data.");
+                    break;
+                }
+                BONE_Loaded = true;
+
+                logger.out(Tracelog.LogType.LOG_DEBUG, "Current position: " + fileData.position());
+                logger.out(Tracelog.LogType.LOG_DEBUG, "Chunk size: " + chunkSize);
+
+                // todo: load bones
+                fileData.position(fileData.limit());
+                break;
+
+            case Magic.MTRL:
+                int materialCount = model.materials.size();
+                ReadMaterial(fileData, model);
+                if (model instanceof VisitedModel visited && model.materials.size() > materialCount) {
+                    visited.visitor.VisitMaterial(model.materials.get(materialCount));
+                }
+                break;
+
+            case Magic.PROC:
+                logger.out(Tracelog.LogType.LOG_DEBUG, "Current position: " + fileData.position());
+                logger.out(Tracelog.LogType.LOG_DEBUG, "Chunk size: " + chunkSize);
+
+                // todo: load procedural surfaces
+                fileData.position(fileData.limit());
+                break;
+
+            case Magic.MESH:
+                if (!VRTS_Loaded) {
+                    logger.out(Tracelog.LogType.LOG_ERROR, "No vertex data loaded prior to mesh data.");
+                }
+
+                return ReadMesh(fileData, model);
+
+            case Magic.SHPE:
+                logger.out(Tracelog.LogType.LOG_DEBUG, "Current position: " + fileData.position());
+                logger.out(Tracelog.LogType.LOG_DEBUG, "Chunk size: " + chunkSize);
+
+                // todo: load shapes
+                fileData.position(fileData.limit());
+                break;
+
+            case Magic.VOXT:
+                VOXT_Loaded = true;
+
+                logger.out(Tracelog.LogType.LOG_DEBUG, "Current position: " + fileData.position());
+                logger.out(Tracelog.LogType.LOG_DEBUG, "Chunk size: " + chunkSize);
+
+                // todo: load voxel types
+                fileData.position(fileData.limit());
+                break;
+
+            case Magic.VOXD:
+                logger.out(Tracelog.LogType.LOG_DEBUG, "Current position: " + fileData.position());
+                logger.out(Tracelog.LogType.LOG_DEBUG, "Chunk size: " + chunkSize);
+
+                // todo: load voxel data
+                fileData.position(fileData.limit());
+                break;
+
+            case Magic.LBLS:
+                logger.out(Tracelog.LogType.LOG_DEBUG, "Current position: " + fileData.position());
+                logger.out(Tracelog.LogType.LOG_DEBUG, "Chunk size: " + chunkSize);
+
+                // todo: load animation labels
+                fileData.position(fileData.limit());
+                break;
+
+            case Magic.ACTN:
+                logger.out(Tracelog.LogType.LOG_DEBUG, "Current position: " + fileData.position());
+                logger.out(Tracelog.LogType.LOG_DEBUG, "Chunk size: " + chunkSize);
+
+                // todo: load actions and animations
+                fileData.position(fileData.limit());
+                break;
+
+            case Magic.ASET:
+                logger.out(Tracelog.LogType.LOG_DEBUG, "Current position: " + fileData.position());
+                logger.out(Tracelog.LogType.LOG_DEBUG, "Chunk size: " + chunkSize);
+
+                // todo: load assets
+                fileData.position(fileData.limit());
+                break;
+
+            default:
+                logger.out(Tracelog.LogType.LOG_WARNING, "Unexpected magic value encountered:" +
+                        "\n\t" + ChunkReader.UnpackMagic(magic) + ". Attempting to skip and continue parsing...");
+                break;
+        }
+
+        return true;
+    }
+
+    void ReadColorMap(ByteBuffer fileData, M3DJ_Model model) {
+        if (model instanceof M3DJ_PackedModel packed) {
+            ReadPackedColorMap(fileData, packed);
+            return;
+        }
+        if (model instanceof M3DJ_OffHeapModel offHeap) {
+            ReadOffHeapColorMap(fileData, offHeap);
+            return;
+        }
+        if (model instanceof VisitedModel visited) {
+            VisitColorMap(fileData, visited);
+            return;
+        }
+
+        int chunkSize = fileData.limit();
+        int chunkEnd = fileData.limit();
+
+        int colorSize = model.header.CI_T.size;
+        int numColors = chunkSize / colorSize;
+
+        logger.out(Tracelog.LogType.LOG_DEBUG, "Chunk size: " + chunkSize);
+        logger.out(Tracelog.LogType.LOG_DEBUG, "Expected Number of Colours: " + numColors);
+        logger.out(Tracelog.LogType.LOG_DEBUG, "Colour unit size: " + colorSize + " bytes");
+        logger.out(Tracelog.LogType.LOG_DEBUG, "Expected End Position: " + chunkEnd);
+
+        while (fileData.position() < chunkEnd) {
+            M3DJ_Color color = model.NewColor();
+            color.a = fileData.get();
+            color.b = fileData.get();
+            color.g = fileData.get();
+            color.r = fileData.get();
+
+            model.colors.add(color);
+        }
+
+        logger.out(Tracelog.LogType.LOG_DEBUG, "Colours Loaded: " + model.colors.size());
+    }
+
+    void ReadTextureMap(ByteBuffer fileData, M3DJ_Model model) {
+        if (model instanceof M3DJ_PackedModel packed) {
+            ReadPackedTextureMap(fileData, packed);
+            return;
+        }
+        if (model instanceof M3DJ_OffHeapModel offHeap) {
+            ReadOffHeapTextureMap(fileData, offHeap);
+            return;
+        }
+        if (model instanceof VisitedModel visited) {
+            VisitTextureMap(fileData, visited);
+            return;
+        }
+
+        int chunkSize = fileData.limit();
+        int chunkEnd = fileData.limit();
+
+        int texCoordSize = (model.header.VC_T.size * 2);
+        int numTexCoords = (chunkSize/texCoordSize);
+
+        logger.out(Tracelog.LogType.LOG_DEBUG, "Current position: " + fileData.position());
+        logger.out(Tracelog.LogType.LOG_DEBUG, "Chunk size: " + chunkSize);
+        logger.out(Tracelog.LogType.LOG_DEBUG, "Expected Number of Texture Coordinates: " + numTexCoords);
+        logger.out(Tracelog.LogType.LOG_DEBUG, "Texture coordinate size: " + texCoordSize + " bytes");
+        logger.out(Tracelog.LogType.LOG_DEBUG, "Expected End Position: " + chunkEnd);
+
+        double divisor = GetTexCoordDivisor(model.header.VC_T);
+        for (int i = 0; i < numTexCoords; i++) {
+            M3DJ_TextureCoordinate coordinate = model.NewTextureCoordinate();
+            switch (model.header.VC_T) {
+                case INT8 -> {
+                    coordinate.u = fileData.get() / divisor;
+                    coordinate.v = fileData.get() / divisor;
+                }
+                case INT16 -> {
+                    coordinate.u = fileData.getShort() / divisor;
+                    coordinate.v = fileData.getShort() / divisor;
+                }
+                case FLOAT -> {
+                    coordinate.u = fileData.getFloat();
+                    coordinate.v = fileData.getFloat();
+                }
+                case DOUBLE -> {
+                    coordinate.u = fileData.getDouble();
+                    coordinate.v = fileData.getDouble();
+                }
+            }
+            model.textureMap.add(coordinate);
+        }
+        logger.out(Tracelog.LogType.LOG_DEBUG, "Texture Coordinates Loaded: " + model.textureMap.size());
+    }
+
+    void ReadVertices(ByteBuffer fileData, M3DJ_Model model) {
+        if (model instanceof M3DJ_PackedModel packed) {
+            ReadPackedVertices(fileData, packed);
+            return;
+        }
+        if (model instanceof M3DJ_OffHeapModel offHeap) {
+            ReadOffHeapVertices(fileData, offHeap);
+            return;
+        }
+        if (model instanceof VisitedModel visited) {
+            VisitVertices(fileData, visited);
+            return;
+        }
+
+        int chunkSize = fileData.limit();
+        int chunkEnd = fileData.limit();
+
+        int vertexSize = (model.header.VC_T.size * 4) + model.header.CI_T.size + model.header.SK_T.size;
+        int numVertices = chunkSize / vertexSize;
+
+        logger.out(Tracelog.LogType.LOG_DEBUG, "Current position: " + fileData.position());
+        logger.out(Tracelog.LogType.LOG_DEBUG, "Chunk size: " + chunkSize);
+        logger.out(Tracelog.LogType.LOG_DEBUG, "Expected Number of Texture Coordinates: " + numVertices);
+        logger.out(Tracelog.LogType.LOG_DEBUG, "Texture coordinate size: " + vertexSize + " bytes");
+        logger.out(Tracelog.LogType.LOG_DEBUG, "Expected End Position: " + chunkEnd);
+
+        for (int i = 0; i < numVertices; i++) {
+            M3DJ_Vertex vertex = model.NewVertex();
+
+            // Load vector component
+            switch (model.header.VC_T) {
+                case INT8 -> {
+                    vertex.x = (fileData.get() / 127.0);
+                    vertex.y = (fileData.get() / 127.0);
+                    vertex.z = (fileData.get() / 127.0);
+                    vertex.w = (fileData.get() / 127.0);
+                }
+                case INT16 -> {
+                    vertex.x = (fileData.getShort() / 32767.0);
+                    vertex.y = (fileData.getShort() / 32767.0);
+                    vertex.z = (fileData.getShort() / 32767.0);
+                    vertex.w = (fileData.getShort() / 32767.0);
+                }
+                case FLOAT -> {
+                    vertex.x = fileData.getFloat();
+                    vertex.y = fileData.getFloat();
+                    vertex.z = fileData.getFloat();
+                    vertex.w = fileData.getFloat();
+                }
+                case DOUBLE -> {
+                    vertex.x = fileData.getDouble();
+                    vertex.y = fileData.getDouble();
+                    vertex.z = fileData.getDouble();
+                    vertex.w = fileData.getDouble();
+                }
+            }
+
+            // Load colour index component
+            switch (model.header.CI_T) {
+                case UINT8 -> {
+                    if (!model.colors.isEmpty()) {
+                        vertex.colorIndex = fileData.get();
+                    }
+                    else {
+                        vertex.colorIndex = 0;
+                    }
+                }
+                case UINT16 -> {
+                    if (!model.colors.isEmpty()) {
+                        vertex.colorIndex = fileData.getShort();
+                    }
+                    else {
+                        vertex.colorIndex = 0;
+                    }
+                }
+                case UINT32 -> {
+                    vertex.colorIndex = fileData.getInt();
+                }
+                case UNDEFINED -> {
+                    vertex.colorIndex = 0;
+                }
+            }
+            vertex.skinIndex = GetIndex(fileData, model.header.SK_T.size);
+
+            model.vertices.add(vertex);
+        }
+    }
+
+    private void ReadPackedColorMap(ByteBuffer fileData, M3DJ_PackedModel model) {
+        int numColors = fileData.remaining() / Integer.BYTES;
+
+        logger.out(Tracelog.LogType.LOG_DEBUG, "Expected Number of Colours: " + numColors);
+
+        model.palette = Reuse(model.palette, numColors);
+        fileData.asIntBuffer().get(model.palette, 0, numColors);
+        fileData.position(fileData.position() + numColors * Integer.BYTES);
+        model.colorCount = numColors;
+
+        logger.out(Tracelog.LogType.LOG_DEBUG, "Colours Loaded: " + model.colorCount);
+    }
+
+    private void ReadPackedTextureMap(ByteBuffer fileData, M3DJ_PackedModel model) {
+        int texCoordSize = (model.header.VC_T.size * 2);
+        int numTexCoords = fileData.remaining() / texCoordSize;
+
+        logger.out(Tracelog.LogType.LOG_DEBUG, "Expected Number of Texture Coordinates: " + numTexCoords);
+
+        int length = numTexCoords * M3DJ_PackedModel.TEXCOORD_COMPONENTS;
+        if (QUANTIZED && model.header.VC_T.size <= Short.BYTES) {
+            model.quantizedTexCoords = Reuse(model.quantizedTexCoords, model.header.VC_T.size, length, GetTexCoordDivisor(model.header.VC_T));
+            model.quantizedTexCoords.ReadAll(fileData, length);
+            model.texCoordCount = numTexCoords;
+            return;
+        }
+
+        float[] texCoords = Reuse(model.texCoords, length);
+        switch (model.header.VC_T) {
+            case INT8 -> {
+                for (int i = 0; i < length; i++) {
+                    texCoords[i] = (float) (fileData.get() / GetTexCoordDivisor(model.header.VC_T));
+                }
+            }
+            case INT16 -> {
+                for (int i = 0; i < length; i++) {
+                    texCoords[i] = (float) (fileData.getShort() / GetTexCoordDivisor(model.header.VC_T));
+                }
+            }
+            case FLOAT -> {
+                fileData.asFloatBuffer().get(texCoords, 0, length);
+                fileData.position(fileData.position() + length * Float.BYTES);
+            }
+            case DOUBLE -> {
+                for (int i = 0; i < length; i++) {
+                    texCoords[i] = (float) fileData.getDouble();
+                }
+            }
+        }
+        model.texCoords = texCoords;
+        model.quantizedTexCoords = null;
+        model.texCoordCount = numTexCoords;
+
+        logger.out(Tracelog.LogType.LOG_DEBUG, "Texture Coordinates Loaded: " + model.texCoordCount);
+    }
+
+    private void ReadPackedVertices(ByteBuffer fileData, M3DJ_PackedModel model) {
+        int vertexSize = (model.header.VC_T.size * 4) + model.header.CI_T.size + model.header.SK_T.size;
+        int numVertices = fileData.remaining() / vertexSize;
+
+        logger.out(Tracelog.LogType.LOG_DEBUG, "Expected Number of Vertices: " + numVertices);
+
+        int length = numVertices * M3DJ_PackedModel.POSITION_COMPONENTS;
+        float[] positions = null;
+        double[] positionsDouble = null;
+        M3DJ_QuantizedBuffer quantized = null;
+        if (QUANTIZED && model.header.VC_T.size <= Short.BYTES) {
+            quantized = Reuse(model.quantizedPositions, model.header.VC_T.size, length, GetPositionDivisor(model.header.VC_T));
+        }
+        else if (model.header.VC_T == VariableTypes.VertexCoordType.DOUBLE) {
+            positionsDouble = Reuse(model.positionsDouble, length);
+        }
+        else {
+            positions = Reuse(model.positions, length);
+        }
+        int[] colorIndices = Reuse(model.colorIndices, numVertices);
+        int[] skinIndices = Reuse(model.skinIndices, numVertices);
+
+        int p = 0;
+        for (int i = 0; i < numVertices; i++) {
+            for (int c = 0; c < M3DJ_PackedModel.POSITION_COMPONENTS; c++, p++) {
+                if (quantized != null) {
+                    quantized.Read(p, fileData);
+                    continue;
+                }
+                switch (model.header.VC_T) {
+                    case INT8 -> positions[p] = (float) (fileData.get() / GetPositionDivisor(model.header.VC_T));
+                    case INT16 -> positions[p] = (float) (fileData.getShort() / GetPositionDivisor(model.header.VC_T));
+                    case FLOAT -> positions[p] = fileData.getFloat();
+                    case DOUBLE -> positionsDouble[p] = fileData.getDouble();
+                }
+            }
+
+            colorIndices[i] = switch (model.header.CI_T) {
+                case UINT8 -> HasColorMap(model) ? Byte.toUnsignedInt(fileData.get()) : 0;
+                case UINT16 -> HasColorMap(model) ? Short.toUnsignedInt(fileData.getShort()) : 0;
+                case UINT32 -> fileData.getInt();
+                case UNDEFINED -> 0;
+            };
+            skinIndices[i] = GetIndex(fileData, model.header.SK_T.size);
+        }
+
+        if (positions != null) {
+            model.positions = positions;
+        }
+        model.positionsDouble = positionsDouble;
+        model.quantizedPositions = quantized;
+        model.colorIndices = colorIndices;
+        model.skinIndices = skinIndices;
+        model.vertexCount = numVertices;
+
+        logger.out(Tracelog.LogType.LOG_DEBUG, "Vertices Loaded: " + model.vertexCount);
+    }
+
+    private void ReadOffHeapColorMap(ByteBuffer fileData, M3DJ_OffHeapModel model) {
+        int numColors = fileData.remaining() / Integer.BYTES;
+        int[] palette = new int[Math.min(numColors, OFF_HEAP_BATCH)];
+
+        logger.out(Tracelog.LogType.LOG_DEBUG, "Expected Number of Colours: " + numColors);
+
+        model.ReserveColors(numColors);
+        for (int first = 0; first < numColors; first += palette.length) {
+            int count = Math.min(palette.length, numColors - first);
+            fileData.asIntBuffer().get(palette, 0, count);
+            fileData.position(fileData.position() + count * Integer.BYTES);
+            model.SetColors(first, count, palette);
+        }
+        model.colorCount = numColors;
+
+        logger.out(Tracelog.LogType.LOG_DEBUG, "Colours Loaded: " + model.colorCount);
+    }
+
+    private void ReadOffHeapTextureMap(ByteBuffer fileData, M3DJ_OffHeapModel model) {
+        int texCoordSize = (model.header.VC_T.size * 2);
+        int numTexCoords = fileData.remaining() / texCoordSize;
+        float[] texCoords = new float[Math.min(numTexCoords, OFF_HEAP_BATCH) * M3DJ_PackedModel.TEXCOORD_COMPONENTS];
+        double divisor = GetTexCoordDivisor(model.header.VC_T);
+
+        logger.out(Tracelog.LogType.LOG_DEBUG, "Expected Number of Texture Coordinates: " + numTexCoords);
+
+        model.ReserveTexCoords(numTexCoords);
+        for (int first = 0; first < numTexCoords; first += OFF_HEAP_BATCH) {
+            int count = Math.min(OFF_HEAP_BATCH, numTexCoords - first);
+            for (int i = 0; i < count * M3DJ_PackedModel.TEXCOORD_COMPONENTS; i++) {
+                texCoords[i] = switch (model.header.VC_T) {
+                    case INT8 -> (float) (fileData.get() / divisor);
+                    case INT16 -> (float) (fileData.getShort() / divisor);
+                    case FLOAT -> fileData.getFloat();
+                    case DOUBLE -> (float) fileData.getDouble();
+                };
+            }
+            model.SetTexCoords(first, count, texCoords);
+        }
+        model.texCoordCount = numTexCoords;
+
+        logger.out(Tracelog.LogType.LOG_DEBUG, "Texture Coordinates Loaded: " + model.texCoordCount);
+    }
+
+    private void ReadOffHeapVertices(ByteBuffer fileData, M3DJ_OffHeapModel model) {
+        int vertexSize = (model.header.VC_T.size * 4) + model.header.CI_T.size + model.header.SK_T.size;
+        int numVertices = fileData.remaining() / vertexSize;
+
+        logger.out(Tracelog.LogType.LOG_DEBUG, "Expected Number of Vertices: " + numVertices);
+
+        boolean doublePrecision = model.header.VC_T == VariableTypes.VertexCoordType.DOUBLE;
+        int batch = Math.min(numVertices, OFF_HEAP_BATCH);
+        float[] positions = doublePrecision ? null : new float[batch * M3DJ_PackedModel.POSITION_COMPONENTS];
+        double[] positionsDouble = doublePrecision ? new double[batch * M3DJ_PackedModel.POSITION_COMPONENTS] : null;
+        int[] colorIndices = new int[batch];
+        int[] skinIndices = new int[batch];
+        double divisor = GetPositionDivisor(model.header.VC_T);
+
+        model.ReserveVertices(numVertices, doublePrecision);
+        for (int first = 0; first < numVertices; first += OFF_HEAP_BATCH) {
+            int count = Math.min(OFF_HEAP_BATCH, numVertices - first);
+            for (int i = 0, p = 0; i < count; i++) {
+                for (int c = 0; c < M3DJ_PackedModel.POSITION_COMPONENTS; c++, p++) {
+                    switch (model.header.VC_T) {
+                        case INT8 -> positions[p] = (float) (fileData.get() / divisor);
+                        case INT16 -> positions[p] = (float) (fileData.getShort() / divisor);
+                        case FLOAT -> positions[p] = fileData.getFloat();
+                        case DOUBLE -> positionsDouble[p] = fileData.getDouble();
+                    }
+                }
+
+                colorIndices[i] = switch (model.header.CI_T) {
+                    case UINT8 -> HasColorMap(model) ? Byte.toUnsignedInt(fileData.get()) : 0;
+                    case UINT16 -> HasColorMap(model) ? Short.toUnsignedInt(fileData.getShort()) : 0;
+                    case UINT32 -> fileData.getInt();
+                    case UNDEFINED -> 0;
+                };
+                skinIndices[i] = GetIndex(fileData, model.header.SK_T.size);
+            }
+
+            if (doublePrecision) {
+                model.SetVertices(first, count, positionsDouble, colorIndices, skinIndices);
+            }
+            else {
+                model.SetVertices(first, count, positions, colorIndices, skinIndices);
+            }
+        }
+        model.vertexCount = numVertices;
+
+        logger.out(Tracelog.LogType.LOG_DEBUG, "Vertices Loaded: " + model.vertexCount);
+    }
+
+    private void VisitColorMap(ByteBuffer fileData, VisitedModel model) {
+        int numColors = fileData.remaining() / Integer.BYTES;
+        int[] palette = new int[Math.min(numColors, VISIT_BATCH)];
+
+        for (int first = 0; first < numColors; first += palette.length) {
+            int count = Math.min(palette.length, numColors - first);
+            fileData.asIntBuffer().get(palette, 0, count);
+            fileData.position(fileData.position() + count * Integer.BYTES);
+            model.visitor.VisitColors(first, count, palette);
+        }
+        model.colorCount = numColors;
+
+        logger.out(Tracelog.LogType.LOG_DEBUG, "Colours Visited: " + numColors);
+    }
+
+    private void VisitTextureMap(ByteBuffer fileData, VisitedModel model) {
+        int texCoordSize = (model.header.VC_T.size * 2);
+        int numTexCoords = fileData.remaining() / texCoordSize;
+        float[] texCoords = new float[Math.min(numTexCoords, VISIT_BATCH) * M3DJ_PackedModel.TEXCOORD_COMPONENTS];
+        double divisor = GetTexCoordDivisor(model.header.VC_T);
+
+        for (int first = 0; first < numTexCoords; first += VISIT_BATCH) {
+            int count = Math.min(VISIT_BATCH, numTexCoords - first);
+            for (int i = 0; i < count * M3DJ_PackedModel.TEXCOORD_COMPONENTS; i++) {
+                texCoords[i] = switch (model.header.VC_T) {
+                    case INT8 -> (float) (fileData.get() / divisor);
+                    case INT16 -> (float) (fileData.getShort() / divisor);
+                    case FLOAT -> fileData.getFloat();
+                    case DOUBLE -> (float) fileData.getDouble();
+                };
+            }
+            model.visitor.VisitTextureCoordinates(first, count, texCoords);
         }
 
-        return result;
+        logger.out(Tracelog.LogType.LOG_DEBUG, "Texture Coordinates Visited: " + numTexCoords);
     }
 
-    private M3DJ_Model M3DJ_LoadAscii(ByteBuffer fileData) {
-        M3DJ_Model result = new M3DJ_Model();
-
-        while (fileData.hasRemaining()) {
-            //todo:
+    private void VisitVertices(ByteBuffer fileData, VisitedModel model) {
+        int vertexSize = (model.header.VC_T.size * 4) + model.header.CI_T.size + model.header.SK_T.size;
+        int numVertices = fileData.remaining() / vertexSize;
+        int batch = Math.min(numVertices, VISIT_BATCH);
+        float[] positions = new float[batch * M3DJ_PackedModel.POSITION_COMPONENTS];
+        int[] colorIndices = new int[batch];
+        int[] skinIndices = new int[batch];
+        double divisor = GetPositionDivisor(model.header.VC_T);
+
+        for (int first = 0; first < numVertices; first += VISIT_BATCH) {
+            int count = Math.min(VISIT_BATCH, numVertices - first);
+            for (int i = 0, p = 0; i < count; i++) {
+                for (int c = 0; c < M3DJ_PackedModel.POSITION_COMPONENTS; c++, p++) {
+                    positions[p] = switch (model.header.VC_T) {
+                        case INT8 -> (float) (fileData.get() / divisor);
+                        case INT16 -> (float) (fileData.getShort() / divisor);
+                        case FLOAT -> fileData.getFloat();
+                        case DOUBLE -> (float) fileData.getDouble();
+                    };
+                }
+
+                colorIndices[i] = switch (model.header.CI_T) {
+                    case UINT8 -> HasColorMap(model) ? Byte.toUnsignedInt(fileData.get()) : 0;
+                    case UINT16 -> HasColorMap(model) ? Short.toUnsignedInt(fileData.getShort()) : 0;
+                    case UINT32 -> fileData.getInt();
+                    case UNDEFINED -> 0;
+                };
+                skinIndices[i] = GetIndex(fileData, model.header.SK_T.size);
+            }
+            model.visitor.VisitVertices(first, count, positions, colorIndices, skinIndices);
         }
 
-        return null;
+        logger.out(Tracelog.LogType.LOG_DEBUG, "Vertices Visited: " + numVertices);
     }
 
-    private M3DJ_Model M3DJ_LoadBinary(ByteBuffer fileData) {
-        M3DJ_Model model = new M3DJ_Model();
-        int chunkSize;
-
-        StringBuilder magic = new StringBuilder();
-        for (int i = 0; i < MAGIC_LENGTH; i++) {
-            magic.append((char) (fileData.get()));
+    /**
+     * Decodes a mesh chunk into face batches, passing each batch to the visitor once it is full or the material
+     * or parameter changes.
+     */
+    private boolean VisitMesh(ByteBuffer fileData, VisitedModel model) {
+        int chunkEnd = fileData.limit();
+        int[] state = new int[] { M3D_UNDEF, M3D_UNDEF };
+        int viSize = model.header.VI_T.size;
+        int tiSize = model.header.TI_T.size;
+
+        if (model.faceVertices == null) {
+            model.faceVertices = new int[VISIT_BATCH * M3DJ_PackedFaces.CORNERS];
+            model.faceTexCoords = new int[VISIT_BATCH * M3DJ_PackedFaces.CORNERS];
+            model.faceNormals = new int[VISIT_BATCH * M3DJ_PackedFaces.CORNERS];
         }
 
-        if (magic.toString().equals("PRVW")) {
-            chunkSize = fileData.getInt();
+        int count = 0;
+        while (fileData.position() < chunkEnd) {
+            byte recordMagic = fileData.get();
+            byte n = (byte) (recordMagic >> 4);
+            byte k = (byte) (recordMagic & 15);
+
+            if (n == 0) {
+                int material = state[0];
+                int parameter = state[1];
+                ReadMeshSwitch(fileData, k, state, model);
+                if (state[0] != material || state[1] != parameter) {
+                    count = VisitFaces(model, count, material, parameter);
+                }
+                continue;
+            }
 
-            model.preview.allocateImageBuffer(chunkSize);
+            if (n != 3) {
+                logger.out(Tracelog.LogType.LOG_ERROR, "Only triangle meshes are supported by M3D SDK at this time. Returning null object...");
+                return false;
+            }
 
-            for (int i = 0; i < chunkSize; i++) {
-                model.preview.imageData.put(fileData.get());
+            if (fileData.remaining() < GetTriangleSize(k, model)) {
+                logger.out(Tracelog.LogType.LOG_ERROR, "Invalid mesh found. Returning null object...");
+                return false;
             }
 
-            model.preview.imageData.flip();
+            int corner = count * M3DJ_PackedFaces.CORNERS;
+            for (int j = 0; j < M3DJ_PackedFaces.CORNERS; j++, corner++) {
+                model.faceVertices[corner] = GetIndex(fileData, viSize);
+                model.faceTexCoords[corner] = (k & 1) != 0 ? GetIndex(fileData, tiSize) : M3D_UNDEF;
+                model.faceNormals[corner] = (k & 2) != 0 ? GetIndex(fileData, viSize) : M3D_UNDEF;
+                if ((k & 4) != 0) {
+                    // Vertex maximums are not passed to visitors.
+                    fileData.position(fileData.position() + viSize);
+                }
+            }
 
-            magic = new StringBuilder();
-            for (int i = 0; i < MAGIC_LENGTH; i++) {
-                magic.append((char) (fileData.get()));
+            if (++count == VISIT_BATCH) {
+                count = VisitFaces(model, count, state[0], state[1]);
             }
         }
+        VisitFaces(model, count, state[0], state[1]);
 
-        if (!magic.toString().equals("HEAD")) {
-            logger.out(Tracelog.LogType.LOG_INFO, "Failed to identify header; assuming compressed data and attempting to decompress...");
-            fileData = DecompressDataBuffer(fileData.slice(fileData.position() - (Byte.BYTES * 4), fileData.remaining()));
+        return true;
+    }
 
-            magic = new StringBuilder();
-            for (int i = 0; i < MAGIC_LENGTH; i++) {
-                magic.append((char) (fileData.get()));
-            }
+    /**
+     * Passes the faces collected so far to the visitor.
+     * @return The number of faces left in the batch, which is always 0.
+     */
+    private int VisitFaces(VisitedModel model, int count, int material, int parameter) {
+        if (count > 0) {
+            model.visitor.VisitFaces(model.faceCount, count, material, parameter, model.faceVertices, model.faceTexCoords, model.faceNormals);
+            model.faceCount += count;
         }
+        return 0;
+    }
 
-        if (magic.toString().equals("HEAD")) {
-            chunkSize = fileData.getInt();
-            logger.out(Tracelog.LogType.LOG_DEBUG, "Header chunk size: " + chunkSize);
+    /**
+     * Model a visit is decoded into. It only keeps the header, materials and parameters, which later chunks
+     * refer to, and the face batch buffers; every other element is passed on to the visitor.
+     */
+    private static class VisitedModel extends M3DJ_Model {
+        final M3DJ_Visitor visitor;
+        int colorCount;
+        int faceCount;
+        int[] faceVertices;
+        int[] faceTexCoords;
+        int[] faceNormals;
+
+        VisitedModel(M3DJ_Visitor visitor) {
+            this.visitor = visitor;
+        }
+    }
 
-            model.header.scale = fileData.getFloat();
-            if (model.header.scale <= 0.0f) {
-                model.header.scale = 1.0f;
-            }
-            logger.out(Tracelog.LogType.LOG_DEBUG, "Scaling factor: " + model.header.scale);
+    private static class ProgressiveModel extends M3DJ_Model {
+        final M3DJ_ProgressListener listener;
+        // Next stage to report.
+        int stage = Stage.PREVIEW;
+        M3DJ_ModelSnapshot snapshot;
 
-            int bitField = fileData.getInt();
-            model.header.VC_T = VariableTypes.GetVertexCoordTypeByBytePattern(((bitField >> 0) & 3));
-            model.header.VI_T = VariableTypes.GetVariableTypeByBytePattern(((bitField >> 2) & 3));
-            model.header.SI_T = VariableTypes.GetVariableTypeByBytePattern(((bitField >> 4) & 3));
-            model.header.CI_T = VariableTypes.GetVariableTypeByBytePattern(((bitField >> 6) & 3));
-            model.header.TI_T = VariableTypes.GetVariableTypeByBytePattern(((bitField >> 8) & 3));
-            model.header.BI_T = VariableTypes.GetVariableTypeByBytePattern(((bitField >> 10) & 3));
-            model.header.NB_T = VariableTypes.GetBonesPerVertexByBytePattern(((bitField >> 12) & 3));
-            model.header.SK_T = VariableTypes.GetVariableTypeByBytePattern(((bitField >> 14) & 3));
-            model.header.FC_T = VariableTypes.GetVariableTypeByBytePattern(((bitField >> 16) & 3));
-            model.header.HI_T = VariableTypes.GetVariableTypeByBytePattern(((bitField >> 18) & 3));
-            model.header.FI_T = VariableTypes.GetVariableTypeByBytePattern(((bitField >> 20) & 3));
-            model.header.VD_T = VariableTypes.GetVariableTypeByBytePattern(((bitField >> 22) & 3));
-            model.header.VP_T = VariableTypes.GetVariableTypeByBytePattern(((bitField >> 24) & 3));
+        ProgressiveModel(M3DJ_ProgressListener listener) {
+            this.listener = listener;
+        }
 
-            if(model.header.CI_T == null) {
-                model.header.CI_T = UNDEFINED;
-            }
-            if(model.header.TI_T == null) {
-                model.header.TI_T = UNDEFINED;
-            }
-            if(model.header.BI_T == null) {
-                model.header.BI_T = UNDEFINED;
-            }
-            if(model.header.SK_T == null) {
-                model.header.SK_T = UNDEFINED;
-            }
-            if(model.header.FC_T == null) {
-                model.header.FC_T = UNDEFINED;
-            }
-            if(model.header.HI_T == null) {
-                model.header.HI_T = UNDEFINED;
-            }
-            if(model.header.FI_T == null) {
-                model.header.FI_T = UNDEFINED;
+        /**
+         * Reports every stage up to the given one that has not been reported yet.
+         */
+        void Report(int last) {
+            while (stage <= last) {
+                snapshot = new M3DJ_ModelSnapshot(stage, this, snapshot);
+                listener.StageReady(stage, snapshot);
+                stage++;
             }
+        }
+    }
 
-            model.header.DumpBitField(logger);
+    /**
+     * Chunks are laid out in the order HEAD, CMAP, TMAP, VRTS, BONE, MTRL, PROC, MESH, SHPE, VOXT, VOXD, LBLS,
+     * ACTN, ASET, OMD3; a stage is ready once a chunk that follows all of its own is reached. Materials and bones
+     * precede the meshes, so they are ready as soon as the geometry is.
+     * @return Last stage of a progressive load that is ready when a chunk of the given magic is reached.
+     */
+    private static int ReadyStage(int magic) {
+        return switch (magic) {
+            case Magic.SHPE, Magic.VOXT, Magic.VOXD, Magic.LBLS, Magic.ACTN -> Stage.SKELETON;
+            case Magic.ASET, Magic.OMD3 -> Stage.ANIMATION;
+            default -> Stage.HEADER;
+        };
+    }
 
-            while (fileData.position() < chunkSize) {
-                model.header.stringTable.add(ReadString(fileData, 0));
-            }
+    /**
+     * @return The given array if it holds at least length elements, or a new array of that length.
+     */
+    private static int[] Reuse(int[] array, int length) {
+        return array != null && array.length >= length ? array : new int[length];
+    }
 
-            model.header.title = model.header.stringTable.get(0);
-            model.header.licence = model.header.stringTable.get(1);
-            model.header.author = model.header.stringTable.get(2);
-            model.header.description = model.header.stringTable.get(3);
+    private static float[] Reuse(float[] array, int length) {
+        return array != null && array.length >= length ? array : new float[length];
+    }
 
+    private static double[] Reuse(double[] array, int length) {
+        return array != null && array.length >= length ? array : new double[length];
+    }
 
-            logger.out(Tracelog.LogType.LOG_INFO,
-           "Model metadata:\n" +
-                    "\tModel: "  + model.header.title + "\n" +
-                    "\tLicence: "  + model.header.licence + "\n" +
-                    "\tAuthor: "  + model.header.author + "\n" +
-                    "\tDescription: "  + model.header.description
-            );
-        }
-        else {
-            logger.out(Tracelog.LogType.LOG_WARNING, "Bad data found. Failed to identify Header chunk where expected. Returning null object...");
-            return null;
+    private static M3DJ_QuantizedBuffer Reuse(M3DJ_QuantizedBuffer buffer, int componentSize, int length, double divisor) {
+        if (buffer != null && buffer.componentSize == componentSize && buffer.divisor == divisor && buffer.Length() >= length) {
+            return buffer;
         }
+        return new M3DJ_QuantizedBuffer(componentSize, length, divisor);
+    }
 
-        if(model.header.VC_T.size > 4) {
-            logger.out(Tracelog.LogType.LOG_WARNING, "Double precision coordinates are not supported, coordinates will be truncated to float...");
-        }
+    /**
+     * @return Value that INT8 and INT16 vertex coordinates are divided by to expand them; 1 for other types.
+     */
+    private double GetPositionDivisor(VariableTypes.VertexCoordType type) {
+        return switch (type) {
+            case INT8 -> 127.0;
+            case INT16 -> 32767.0;
+            default -> 1.0;
+        };
+    }
 
-        if(model.header.VI_T.size > 4 || model.header.SI_T.size > 4 || model.header.VP_T.size == 4) {
-            logger.out(Tracelog.LogType.LOG_ERROR, "Invalid index size, unable to load model. Returning null object...");
-            return null;
-        }
+    /**
+     * @return Value that INT8 and INT16 texture coordinates are divided by to expand them; 1 for other types.
+     */
+    private double GetTexCoordDivisor(VariableTypes.VertexCoordType type) {
+        return switch (type) {
+            case INT8 -> 255.0;
+            case INT16 -> 35535.0;
+            default -> 1.0;
+        };
+    }
 
-        int endChunkPosition = fileData.limit() - 4;
-        magic = new StringBuilder();
-        for (int i = 0; i < MAGIC_LENGTH; i++) {
-            magic.append((char) (fileData.get(endChunkPosition + i)));
+    /**
+     * @return true if colour indices of the model refer to a loaded colour map.
+     */
+    private boolean HasColorMap(M3DJ_Model model) {
+        if (model instanceof M3DJ_PackedModel packed) {
+            return packed.colorCount > 0;
         }
-        if (!magic.toString().equals("OMD3")) {
-            logger.out(Tracelog.LogType.LOG_ERROR, "Missing end chunk. Returning null object...");
-            return null;
+        if (model instanceof M3DJ_OffHeapModel offHeap) {
+            return offHeap.colorCount > 0;
+        }
+        if (model instanceof VisitedModel visited) {
+            return visited.colorCount > 0;
         }
+        return !model.colors.isEmpty();
+    }
 
-        if(model.header.NB_T.value > M3D_NUMBONE) {
-            logger.out(Tracelog.LogType.LOG_ERROR, "Model has more bones per vertex than what importer was configured to support");
+    void ReadMaterial(ByteBuffer fileData, M3DJ_Model model) {
+        int chunkSize = fileData.limit();
+        int chunkEnd = fileData.limit();
 
-        }
+        logger.out(Tracelog.LogType.LOG_DEBUG, "Current position: " + fileData.position());
+        logger.out(Tracelog.LogType.LOG_DEBUG, "Chunk size: " + chunkSize);
+        logger.out(Tracelog.LogType.LOG_DEBUG, "Expected End Position: " + chunkEnd);
 
-        int chunkEnd = 0;
+        M3DJ_Material material = new M3DJ_Material();
+        material.name = ReadStringReference(fileData, model.header);
 
-        while (fileData.hasRemaining()) {
-            magic = new StringBuilder();
-            for (int i = 0; i < MAGIC_LENGTH; i++) {
-                magic.append((char) (fileData.get()));
+        for (M3DJ_Material mat: model.materials) {
+            if (mat.name.equals(material.name)) {
+                logger.out(Tracelog.LogType.LOG_ERROR, "Multiple definitions for material " + material.name + ".");
+                break;
             }
+        }
 
-            // OMD3 indicated the end of the file and does not have a size component.
-            if (!magic.toString().equals("OMD3")) {
-                // Chunk size includes the length of Magic and Integer value, so we have to account that
-                // we've already processed those bytes by subtracting them from the chunk size.
-                chunkSize = fileData.getInt() - (MAGIC_LENGTH * 2);
-                chunkEnd = fileData.position() + chunkSize;
-            }
+        while (fileData.position() < chunkEnd) {
+            // todo: load materials
+            M3DJ_Property property = new M3DJ_Property();
 
-            logger.out(Tracelog.LogType.LOG_DEBUG, "===");
-            logger.out(Tracelog.LogType.LOG_DEBUG, "Magic reads: " + magic);
+            int propValue = Byte.toUnsignedInt(fileData.get());
 
-            switch (magic.toString()) {
-                case "CMAP":
-                    if (CMAP_Loaded){
-                        logger.out(Tracelog.LogType.LOG_ERROR, "Additional color map chunk encountered. Color map chunk must be unique.");
-                        continue;
-                    }
-                    if (model.header.TI_T == UNDEFINED) {
-                        logger.out(Tracelog.LogType.LOG_ERROR, "Encountered color map chunk while datatype is null.");
-                        continue;
+            if (propValue >= 128) {
+                property.format = PropertyFormat.MAP;
+            }
+            else {
+                for (int j = 0; j < propertyTypes.length; j++) {
+                    if (propValue == propertyTypes[j].id) {
+                        property.format = propertyTypes[j].format;
+                        break;
                     }
-                    CMAP_Loaded = true;
-
-                    int colorSize = model.header.CI_T.size;
-                    int numColors = chunkSize / colorSize;
-
-                    logger.out(Tracelog.LogType.LOG_DEBUG, "Chunk size: " + chunkSize);
-                    logger.out(Tracelog.LogType.LOG_DEBUG, "Expected Number of Colours: " + numColors);
-                    logger.out(Tracelog.LogType.LOG_DEBUG, "Colour unit size: " + colorSize + " bytes");
-                    logger.out(Tracelog.LogType.LOG_DEBUG, "Expected End Position: " + chunkEnd);
+                }
+            }
 
-                    while (fileData.position() < chunkEnd) {
-                        M3DJ_Color color = new M3DJ_Color();
-                        color.a = fileData.get();
-                        color.b = fileData.get();
-                        color.g = fileData.get();
-                        color.r = fileData.get();
+            if (property.format == null) {
+                // Without a known format the size of the value is unknown, so the rest of the chunk is skipped.
+                logger.out(Tracelog.LogType.LOG_WARNING, "Unknown material property encountered in " + material.name);
+                fileData.position(chunkEnd);
+                break;
+            }
 
-                        model.colors.add(color);
+            switch (property.format) {
+                case COLOR:
+                    // Colour indices are always stored, even when the model has no colour map.
+                    switch (model.header.CI_T) {
+                        case UINT8:
+                            int index8 = fileData.get() & 0xFF;
+                            property.SetPropertyValue(HasColorMap(model) ? index8 : 0);
+                            break;
+                        case UINT16:
+                            int index16 = fileData.getShort() & 0xFFFF;
+                            property.SetPropertyValue(HasColorMap(model) ? index16 : 0);
+                            break;
+                        case UINT32:
+                            property.SetPropertyValue(fileData.getInt());
+                            break;
                     }
+                    break;
 
-                    logger.out(Tracelog.LogType.LOG_DEBUG, "Colours Loaded: " + model.colors.size());
+                case UINT8:
+                    property.SetPropertyValue(fileData.get());
+                    break;
+                case UINT16:
+                    property.SetPropertyValue(fileData.getShort());
+                    break;
+                case UINT32:
+                    property.SetPropertyValue(fileData.getInt());
+                    break;
+                case FLOAT:
+                    property.SetPropertyValue(fileData.getFloat());
+                    break;
 
+                case MAP:
+                    String name = ReadStringReference(fileData, model.header);
+                    //todo: get textureId from string...
+                    //property.SetPropertyValue();
+                    break;
+                default:
+                    logger.out(Tracelog.LogType.LOG_WARNING, "Unknown material property encountered in " + material.name);
                     break;
+            }
 
-                case "TMAP":
-                    if (TMAP_Loaded){
-                        logger.out(Tracelog.LogType.LOG_ERROR, "Additional texture map chunk encountered. Texture map chunk must be unique.");
-                        continue;
-                    }
-                    if (model.header.TI_T == UNDEFINED) {
-                        logger.out(Tracelog.LogType.LOG_ERROR, "Encountered texture map chunk while datatype is null.");
-                        continue;
-                    }
-                    TMAP_Loaded = true;
+            material.properties.add(property);
+        }
 
-                    int texCoordSize = (model.header.VC_T.size * 2);
-                    int numTexCoords = (chunkSize/texCoordSize);
-
-                    logger.out(Tracelog.LogType.LOG_DEBUG, "Current position: " + fileData.position());
-                    logger.out(Tracelog.LogType.LOG_DEBUG, "Chunk size: " + chunkSize);
-                    logger.out(Tracelog.LogType.LOG_DEBUG, "Expected Number of Texture Coordinates: " + numTexCoords);
-                    logger.out(Tracelog.LogType.LOG_DEBUG, "Texture coordinate size: " + texCoordSize + " bytes");
-                    logger.out(Tracelog.LogType.LOG_DEBUG, "Expected End Position: " + chunkEnd);
-
-                    for (int i = 0; i < numTexCoords; i++) {
-                        switch (model.header.VC_T) {
-                            case INT8 -> {
-                                byte u = fileData.get();
-                                byte v = fileData.get();
-                                model.textureMap.add(new M3DJ_TextureCoordinate(u/255.0, v/255.0));
-                            }
-                            case INT16 -> {
-                                short u = fileData.getShort();
-                                short v = fileData.getShort();
-                                model.textureMap.add(new M3DJ_TextureCoordinate(u/35535.0, v/35535.0));
-                            }
-                            case FLOAT -> {
-                                float u = fileData.getFloat();
-                                float v = fileData.getFloat();
-                                model.textureMap.add(new M3DJ_TextureCoordinate(u, v));
-                            }
-                            case DOUBLE -> {
-                                double u = fileData.getDouble();
-                                double v = fileData.getDouble();
-                                model.textureMap.add(new M3DJ_TextureCoordinate(u, v));
-                            }
-                        }
-                    }
-                    logger.out(Tracelog.LogType.LOG_DEBUG, "Texture Coordinates Loaded: " + model.textureMap.size());
+        model.materials.add(material);
+    }
 
-                    break;
+    /**
+     * @return false if the mesh is invalid and the model must be discarded; true otherwise.
+     */
+    boolean ReadMesh(ByteBuffer fileData, M3DJ_Model model) {
+        int chunkSize = fileData.limit();
+        int chunkEnd = fileData.limit();
 
-                case "VRTS":
-                    if (VRTS_Loaded){
-                        logger.out(Tracelog.LogType.LOG_ERROR, "Additional vertex data chunk encountered. Vertex data chunk must be unique.");
-                        continue;
-                    }
-                    if (model.header.CI_T != UNDEFINED && model.header.CI_T.size < 4 && !CMAP_Loaded) {
-                        logger.out(Tracelog.LogType.LOG_WARNING, "No Color map loaded prior to vertex data. There may be issues with the model.");
-                    }
-                    VRTS_Loaded = true;
+        logger.out(Tracelog.LogType.LOG_DEBUG, "Current position: " + fileData.position());
+        logger.out(Tracelog.LogType.LOG_DEBUG, "Chunk size: " + chunkSize);
+        logger.out(Tracelog.LogType.LOG_DEBUG, "Expected End Position: " + chunkEnd);
 
-                    int vertexSize = (model.header.VC_T.size * 4) + model.header.CI_T.size + model.header.SK_T.size;
-                    int numVertices = chunkSize / vertexSize;
-
-                    logger.out(Tracelog.LogType.LOG_DEBUG, "Current position: " + fileData.position());
-                    logger.out(Tracelog.LogType.LOG_DEBUG, "Chunk size: " + chunkSize);
-                    logger.out(Tracelog.LogType.LOG_DEBUG, "Expected Number of Texture Coordinates: " + numVertices);
-                    logger.out(Tracelog.LogType.LOG_DEBUG, "Texture coordinate size: " + vertexSize + " bytes");
-                    logger.out(Tracelog.LogType.LOG_DEBUG, "Expected End Position: " + chunkEnd);
-
-                    for (int i = 0; i < numVertices; i++) {
-                        M3DJ_Vertex vertex = new M3DJ_Vertex();
-
-                        // Load vector component
-                        switch (model.header.VC_T) {
-                            case INT8 -> {
-                                vertex.x = (fileData.get() / 127.0);
-                                vertex.y = (fileData.get() / 127.0);
-                                vertex.z = (fileData.get() / 127.0);
-                                vertex.w = (fileData.get() / 127.0);
-                            }
-                            case INT16 -> {
-                                vertex.x = (fileData.getShort() / 32767.0);
-                                vertex.y = (fileData.getShort() / 32767.0);
-                                vertex.z = (fileData.getShort() / 32767.0);
-                                vertex.w = (fileData.getShort() / 32767.0);
-                            }
-                            case FLOAT -> {
-                                vertex.x = fileData.getFloat();
-                                vertex.y = fileData.getFloat();
-                                vertex.z = fileData.getFloat();
-                                vertex.w = fileData.getFloat();
-                            }
-                            case DOUBLE -> {
-                                vertex.x = fileData.getDouble();
-                                vertex.y = fileData.getDouble();
-                                vertex.z = fileData.getDouble();
-                                vertex.w = fileData.getDouble();
-                            }
-                        }
+        if (model instanceof M3DJ_PackedModel packed) {
+            return ReadPackedMesh(fileData, packed.packedFaces, model);
+        }
+        if (model instanceof M3DJ_OffHeapModel offHeap) {
+            return ReadPackedMesh(fileData, offHeap.packedFaces, model);
+        }
+        if (model instanceof VisitedModel visited) {
+            return VisitMesh(fileData, visited);
+        }
+        if (PARALLEL && chunkSize >= MESH_PARALLEL_THRESHOLD) {
+            return ReadMeshParallel(fileData, model);
+        }
 
-                        // Load colour index component
-                        switch (model.header.CI_T) {
-                            case UINT8 -> {
-                                if (!model.colors.isEmpty()) {
-                                    vertex.colorIndex = fileData.get();
-                                }
-                                else {
-                                    vertex.colorIndex = 0;
-                                }
-                            }
-                            case UINT16 -> {
-                                if (!model.colors.isEmpty()) {
-                                    vertex.colorIndex = fileData.getShort();
-                                }
-                                else {
-                                    vertex.colorIndex = 0;
-                                }
-                            }
-                            case UINT32 -> {
-                                vertex.colorIndex = fileData.getInt();
-                            }
-                            case UNDEFINED -> {
-                                vertex.colorIndex = 0;
-                            }
-                        }
-                        vertex.skinIndex = GetIndex(fileData, model.header.SK_T.size);
+        // Current material index and parameter index.
+        int[] state = new int[] { M3D_UNDEF, M3D_UNDEF };
 
-                        model.vertices.add(vertex);
-                    }
-                    break;
+        for (; fileData.position() < chunkEnd; ) {
 
-                case "BONE":
-                    if (BONE_Loaded){
-                        logger.out(Tracelog.LogType.LOG_ERROR, "Additional bone data chunk encountered. Bone data chunk must be unique.");
-                        continue;
-                    }
-                    if (model.header.BI_T == UNDEFINED) {
-                        logger.out(Tracelog.LogType.LOG_ERROR, "Encountered bone data chunk while datatype is null.");
-                        continue;
-                    }
-                    if (!VRTS_Loaded) {
-                        logger.out(Tracelog.LogType.LOG_ERROR, "No vertex data was loaded prior to bone data.");
-                        break;
-                    }
-                    BONE_Loaded = true;
+            byte recordMagic = fileData.get();
+            byte n = (byte) (recordMagic >> 4);
+            byte k = (byte) (recordMagic & 15);
 
-                    logger.out(Tracelog.LogType.LOG_DEBUG, "Current position: " + fileData.position());
-                    logger.out(Tracelog.LogType.LOG_DEBUG, "Chunk size: " + chunkSize);
+            if (logger.isEnabled(Tracelog.LogType.LOG_DEBUG)) {
+                logger.out(Tracelog.LogType.LOG_DEBUG, "Record magic: " + recordMagic);
+                logger.out(Tracelog.LogType.LOG_DEBUG, "n magic: " + n);
+                logger.out(Tracelog.LogType.LOG_DEBUG, "k magic: " + k);
+            }
 
-                    for (int i = 0; i < chunkSize; i++) {
-                        // todo: load bones
-                        fileData.get();
-                    }
-                    break;
+            if(n == 0) {
+                ReadMeshSwitch(fileData, k, state, model);
+                continue;
+            }
 
-                case "MTRL":
-                    logger.out(Tracelog.LogType.LOG_DEBUG, "Current position: " + fileData.position());
-                    logger.out(Tracelog.LogType.LOG_DEBUG, "Chunk size: " + chunkSize);
-                    logger.out(Tracelog.LogType.LOG_DEBUG, "Expected End Position: " + chunkEnd);
+            if (n != 3) {
+                logger.out(Tracelog.LogType.LOG_ERROR, "Only triangle meshes are supported by M3D SDK at this time. Returning null object...");
+                return false;
+            }
 
-                    M3DJ_Material material = new M3DJ_Material();
-                    material.name = ReadString(fileData, 0);
+            M3DJ_Face face = model.NewFace();
+            face.materialId = state[0];
+            face.paramId = state[1];
 
-                    for (M3DJ_Material mat: model.materials) {
-                        if (mat.name.equals(material.name)) {
-                            logger.out(Tracelog.LogType.LOG_ERROR, "Multiple definitions for material " + material.name + ".");
-                            break;
-                        }
-                    }
+            if (!ReadTriangle(fileData, k, face, model)) {
+                logger.out(Tracelog.LogType.LOG_ERROR, "Invalid mesh found. Returning null object...");
+                return false;
+            }
+            model.faces.add(face);
+        }
 
-                    while (fileData.position() < chunkEnd) {
-                        // todo: load materials
-                        M3DJ_Property property = new M3DJ_Property();
+        return true;
+    }
 
-                        int propValue = Byte.toUnsignedInt(fileData.get());
+    /**
+     * Decodes a mesh chunk into the packed face streams.
+     * The records are walked once beforehand, reading only their magic bytes, so the streams are grown to the
+     * exact face count and optional streams are only allocated if a record uses them.
+     */
+    private boolean ReadPackedMesh(ByteBuffer fileData, M3DJ_PackedFaces faces, M3DJ_Model model) {
+        int chunkEnd = fileData.limit();
+
+        int faceCount = 0;
+        int layouts = 0;
+        for (int position = fileData.position(); position < chunkEnd; ) {
+            byte recordMagic = fileData.get(position);
+            byte n = (byte) (recordMagic >> 4);
+            byte k = (byte) (recordMagic & 15);
+
+            if (n == 0) {
+                position += Byte.BYTES + model.header.SI_T.size;
+            }
+            else if (n == 3) {
+                position += Byte.BYTES + GetTriangleSize(k, model);
+                layouts |= k;
+                faceCount++;
+            }
+            else {
+                // Reported by the decoding pass below.
+                break;
+            }
+        }
+        faces.EnsureCapacity(faces.faceCount + faceCount, model.header.VI_T.size, model.header.TI_T.size,
+                (layouts & 1) != 0, (layouts & 2) != 0, VERTEX_MAX && (layouts & 4) != 0);
 
-                        if (propValue >= 128) {
-                            property.format = PropertyFormat.MAP;
-                        }
-                        else {
-                            for (int j = 0; j < propertyTypes.length; j++) {
-                                if (propValue == propertyTypes[j].id) {
-                                    property.format = propertyTypes[j].format;
-                                    break;
-                                }
-                            }
-                        }
+        int[] state = new int[] { M3D_UNDEF, M3D_UNDEF };
+        int viSize = model.header.VI_T.size;
 
-                        switch (property.format) {
-                            case COLOR:
-                                switch (model.header.CI_T) {
-                                    case UINT8:
-                                        if (!model.colors.isEmpty()) {
-                                            property.SetPropertyValue((int) fileData.get());
-                                        }
-                                        else {
-                                            property.SetPropertyValue(0);
-                                        }
-                                        fileData.get();
-                                        break;
-                                    case UINT16:
-                                        if (!model.colors.isEmpty()) {
-                                            property.SetPropertyValue(fileData.getShort());
-                                        }
-                                        else {
-                                            property.SetPropertyValue(0);
-                                        }
-                                        break;
-                                    case UINT32:
-                                        if (!model.colors.isEmpty()) {
-                                            property.SetPropertyValue(fileData.getInt());
-                                        }
-                                        else {
-                                            property.SetPropertyValue(0);
-                                        }
-                                        break;
-                                }
-                                break;
-
-                            case UINT8:
-                                property.SetPropertyValue(fileData.get());
-                                fileData.get();
-                                break;
-                            case UINT16:
-                                property.SetPropertyValue(fileData.getShort());
-                                break;
-                            case UINT32:
-                                property.SetPropertyValue(fileData.getInt());
-                                break;
-                            case FLOAT:
-                                property.SetPropertyValue(fileData.getFloat());
-                                break;
-
-                            case MAP:
-                                String name = ReadString(fileData, model.header.SI_T.size);
-                                //todo: get textureId from string...
-                                //property.SetPropertyValue();
-                                break;
-                            default:
-                                logger.out(Tracelog.LogType.LOG_WARNING, "Unknown material property encountered in " + material.name);
-                                break;
-                        }
+        while (fileData.position() < chunkEnd) {
+            byte recordMagic = fileData.get();
+            byte n = (byte) (recordMagic >> 4);
+            byte k = (byte) (recordMagic & 15);
 
-                        material.properties.add(property);
-                    }
+            if (n == 0) {
+                ReadMeshSwitch(fileData, k, state, model);
+                continue;
+            }
 
-                    model.materials.add(material);
-                    break;
+            if (n != 3) {
+                logger.out(Tracelog.LogType.LOG_ERROR, "Only triangle meshes are supported by M3D SDK at this time. Returning null object...");
+                return false;
+            }
 
-                case "PROC":
-                    logger.out(Tracelog.LogType.LOG_DEBUG, "Current position: " + fileData.position());
-                    logger.out(Tracelog.LogType.LOG_DEBUG, "Chunk size: " + chunkSize);
+            if (fileData.remaining() < GetTriangleSize(k, model)) {
+                logger.out(Tracelog.LogType.LOG_ERROR, "Invalid mesh found. Returning null object...");
+                return false;
+            }
 
-                    for (int i = 0; i < chunkSize; i++) {
-                        // todo: load procedural surfaces
-                        fileData.get();
-                    }
-                    break;
+            faces.SetMaterial(state[0], state[1]);
 
-                case "MESH":
-                    if (!VRTS_Loaded) {
-                        logger.out(Tracelog.LogType.LOG_ERROR, "No vertex data loaded prior to mesh data.");
-                    }
+            int corner = faces.faceCount * M3DJ_PackedFaces.CORNERS;
+            for (int j = 0; j < M3DJ_PackedFaces.CORNERS; j++, corner++) {
+                faces.vertices.Read(corner, fileData);
 
-                    logger.out(Tracelog.LogType.LOG_DEBUG, "Current position: " + fileData.position());
-                    logger.out(Tracelog.LogType.LOG_DEBUG, "Chunk size: " + chunkSize);
-                    logger.out(Tracelog.LogType.LOG_DEBUG, "Expected End Position: " + (fileData.position() + chunkSize));
-
-                    int materialIndex = M3D_UNDEF;
-                    int parameterIndex = M3D_UNDEF;
-
-                    for (; fileData.position() < chunkEnd; ) {
-
-                        byte recordMagic = fileData.get();
-                        byte n = (byte) (recordMagic >> 4);
-                        byte k = (byte) (recordMagic & 15);
-
-                        logger.out(Tracelog.LogType.LOG_DEBUG, "Record magic: " + recordMagic);
-                        logger.out(Tracelog.LogType.LOG_DEBUG, "n magic: " + n);
-                        logger.out(Tracelog.LogType.LOG_DEBUG, "k magic: " + k);
-
-                        if(n == 0) {
-                            if (k == 0) {
-                                String name = ReadString(fileData, model.header.SI_T.size);
-                                if (!name.isEmpty()) {
-                                    for (int i = 0; i < model.materials.size(); i++) {
-                                        if (name.equals(model.materials.get(i).name)) {
-                                            materialIndex = i;
-                                            break;
-                                        }
-                                    }
-                                    if (materialIndex == M3D_UNDEF) {
-                                        logger.out(Tracelog.LogType.LOG_ERROR, "Model references unknown material: " + name + ".");
-                                    }
-                                }
-                            }
-                            else {
-                                String name = ReadString(fileData, model.header.SI_T.size);
-                                if (VERTEX_MAX) {
-                                    if (!name.isEmpty()) {
-                                        for (int i = 0; i < model.parameters.size(); i++) {
-                                            if (name.equals(model.parameters.get(i).name)) {
-                                                parameterIndex = i;
-                                                break;
-                                            }
-                                        }
-                                        if (parameterIndex == M3D_UNDEF) {
-                                            M3DJ_Parameter p = new M3DJ_Parameter();
-                                            p.name = name;
-                                            p.count = 0;
-                                            model.parameters.add(p);
-                                            parameterIndex = model.parameters.size();
-                                        }
-                                    }
-                                }
-                                continue;
-                            }
-                        }
+                if ((k & 1) != 0) {
+                    faces.texCoords.Read(corner, fileData);
+                }
 
-                        if (n != 3) {
-                            logger.out(Tracelog.LogType.LOG_ERROR, "Only triangle meshes are supported by M3D SDK at this time. Returning null object...");
-                            return null;
-                        }
+                if ((k & 2) != 0) {
+                    faces.normals.Read(corner, fileData);
+                }
 
-                        M3DJ_Face face = new M3DJ_Face();
-                        face.materialId = materialIndex;
-                        face.paramId = parameterIndex;
-
-                        int j;
-                        for (j = 0; fileData.position() < chunkEnd && j < n; j++) {
-                            face.vertices[j] = GetIndex(fileData, model.header.VI_T.size);
-
-                            if((k & 1) != 0) {
-                                face.texCoords[j] = GetIndex(fileData, model.header.TI_T.size);
-                            }
-
-                            if((k & 2) != 0) {
-                                face.normals[j] = GetIndex(fileData, model.header.VI_T.size);
-                            }
-
-                            if ((k & 4) != 0) {
-                                if(VERTEX_MAX) {
-                                    face.vertMax[j] = GetIndex(fileData, model.header.VI_T.size);
-                                }
-                                else {
-                                    fileData.position(fileData.position() + model.header.VI_T.size);
-                                }
-                            }
-                        }
-                        if (j != n) {
-                            logger.out(Tracelog.LogType.LOG_ERROR, "Invalid mesh found. Returning null object...");
-                            return null;
-                        }
-                        model.faces.add(face);
+                if ((k & 4) != 0) {
+                    if (VERTEX_MAX) {
+                        faces.vertMax.Read(corner, fileData);
                     }
-                    break;
+                    else {
+                        fileData.position(fileData.position() + viSize);
+                    }
+                }
+            }
+            faces.faceCount++;
+        }
 
-                case "SHPE":
-                    logger.out(Tracelog.LogType.LOG_DEBUG, "Current position: " + fileData.position());
-                    logger.out(Tracelog.LogType.LOG_DEBUG, "Chunk size: " + chunkSize);
+        return true;
+    }
 
-                    for (int i = 0; i < chunkSize; i++) {
-                        // todo: load shapes
-                        fileData.get();
-                    }
-                    break;
+    /**
+     * Decodes a mesh chunk in two passes.
+     * The first pass walks the records to apply material and parameter switches and to group consecutive
+     * triangles that share the same layout into runs; triangle records have a fixed size for a given layout,
+     * so their offsets follow from the run start. The second pass decodes the runs in parallel into a
+     * preallocated face array.
+     */
+    private boolean ReadMeshParallel(ByteBuffer fileData, M3DJ_Model model) {
+        int chunkEnd = fileData.limit();
+        int[] state = new int[] { M3D_UNDEF, M3D_UNDEF };
+
+        ArrayList<MeshRun> runs = new ArrayList<>();
+        MeshRun run = null;
+        int faceCount = 0;
+
+        while (fileData.position() < chunkEnd) {
+            int recordStart = fileData.position();
+            byte recordMagic = fileData.get();
+            byte n = (byte) (recordMagic >> 4);
+            byte k = (byte) (recordMagic & 15);
+
+            if (n == 0) {
+                ReadMeshSwitch(fileData, k, state, model);
+                run = null;
+                continue;
+            }
 
-                case "VOXT":
-                    VOXT_Loaded = true;
+            if (n != 3) {
+                logger.out(Tracelog.LogType.LOG_ERROR, "Only triangle meshes are supported by M3D SDK at this time. Returning null object...");
+                return false;
+            }
 
-                    logger.out(Tracelog.LogType.LOG_DEBUG, "Current position: " + fileData.position());
-                    logger.out(Tracelog.LogType.LOG_DEBUG, "Chunk size: " + chunkSize);
+            int stride = Byte.BYTES + GetTriangleSize(k, model);
+            if (recordStart + stride > chunkEnd) {
+                logger.out(Tracelog.LogType.LOG_ERROR, "Invalid mesh found. Returning null object...");
+                return false;
+            }
 
-                    for (int i = 0; i < chunkSize; i++) {
-                        // todo: load voxel types
-                        fileData.get();
-                    }
-                    break;
+            if (run == null || run.k != k) {
+                run = new MeshRun(recordStart, stride, k, state[0], state[1], faceCount);
+                runs.add(run);
+            }
+            run.count++;
+            faceCount++;
 
-                case "VOXD":
-                    logger.out(Tracelog.LogType.LOG_DEBUG, "Current position: " + fileData.position());
-                    logger.out(Tracelog.LogType.LOG_DEBUG, "Chunk size: " + chunkSize);
+            fileData.position(recordStart + stride);
+        }
 
-                    for (int i = 0; i < chunkSize; i++) {
-                        // todo: load voxel data
-                        fileData.get();
-                    }
-                    break;
+        M3DJ_Face[] faces = new M3DJ_Face[faceCount];
+        ArrayList<ForkJoinTask<?>> tasks = new ArrayList<>();
 
-                case "LBLS":
-                    logger.out(Tracelog.LogType.LOG_DEBUG, "Current position: " + fileData.position());
-                    logger.out(Tracelog.LogType.LOG_DEBUG, "Chunk size: " + chunkSize);
+        // Faces kept from a previous load are handed out here, as the model is not safe to share between tasks.
+        int spare = Math.min(faceCount, model.GetSpareFaceCount());
+        for (int i = 0; i < spare; i++) {
+            faces[i] = model.NewFace();
+        }
 
-                    for (int i = 0; i < chunkSize; i++) {
-                        // todo: load animation labels
-                        fileData.get();
+        for (MeshRun r : runs) {
+            for (int first = 0; first < r.count; first += MESH_TASK_FACES) {
+                int start = first;
+                int end = Math.min(r.count, first + MESH_TASK_FACES);
+
+                tasks.add(ForkJoinTask.adapt(() -> {
+                    ByteBuffer buffer = fileData.duplicate().order(ByteOrder.LITTLE_ENDIAN);
+                    for (int i = start; i < end; i++) {
+                        int f = r.firstFace + i;
+                        M3DJ_Face face = f < spare ? faces[f] : new M3DJ_Face();
+                        face.materialId = r.material;
+                        face.paramId = r.parameter;
+
+                        buffer.position(r.offset + (i * r.stride) + Byte.BYTES);
+                        ReadTriangle(buffer, r.k, face, model);
+                        faces[f] = face;
                     }
-                    break;
+                }));
+            }
+        }
 
-                case "ACTN":
-                    logger.out(Tracelog.LogType.LOG_DEBUG, "Current position: " + fileData.position());
-                    logger.out(Tracelog.LogType.LOG_DEBUG, "Chunk size: " + chunkSize);
+        ForkJoinTask.invokeAll(tasks);
 
-                    for (int i = 0; i < chunkSize; i++) {
-                        // todo: load actions and animations
-                        fileData.get();
-                    }
-                    break;
+        model.faces.addAll(Arrays.asList(faces));
+
+        return true;
+    }
 
-                case "ASET":
-                    logger.out(Tracelog.LogType.LOG_DEBUG, "Current position: " + fileData.position());
-                    logger.out(Tracelog.LogType.LOG_DEBUG, "Chunk size: " + chunkSize);
+    /**
+     * Consecutive triangle records of a mesh chunk that share the same layout, material and parameter.
+     */
+    private static class MeshRun {
+        final int offset;
+        final int stride;
+        final byte k;
+        final int material;
+        final int parameter;
+        final int firstFace;
+        int count;
+
+        MeshRun(int offset, int stride, byte k, int material, int parameter, int firstFace) {
+            this.offset = offset;
+            this.stride = stride;
+            this.k = k;
+            this.material = material;
+            this.parameter = parameter;
+            this.firstFace = firstFace;
+        }
+    }
 
-                    for (int i = 0; i < chunkSize; i++) {
-                        // todo: load assets
-                        fileData.get();
+    /**
+     * Applies a material (k == 0) or parameter (k != 0) switch record to the mesh state.
+     * @param state Current material index and parameter index, updated in place.
+     */
+    private void ReadMeshSwitch(ByteBuffer fileData, byte k, int[] state, M3DJ_Model model) {
+        if (k == 0) {
+            String name = ReadStringReference(fileData, model.header);
+            if (!name.isEmpty()) {
+                for (int i = 0; i < model.materials.size(); i++) {
+                    if (name.equals(model.materials.get(i).name)) {
+                        state[0] = i;
+                        break;
                     }
-                    break;
+                }
+                if (state[0] == M3D_UNDEF && IsChunkWanted(Magic.MTRL)) {
+                    logger.out(Tracelog.LogType.LOG_ERROR, "Model references unknown material: " + name + ".");
+                }
+            }
+        }
+        else {
+            String name = ReadStringReference(fileData, model.header);
+            if (VERTEX_MAX) {
+                if (!name.isEmpty()) {
+                    for (int i = 0; i < model.parameters.size(); i++) {
+                        if (name.equals(model.parameters.get(i).name)) {
+                            state[1] = i;
+                            break;
+                        }
+                    }
+                    if (state[1] == M3D_UNDEF) {
+                        M3DJ_Parameter p = new M3DJ_Parameter();
+                        p.name = name;
+                        p.count = 0;
+                        model.parameters.add(p);
+                        state[1] = model.parameters.size();
+                    }
+                }
+            }
+        }
+    }
 
-                case "OMD3":
-                    logger.out(Tracelog.LogType.LOG_DEBUG, "Current position: " + fileData.position());
-                    logger.out(Tracelog.LogType.LOG_DEBUG, "Expected end position: " + fileData.capacity());
-                    logger.out(Tracelog.LogType.LOG_DEBUG, "End of file reached.");
-                    return model;
+    /**
+     * @return Size in bytes of a triangle record following its magic byte, for the layout flags k.
+     */
+    private int GetTriangleSize(byte k, M3DJ_Model model) {
+        int cornerSize = model.header.VI_T.size;
+        if ((k & 1) != 0) {
+            cornerSize += model.header.TI_T.size;
+        }
+        if ((k & 2) != 0) {
+            cornerSize += model.header.VI_T.size;
+        }
+        if ((k & 4) != 0) {
+            cornerSize += model.header.VI_T.size;
+        }
+        return cornerSize * 3;
+    }
 
-                default:
-                    logger.out(Tracelog.LogType.LOG_WARNING, "Unexpected magic value encountered:" +
-                            "\n\t" + magic + " at position " + fileData.position() + ". Attempting to skip and continue parsing...");
-                    break;
+    /**
+     * Reads the three corners of a triangle record following its magic byte.
+     * @return false if the chunk ends before all corners were read.
+     */
+    private boolean ReadTriangle(ByteBuffer fileData, byte k, M3DJ_Face face, M3DJ_Model model) {
+        int chunkEnd = fileData.limit();
+        int n = 3;
+
+        int j;
+        for (j = 0; fileData.position() < chunkEnd && j < n; j++) {
+            face.vertices[j] = GetIndex(fileData, model.header.VI_T.size);
+
+            if((k & 1) != 0) {
+                face.texCoords[j] = GetIndex(fileData, model.header.TI_T.size);
+            }
+
+            if((k & 2) != 0) {
+                face.normals[j] = GetIndex(fileData, model.header.VI_T.size);
             }
 
-            logger.out(Tracelog.LogType.LOG_DEBUG, "Current position: " + fileData.position());
+            if ((k & 4) != 0) {
+                if(VERTEX_MAX) {
+                    face.vertMax[j] = GetIndex(fileData, model.header.VI_T.size);
+                }
+                else {
+                    fileData.position(fileData.position() + model.header.VI_T.size);
+                }
+            }
         }
 
-        // Model is only valid if end chunk exists.
-        return null;
+        return j == n;
     }
 
+    /**
+     * Reads an index of the given size. Narrow indices are unsigned except for their two highest values,
+     * which stand for the negative markers (M3D_UNDEF being -1).
+     */
     private int GetIndex(ByteBuffer fileData, int indexSize) {
         return switch (indexSize) {
-            case 1 -> fileData.get();
-            case 2 -> fileData.getShort();
+            case 1 -> {
+                byte value = fileData.get();
+                yield Byte.toUnsignedInt(value) > 253 ? value : Byte.toUnsignedInt(value);
+            }
+            case 2 -> {
+                short value = fileData.getShort();
+                yield Short.toUnsignedInt(value) > 65533 ? value : Short.toUnsignedInt(value);
+            }
             case 4 -> fileData.getInt();
             default -> 0;
         };
     }
 
-    private String ReadString(ByteBuffer fileData, int stringOffset) {
-        String result = "";
-        char c;
+    /**
+     * Reads an SI_T sized string offset and resolves it against the header string table.
+     */
+    private String ReadStringReference(ByteBuffer fileData, M3DJ_Header header) {
+        int offset = switch (header.SI_T.size) {
+            case 1 -> fileData.get() & 0xFF;
+            case 2 -> fileData.getShort() & 0xFFFF;
+            case 4 -> fileData.getInt();
+            default -> 0;
+        };
+        return header.GetString(offset);
+    }
 
-        do {
-            c = (char) fileData.get();
-            if (c != '\0') {
-                result += c;
-            }
-        } while(c != '\0');
+    /**
+     * Reads a null-terminated UTF-8 string and leaves the buffer positioned after its terminator.
+     */
+    private String ReadString(ByteBuffer fileData) {
+        int start = fileData.position();
+        int end = start;
+        while (end < fileData.limit() && fileData.get(end) != 0) {
+            end++;
+        }
 
-        for (int i = 0; i < stringOffset; i++) {
-            fileData.get();
+        String result;
+        if (fileData.hasArray()) {
+            result = new String(fileData.array(), fileData.arrayOffset() + start, end - start, StandardCharsets.UTF_8);
+        }
+        else {
+            byte[] bytes = new byte[end - start];
+            fileData.get(start, bytes);
+            result = new String(bytes, StandardCharsets.UTF_8);
         }
 
+        fileData.position(Math.min(end + 1, fileData.limit()));
         return result;
     }
 
-    private ByteBuffer DecompressDataBuffer(ByteBuffer compressedData) {
-        Inflater inflater = new Inflater();
-        inflater.setInput(compressedData);
-
-        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
-        byte[] buffer = new byte[1024];
-
+    private ByteBuffer DecompressDataBuffer(ByteBuffer compressedData, boolean detach) {
         try {
-            while (inflater.getRemaining() > 0) {
-                int decompressedSize = inflater.inflate(buffer);
-                outputStream.write(buffer, 0, decompressedSize);
-            }
+            return GetDecompressor().Inflate(compressedData, detach);
         }
         catch (DataFormatException e) {
             throw new RuntimeException(e);
         }
-        finally {
-            inflater.end();
-        }
-
-        ByteBuffer result = ByteBuffer.allocateDirect(outputStream.size());
-        result.put(outputStream.toByteArray());
-        result.order(ByteOrder.LITTLE_ENDIAN);
-        result.flip();
-
-        return result;
     }
 
-}
\ No newline at end of file
+}
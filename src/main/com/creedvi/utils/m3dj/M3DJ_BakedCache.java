@@ -0,0 +1,451 @@
+package com.creedvi.utils.m3dj;
+
+import com.creedvi.utils.m3dj.io.BufferChunkReader;
+import com.creedvi.utils.m3dj.io.ChunkIndex;
+import com.creedvi.utils.m3dj.io.ChunkReader;
+import com.creedvi.utils.m3dj.io.ChunkReader.Magic;
+import com.creedvi.utils.m3dj.model.M3DJ_BakedModel;
+import com.creedvi.utils.m3dj.model.M3DJ_IndexBuffer;
+import com.creedvi.utils.m3dj.model.M3DJ_PackedFaces;
+import com.creedvi.utils.m3dj.model.M3DJ_PackedModel;
+
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+
+/**
+ * Keeps decoded models in baked files, which are opened by mapping them rather than by decoding.
+ * The first time a model is requested it is loaded from its source file and written out already decoded, as the
+ * aligned arrays of M3DJ_PackedModel behind a small section directory. Later requests map the baked file and
+ * expose it as an M3DJ_BakedModel; only the header and materials are decoded, from a copy of their chunks.
+ * A baked file records the size and modification time of its source and is baked again once they change. In a
+ * cache directory it also records a SHA-256 hash of the real path of its source, so a file baked from another
+ * source under the same name is baked again rather than opened. Baked files always hold every chunk, whatever the
+ * parser's load options.
+ *
+ * Baked file layout, little-endian:
+ *   Header (88 bytes): "M3DB", version, source size (long), source modification time in ms (long), vertex count,
+ *                      colour count, texture coordinate count, face count, run count, 1 if double precision,
+ *                      section count, reserved, source path hash (32 bytes, zero next to the source).
+ *   Directory: per section its magic, index size, offset (long) and length (long) in bytes.
+ *   Sections, each starting at a multiple of 8 bytes: PRVW preview, META header and material chunks ending in
+ *   OMD3, VRTS positions, VCOL colour indices, VSKN skin indices, CMAP palette, TMAP texture coordinates,
+ *   FVTX, FTEX, FNRM and FMAX face index streams at the width of their index size, and RUNF, RUNM and RUNP runs.
+ *   Sections of data the model does not have are left out.
+ */
+public class M3DJ_BakedCache {
+
+    private static final int MAGIC = ChunkReader.PackMagic("M3DB");
+    // Changed whenever the layout changes, so files baked by another version are baked again.
+    private static final int VERSION = 2;
+    private static final int HEADER_LENGTH = 88;
+    private static final int PATH_HASH_OFFSET = 56;
+    private static final int PATH_HASH_LENGTH = 32;
+    private static final int SECTION_LENGTH = 24;
+    private static final int ALIGNMENT = 8;
+    private static final String EXTENSION = ".m3db";
+    private static final ByteBuffer EMPTY = ByteBuffer.allocate(0);
+
+    private static class Section {
+        final int magic;
+        final int indexSize;
+        long offset;
+        long length;
+
+        Section(String magic, int indexSize) {
+            this.magic = ChunkReader.PackMagic(magic);
+            this.indexSize = indexSize;
+        }
+    }
+
+    private final M3DJ parser;
+    private final Path directory;
+
+    /**
+     * Creates a cache that writes each baked file next to its source, named after it with the extension
+     * replaced by .m3db.
+     * @param parser Parser loading the source files.
+     */
+    public M3DJ_BakedCache(M3DJ parser) {
+        this(parser, null);
+    }
+
+    /**
+     * Creates a cache that writes baked files into the given directory.
+     * @param parser Parser loading the source files.
+     * @param directory String path to the directory; created if it does not exist.
+     */
+    public M3DJ_BakedCache(M3DJ parser, String directory) {
+        this.parser = parser;
+        this.directory = directory != null ? Paths.get(directory) : null;
+    }
+
+    /**
+     * Opens the baked model of a file, baking it first if there is no baked file or its source changed.
+     * @param fileName String path to the source file location.
+     * @return Baked model of the file, or null if the file is not a valid binary M3D model or is 2 GiB or larger.
+     * @throws IOException if the source or baked file cannot be read, or the baked file cannot be written.
+     */
+    public M3DJ_BakedModel Load(String fileName) throws IOException {
+        Path source = Paths.get(fileName);
+        BasicFileAttributes attributes = Files.readAttributes(source, BasicFileAttributes.class);
+        byte[] pathHash = directory != null ? HashPath(source) : new byte[PATH_HASH_LENGTH];
+        Path baked = GetBakedPath(source, pathHash);
+
+        if (Files.isRegularFile(baked)) {
+            M3DJ_BakedModel model = Open(baked, attributes, pathHash);
+            if (model != null) {
+                return model;
+            }
+        }
+
+        if (!Bake(source, baked, attributes, pathHash)) {
+            return null;
+        }
+        return Open(baked, attributes, pathHash);
+    }
+
+    /**
+     * @return Path of the baked file of the given source file.
+     */
+    public Path GetBakedPath(Path source) throws IOException {
+        return GetBakedPath(source, directory != null ? HashPath(source) : null);
+    }
+
+    private Path GetBakedPath(Path source, byte[] pathHash) {
+        if (directory == null) {
+            String name = source.getFileName().toString();
+            int extension = name.lastIndexOf('.');
+            return source.resolveSibling((extension > 0 ? name.substring(0, extension) : name) + EXTENSION);
+        }
+        // Sources of the same name in different directories share the cache directory.
+        String name = source.getFileName() + "-" + Long.toHexString(ByteBuffer.wrap(pathHash).getLong());
+        return directory.resolve(name + EXTENSION);
+    }
+
+    private static byte[] HashPath(Path source) throws IOException {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        }
+        catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+        return digest.digest(source.toRealPath().toString().getBytes(StandardCharsets.UTF_8));
+    }
+
+    private boolean Bake(Path source, Path baked, BasicFileAttributes attributes, byte[] pathHash) throws IOException {
+        M3DJ load = parser.Snapshot();
+        load.EnableQuantizedResidency(false);
+        try {
+            return Bake(source, baked, attributes, pathHash, load);
+        }
+        finally {
+            load.M3DJ_Release();
+        }
+    }
+
+    private boolean Bake(Path source, Path baked, BasicFileAttributes attributes, byte[] pathHash, M3DJ load) throws IOException {
+        ByteBuffer fileData = load.M3DJ_ReadFile(source.toString());
+        if (fileData == null) {
+            return false;
+        }
+
+        M3DJ_PackedModel model = new M3DJ_PackedModel();
+        ByteBuffer body = load.M3DJ_ReadBody(fileData, model);
+        if (body == null || load.M3DJ_LoadChunks(new BufferChunkReader(body.duplicate()), model) == null) {
+            return false;
+        }
+
+        M3DJ_PackedFaces faces = model.packedFaces;
+        ArrayList<Section> sections = new ArrayList<>();
+        ByteBuffer meta = CopyMetadata(body);
+
+        if (model.preview.imageData != null) {
+            AddSection(sections, "PRVW", 1, model.preview.imageData.remaining());
+        }
+        AddSection(sections, "META", 1, meta.remaining());
+        if (model.vertexCount > 0) {
+            int positionSize = model.IsDoublePrecision() ? Double.BYTES : Float.BYTES;
+            AddSection(sections, "VRTS", positionSize, (long) model.vertexCount * M3DJ_PackedModel.POSITION_COMPONENTS * positionSize);
+            AddSection(sections, "VCOL", Integer.BYTES, (long) model.vertexCount * Integer.BYTES);
+            AddSection(sections, "VSKN", Integer.BYTES, (long) model.vertexCount * Integer.BYTES);
+        }
+        if (model.colorCount > 0) {
+            AddSection(sections, "CMAP", Integer.BYTES, (long) model.colorCount * Integer.BYTES);
+        }
+        if (model.texCoordCount > 0) {
+            AddSection(sections, "TMAP", Float.BYTES, (long) model.texCoordCount * M3DJ_PackedModel.TEXCOORD_COMPONENTS * Float.BYTES);
+        }
+        if (faces.faceCount > 0) {
+            AddStream(sections, "FVTX", faces.vertices, faces.faceCount);
+            AddStream(sections, "FTEX", faces.texCoords, faces.faceCount);
+            AddStream(sections, "FNRM", faces.normals, faces.faceCount);
+            AddStream(sections, "FMAX", faces.vertMax, faces.faceCount);
+        }
+        if (faces.runCount > 0) {
+            for (String magic : new String[] { "RUNF", "RUNM", "RUNP" }) {
+                AddSection(sections, magic, Integer.BYTES, (long) faces.runCount * Integer.BYTES);
+            }
+        }
+
+        long size = HEADER_LENGTH + (long) sections.size() * SECTION_LENGTH;
+        for (Section section : sections) {
+            size = Align(size);
+            section.offset = size;
+            size += section.length;
+        }
+        if (size > Integer.MAX_VALUE) {
+            return false;
+        }
+
+        ByteBuffer out = ByteBuffer.allocate((int) size).order(ByteOrder.LITTLE_ENDIAN);
+        out.putInt(MAGIC).putInt(VERSION);
+        out.putLong(attributes.size()).putLong(attributes.lastModifiedTime().toMillis());
+        out.putInt(model.vertexCount).putInt(model.colorCount).putInt(model.texCoordCount);
+        out.putInt(faces.faceCount).putInt(faces.runCount);
+        out.putInt(model.IsDoublePrecision() ? 1 : 0).putInt(sections.size()).putInt(0);
+        out.put(pathHash);
+        for (Section section : sections) {
+            out.putInt(section.magic).putInt(section.indexSize).putLong(section.offset).putLong(section.length);
+        }
+
+        for (Section section : sections) {
+            out.position((int) section.offset);
+            switch (ChunkReader.UnpackMagic(section.magic)) {
+                case "PRVW" -> out.put(model.preview.imageData.duplicate());
+                case "META" -> out.put(meta);
+                case "VRTS" -> {
+                    int length = model.vertexCount * M3DJ_PackedModel.POSITION_COMPONENTS;
+                    if (model.IsDoublePrecision()) {
+                        out.asDoubleBuffer().put(model.positionsDouble, 0, length);
+                    }
+                    else {
+                        out.asFloatBuffer().put(model.positions, 0, length);
+                    }
+                }
+                case "VCOL" -> out.asIntBuffer().put(model.colorIndices, 0, model.vertexCount);
+                case "VSKN" -> out.asIntBuffer().put(model.skinIndices, 0, model.vertexCount);
+                case "CMAP" -> out.asIntBuffer().put(model.palette, 0, model.colorCount);
+                case "TMAP" -> out.asFloatBuffer().put(model.texCoords, 0, model.texCoordCount * M3DJ_PackedModel.TEXCOORD_COMPONENTS);
+                case "FVTX" -> faces.vertices.Write(out, faces.faceCount * M3DJ_PackedFaces.CORNERS);
+                case "FTEX" -> faces.texCoords.Write(out, faces.faceCount * M3DJ_PackedFaces.CORNERS);
+                case "FNRM" -> faces.normals.Write(out, faces.faceCount * M3DJ_PackedFaces.CORNERS);
+                case "FMAX" -> faces.vertMax.Write(out, faces.faceCount * M3DJ_PackedFaces.CORNERS);
+                case "RUNF" -> out.asIntBuffer().put(faces.runFirstFace, 0, faces.runCount);
+                case "RUNM" -> out.asIntBuffer().put(faces.runMaterial, 0, faces.runCount);
+                case "RUNP" -> out.asIntBuffer().put(faces.runParameter, 0, faces.runCount);
+            }
+        }
+        out.clear();
+
+        Path parent = baked.toAbsolutePath().getParent();
+        Files.createDirectories(parent);
+
+        // Written aside and moved into place, so a baked file is never seen half written.
+        Path temporary = Files.createTempFile(parent, baked.getFileName().toString(), ".tmp");
+        try {
+            try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.WRITE)) {
+                while (out.hasRemaining()) {
+                    channel.write(out);
+                }
+            }
+            try {
+                Files.move(temporary, baked, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            }
+            catch (AtomicMoveNotSupportedException e) {
+                Files.move(temporary, baked, StandardCopyOption.REPLACE_EXISTING);
+            }
+        }
+        finally {
+            Files.deleteIfExists(temporary);
+        }
+        return true;
+    }
+
+    private static void AddSection(ArrayList<Section> sections, String magic, int indexSize, long length) {
+        Section section = new Section(magic, indexSize);
+        section.length = length;
+        sections.add(section);
+    }
+
+    private static void AddStream(ArrayList<Section> sections, String magic, M3DJ_IndexBuffer stream, int faceCount) {
+        if (stream != null) {
+            AddSection(sections, magic, stream.indexSize, (long) faceCount * M3DJ_PackedFaces.CORNERS * stream.Width());
+        }
+    }
+
+    /**
+     * @return The header and material chunks of a model body, followed by an end chunk.
+     */
+    private static ByteBuffer CopyMetadata(ByteBuffer body) {
+        ChunkIndex index = ChunkIndex.Build(body);
+
+        int size = ChunkReader.MAGIC_LENGTH;
+        for (int i = 0; i < index.Count(); i++) {
+            if (index.GetMagic(i) == Magic.HEAD || index.GetMagic(i) == Magic.MTRL) {
+                size += ChunkReader.HEADER_LENGTH + index.GetLength(i);
+            }
+        }
+
+        ByteBuffer meta = ByteBuffer.allocate(size).order(ByteOrder.LITTLE_ENDIAN);
+        for (int i = 0; i < index.Count(); i++) {
+            if (index.GetMagic(i) == Magic.HEAD || index.GetMagic(i) == Magic.MTRL) {
+                meta.put(body.slice(index.GetOffset(i) - ChunkReader.HEADER_LENGTH, ChunkReader.HEADER_LENGTH + index.GetLength(i)));
+            }
+        }
+        meta.putInt(Magic.OMD3);
+        return meta.flip();
+    }
+
+    /**
+     * Maps a baked file.
+     * @return The baked model, or null if the file was baked from another source, a different version of the
+     * source or by a different version of the cache, or is damaged.
+     */
+    private M3DJ_BakedModel Open(Path baked, BasicFileAttributes attributes, byte[] pathHash) throws IOException {
+        MappedByteBuffer mapped;
+        try (FileChannel channel = FileChannel.open(baked, StandardOpenOption.READ)) {
+            if (channel.size() < HEADER_LENGTH || channel.size() > Integer.MAX_VALUE) {
+                return null;
+            }
+            mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+        ByteBuffer data = mapped.order(ByteOrder.LITTLE_ENDIAN);
+
+        if (data.getInt(0) != MAGIC || data.getInt(4) != VERSION ||
+            data.getLong(8) != attributes.size() || data.getLong(16) != attributes.lastModifiedTime().toMillis() ||
+            !data.slice(PATH_HASH_OFFSET, PATH_HASH_LENGTH).equals(ByteBuffer.wrap(pathHash))) {
+            return null;
+        }
+
+        M3DJ_BakedModel model = new M3DJ_BakedModel();
+        M3DJ_PackedFaces faces = model.packedFaces;
+        model.vertexCount = data.getInt(24);
+        model.colorCount = data.getInt(28);
+        model.texCoordCount = data.getInt(32);
+        faces.faceCount = data.getInt(36);
+        faces.runCount = data.getInt(40);
+        model.doublePrecision = data.getInt(44) != 0;
+        int sectionCount = data.getInt(48);
+
+        if (model.vertexCount < 0 || model.colorCount < 0 || model.texCoordCount < 0 || faces.faceCount < 0 ||
+            faces.runCount < 0 || sectionCount < 0 || HEADER_LENGTH + (long) sectionCount * SECTION_LENGTH > data.capacity()) {
+            return null;
+        }
+
+        ByteBuffer meta = null;
+        for (int i = 0; i < sectionCount; i++) {
+            int entry = HEADER_LENGTH + i * SECTION_LENGTH;
+            String magic = ChunkReader.UnpackMagic(data.getInt(entry));
+            int indexSize = data.getInt(entry + 4);
+            long offset = data.getLong(entry + 8);
+            long length = data.getLong(entry + 16);
+            if (offset < 0 || length < 0 || offset > data.capacity() || length > data.capacity() - offset ||
+                length != GetSectionLength(magic, indexSize, length, model)) {
+                return null;
+            }
+            ByteBuffer section = data.slice((int) offset, (int) length).order(ByteOrder.LITTLE_ENDIAN);
+
+            switch (magic) {
+                case "PRVW" -> model.preview.imageData = section;
+                case "META" -> meta = section;
+                case "VRTS" -> model.positions = section;
+                case "VCOL" -> model.colorIndices = section;
+                case "VSKN" -> model.skinIndices = section;
+                case "CMAP" -> model.palette = section;
+                case "TMAP" -> model.texCoords = section;
+                case "FVTX" -> faces.vertices = new M3DJ_IndexBuffer(indexSize, section);
+                case "FTEX" -> faces.texCoords = new M3DJ_IndexBuffer(indexSize, section);
+                case "FNRM" -> faces.normals = new M3DJ_IndexBuffer(indexSize, section);
+                case "FMAX" -> faces.vertMax = new M3DJ_IndexBuffer(indexSize, section);
+                case "RUNF" -> faces.runFirstFace = ReadInts(section, faces.runCount);
+                case "RUNM" -> faces.runMaterial = ReadInts(section, faces.runCount);
+                case "RUNP" -> faces.runParameter = ReadInts(section, faces.runCount);
+            }
+        }
+
+        if (meta == null || !IsComplete(model)) {
+            return null;
+        }
+        try {
+            if (parser.Snapshot().M3DJ_LoadChunks(new BufferChunkReader(meta), model) == null) {
+                return null;
+            }
+        }
+        catch (IndexOutOfBoundsException | BufferUnderflowException e) {
+            // Damaged header or material chunks.
+            return null;
+        }
+        return model;
+    }
+
+    /**
+     * @return Length in bytes a section must have for the counts of the model, the given length for sections of
+     * any length, or -1 for sections the cache does not write.
+     */
+    private static long GetSectionLength(String magic, int indexSize, long length, M3DJ_BakedModel model) {
+        long corners = (long) model.packedFaces.faceCount * M3DJ_PackedFaces.CORNERS;
+        return switch (magic) {
+            case "PRVW", "META" -> length;
+            case "VRTS" -> (long) model.vertexCount * M3DJ_PackedModel.POSITION_COMPONENTS * (model.doublePrecision ? Double.BYTES : Float.BYTES);
+            case "VCOL", "VSKN" -> (long) model.vertexCount * Integer.BYTES;
+            case "CMAP" -> (long) model.colorCount * Integer.BYTES;
+            case "TMAP" -> (long) model.texCoordCount * M3DJ_PackedModel.TEXCOORD_COMPONENTS * Float.BYTES;
+            case "FVTX", "FTEX", "FNRM", "FMAX" -> corners * new M3DJ_IndexBuffer(indexSize, EMPTY).Width();
+            case "RUNF", "RUNM", "RUNP" -> (long) model.packedFaces.runCount * Integer.BYTES;
+            default -> -1;
+        };
+    }
+
+    /**
+     * @return true if every section the counts of the model call for is present and the runs are in order.
+     */
+    private static boolean IsComplete(M3DJ_BakedModel model) {
+        M3DJ_PackedFaces faces = model.packedFaces;
+        if (model.vertexCount > 0 && (model.positions == null || model.colorIndices == null || model.skinIndices == null)) {
+            return false;
+        }
+        if ((model.colorCount > 0 && model.palette == null) || (model.texCoordCount > 0 && model.texCoords == null)) {
+            return false;
+        }
+        if (faces.vertices.Length() < faces.faceCount * M3DJ_PackedFaces.CORNERS) {
+            return false;
+        }
+        if (faces.runFirstFace.length < faces.runCount || faces.runMaterial.length < faces.runCount ||
+            faces.runParameter.length < faces.runCount) {
+            return false;
+        }
+        for (int run = 0; run < faces.runCount; run++) {
+            int first = faces.runFirstFace[run];
+            if (first < (run > 0 ? faces.runFirstFace[run - 1] : 0) || first > faces.faceCount) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static int[] ReadInts(ByteBuffer section, int count) {
+        int[] values = new int[count];
+        section.asIntBuffer().get(values);
+        return values;
+    }
+
+    private static long Align(long offset) {
+        return (offset + ALIGNMENT - 1) & -ALIGNMENT;
+    }
+}
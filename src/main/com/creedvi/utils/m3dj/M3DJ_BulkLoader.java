@@ -0,0 +1,270 @@
+package com.creedvi.utils.m3dj;
+
+import com.creedvi.utils.m3dj.model.M3DJ_Model;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.PathMatcher;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+
+/**
+ * Loads many model files at once through a shared parser.
+ * Reading a file and decoding it are separate steps, each limited to its own number of threads, so slow storage
+ * keeps the decoding threads busy rather than blocking them. Every file is loaded as M3DJ.LoadFile would load it,
+ * with the parser's configuration at the time the bulk load starts.
+ * At most twice as many files as there are decoding threads are read ahead of decoding, so memory stays bounded by
+ * the parallelism rather than growing with the number of files. The reading and decoding threads are kept between
+ * bulk loads and end on their own once idle.
+ */
+public class M3DJ_BulkLoader {
+
+    /**
+     * Outcome of a bulk load.
+     */
+    public static class Result {
+        // Loaded models, keyed by file name in the order the files were given.
+        public final LinkedHashMap<String, M3DJ_Model> models = new LinkedHashMap<>();
+        // Files that failed to load, with the exception that stopped them. Files that are not valid models
+        // (LoadFile returning null) are reported with an IOException.
+        public final LinkedHashMap<String, Throwable> failures = new LinkedHashMap<>();
+
+        public long bytesRead;
+        // Wall-clock time of the whole bulk load.
+        public long elapsedNanos;
+        // Time spent reading and decoding, summed over all files and threads.
+        public long readNanos;
+        public long decodeNanos;
+    }
+
+    private final M3DJ parser;
+
+    // Seconds an idle reading or decoding thread is kept for the next bulk load.
+    private static final long KEEP_ALIVE_SECONDS = 30;
+    // Files read or being decoded at once, per decoding thread.
+    private static final int FILES_IN_FLIGHT_PER_THREAD = 2;
+
+    private int ioParallelism = 4;
+    private int cpuParallelism = Runtime.getRuntime().availableProcessors();
+    private ThreadPoolExecutor io;
+    private ThreadPoolExecutor cpu;
+
+    public M3DJ_BulkLoader(M3DJ parser) {
+        this.parser = parser;
+    }
+
+    /**
+     * Set the number of files read at the same time.
+     * Default is 4.
+     * @param threads Number of threads reading files; at least 1.
+     */
+    public synchronized void SetIoParallelism(int threads) {
+        this.ioParallelism = Math.max(1, threads);
+        Resize(io, ioParallelism);
+    }
+
+    /**
+     * Set the number of files decoded at the same time.
+     * Default is the number of available processors.
+     * @param threads Number of threads decoding files; at least 1.
+     */
+    public synchronized void SetCpuParallelism(int threads) {
+        this.cpuParallelism = Math.max(1, threads);
+        Resize(cpu, cpuParallelism);
+    }
+
+    /**
+     * Loads every binary model file (.m3d, in any case) directly inside a directory.
+     * ASCII models (.a3d) are not supported by the parser and are left out.
+     * @param directory String path to the directory.
+     * @return Models and failures, keyed by file name in name order.
+     * @throws IOException if the directory cannot be listed.
+     */
+    public Result LoadDirectory(String directory) throws IOException {
+        ArrayList<String> fileNames = new ArrayList<>();
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(Paths.get(directory))) {
+            for (Path file : files) {
+                if (Files.isRegularFile(file) && file.getFileName().toString().toLowerCase(Locale.ROOT).endsWith(".m3d")) {
+                    fileNames.add(file.toString());
+                }
+            }
+        }
+        fileNames.sort(null);
+        return LoadFiles(fileNames);
+    }
+
+    /**
+     * Loads every file below a directory whose path relative to it matches a glob, such as "**.m3d" or
+     * "props/*.m3d". The syntax is that of FileSystem.getPathMatcher.
+     * @param directory String path to the directory searched.
+     * @param glob Glob matched against paths relative to the directory.
+     * @return Models and failures, keyed by file name in path order.
+     * @throws IOException if the directory cannot be walked.
+     */
+    public Result LoadGlob(String directory, String glob) throws IOException {
+        Path root = Paths.get(directory);
+        PathMatcher matcher = root.getFileSystem().getPathMatcher("glob:" + glob);
+
+        ArrayList<String> fileNames = new ArrayList<>();
+        try (Stream<Path> files = Files.walk(root)) {
+            files.filter(file -> Files.isRegularFile(file) && matcher.matches(root.relativize(file)))
+                 .sorted()
+                 .forEach(file -> fileNames.add(file.toString()));
+        }
+        return LoadFiles(fileNames);
+    }
+
+    /**
+     * Loads the files listed in a manifest: one path per line, relative to the manifest's directory unless
+     * absolute. Blank lines and lines starting with '#' are skipped.
+     * @param manifest String path to the manifest.
+     * @return Models and failures, keyed by file name in manifest order.
+     * @throws IOException if the manifest cannot be read.
+     */
+    public Result LoadManifest(String manifest) throws IOException {
+        Path base = Paths.get(manifest).toAbsolutePath().getParent();
+
+        ArrayList<String> fileNames = new ArrayList<>();
+        for (String line : Files.readAllLines(Paths.get(manifest))) {
+            line = line.trim();
+            if (line.isEmpty() || line.startsWith("#")) {
+                continue;
+            }
+            fileNames.add(base.resolve(line).normalize().toString());
+        }
+        return LoadFiles(fileNames);
+    }
+
+    /**
+     * Loads the given files. A file listed more than once is loaded once.
+     * @param fileNames String paths to the files.
+     * @return Models and failures, keyed by file name in the given order.
+     */
+    public Result LoadFiles(List<String> fileNames) {
+        Result result = new Result();
+        AtomicLong bytesRead = new AtomicLong();
+        AtomicLong readNanos = new AtomicLong();
+        AtomicLong decodeNanos = new AtomicLong();
+
+        long start = System.nanoTime();
+        ExecutorService io;
+        ExecutorService cpu;
+        Semaphore inFlight;
+        synchronized (this) {
+            if (this.io == null) {
+                this.io = NewPool(ioParallelism, "M3DJ-Read");
+                this.cpu = NewPool(cpuParallelism, "M3DJ-Decode");
+            }
+            io = this.io;
+            cpu = this.cpu;
+            inFlight = new Semaphore(cpuParallelism * FILES_IN_FLIGHT_PER_THREAD);
+        }
+
+        LinkedHashMap<String, CompletableFuture<M3DJ_Model>> loads = new LinkedHashMap<>();
+        for (String fileName : fileNames) {
+            if (loads.containsKey(fileName)) {
+                continue;
+            }
+
+            // Read data waits for a decoding thread on the heap, so a file is only read once an earlier one is done.
+            inFlight.acquireUninterruptibly();
+
+            // One snapshot per file carries the state of its load from the reading thread to the decoding one.
+            M3DJ load = parser.Snapshot();
+
+            CompletableFuture<M3DJ_Model> model = CompletableFuture.supplyAsync(() -> {
+                long readStart = System.nanoTime();
+                try {
+                    ByteBuffer fileData = load.M3DJ_ReadFile(fileName);
+                    if (fileData != null) {
+                        bytesRead.addAndGet(fileData.remaining());
+                    }
+                    return fileData;
+                }
+                catch (IOException e) {
+                    throw new CompletionException(e);
+                }
+                finally {
+                    readNanos.addAndGet(System.nanoTime() - readStart);
+                }
+            }, io).thenApplyAsync(fileData -> {
+                long decodeStart = System.nanoTime();
+                try {
+                    // Files that cannot be staged in memory are read and decoded in one go.
+                    return fileData != null ? load.M3DJ_LoadData(fileData, new M3DJ_Model()) : load.M3DJ_LoadFile(fileName, new M3DJ_Model());
+                }
+                catch (IOException e) {
+                    throw new CompletionException(e);
+                }
+                finally {
+                    decodeNanos.addAndGet(System.nanoTime() - decodeStart);
+                }
+            }, cpu);
+            model.whenComplete((decoded, e) -> inFlight.release());
+
+            loads.put(fileName, model);
+        }
+
+        for (var load : loads.entrySet()) {
+            try {
+                M3DJ_Model model = load.getValue().join();
+                if (model != null) {
+                    result.models.put(load.getKey(), model);
+                }
+                else {
+                    result.failures.put(load.getKey(), new IOException("Not a valid M3D model: " + load.getKey()));
+                }
+            }
+            catch (CompletionException e) {
+                result.failures.put(load.getKey(), e.getCause() != null ? e.getCause() : e);
+            }
+        }
+
+        result.elapsedNanos = System.nanoTime() - start;
+        result.bytesRead = bytesRead.get();
+        result.readNanos = readNanos.get();
+        result.decodeNanos = decodeNanos.get();
+        return result;
+    }
+
+    private static ThreadPoolExecutor NewPool(int threads, String name) {
+        ThreadPoolExecutor pool = new ThreadPoolExecutor(threads, threads, KEEP_ALIVE_SECONDS, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(), runnable -> {
+                    Thread thread = new Thread(runnable, name);
+                    thread.setDaemon(true);
+                    return thread;
+                });
+        pool.allowCoreThreadTimeOut(true);
+        return pool;
+    }
+
+    private static void Resize(ThreadPoolExecutor pool, int threads) {
+        if (pool == null) {
+            return;
+        }
+        // The core size may never exceed the maximum size, so the bound moving away from the other goes first.
+        if (threads > pool.getMaximumPoolSize()) {
+            pool.setMaximumPoolSize(threads);
+            pool.setCorePoolSize(threads);
+        }
+        else {
+            pool.setCorePoolSize(threads);
+            pool.setMaximumPoolSize(threads);
+        }
+    }
+}
@@ -0,0 +1,416 @@
+package com.creedvi.utils.m3dj;
+
+import com.creedvi.utils.m3dj.io.BufferChunkReader;
+import com.creedvi.utils.m3dj.io.ChunkIndex;
+import com.creedvi.utils.m3dj.io.ChunkReader.Magic;
+import com.creedvi.utils.m3dj.io.Tracelog;
+import com.creedvi.utils.m3dj.model.M3DJ_Model;
+import com.creedvi.utils.m3dj.model.chunks.M3DJ_Material;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.zip.CRC32C;
+
+import static com.creedvi.utils.m3dj.model.chunks.VariableTypes.VariableType.UNDEFINED;
+
+/**
+ * Watches model files and patches their models in place when the files change.
+ * Every chunk of a watched file is hashed. When the file changes, only the chunks whose bytes differ are decoded
+ * again, along with the chunks that depend on them, and the decoded parts are swapped into the existing model.
+ * Listeners are then told which parts changed. A changed header reloads the whole model.
+ * Models are patched on the watcher thread while synchronized on the model, so readers that must not see a patch
+ * half applied synchronize on the model too. A file that cannot be read or is incomplete, such as one still being
+ * written, leaves its model unchanged until the next change.
+ */
+public class M3DJ_HotReloader implements Closeable {
+
+    /**
+     * Flags naming the parts of a model that changed. Flags are combined with '|'.
+     */
+    public static class Changes {
+        public final static int
+            PREVIEW = 1,
+            HEADER = 1 << 1,
+            COLOR_MAP = 1 << 2,
+            TEXTURE_MAP = 1 << 3,
+            VERTICES = 1 << 4,
+            MATERIALS = 1 << 5,
+            MESH = 1 << 6,
+            // Chunks the parser does not decode, such as bones or animations.
+            OTHER = 1 << 7;
+
+        public final static int
+            ALL = PREVIEW | HEADER | COLOR_MAP | TEXTURE_MAP | VERTICES | MATERIALS | MESH | OTHER;
+    }
+
+    public interface Listener {
+        /**
+         * Called on the watcher thread after a model has been patched.
+         * @param fileName String path the file was watched with.
+         * @param model The patched model.
+         * @param changes Changes flags of the parts that changed.
+         */
+        void ModelChanged(String fileName, M3DJ_Model model, int changes);
+    }
+
+    private static class Watched {
+        final String fileName;
+        final M3DJ_Model model;
+        // Signature of each chunk, by magic in file order.
+        HashMap<Integer, long[]> chunks;
+        long preview;
+
+        Watched(String fileName, M3DJ_Model model) {
+            this.fileName = fileName;
+            this.model = model;
+        }
+    }
+
+    private final M3DJ parser;
+    private final WatchService watcher;
+    private final HashMap<Path, Watched> watched = new HashMap<>();
+    private final HashSet<Path> directories = new HashSet<>();
+    private final CopyOnWriteArrayList<Listener> listeners = new CopyOnWriteArrayList<>();
+    private final Thread thread;
+
+    /**
+     * Starts a watcher thread that patches the models of watched files through the given parser.
+     * @param parser Parser decoding the watched files.
+     * @throws IOException if the file system cannot be watched.
+     */
+    public M3DJ_HotReloader(M3DJ parser) throws IOException {
+        this.parser = parser;
+        this.watcher = FileSystems.getDefault().newWatchService();
+        this.thread = new Thread(this::Run, "M3DJ-Watch");
+        this.thread.setDaemon(true);
+        this.thread.start();
+    }
+
+    public void AddListener(Listener listener) {
+        listeners.add(listener);
+    }
+
+    public void RemoveListener(Listener listener) {
+        listeners.remove(listener);
+    }
+
+    /**
+     * Loads a binary model file and keeps its model up to date with the file from then on.
+     * @param fileName String path to the file location.
+     * @return Model of the file, patched whenever the file changes; the same model if the file is already watched.
+     * Null if the file is not a valid binary M3D model or is 2 GiB or larger.
+     * @throws IOException if the file fails to load into memory or cannot be watched.
+     */
+    public M3DJ_Model Watch(String fileName) throws IOException {
+        Path path = Paths.get(fileName).toAbsolutePath().normalize();
+
+        Watched file;
+        synchronized (watched) {
+            file = watched.get(path);
+            if (file == null) {
+                // Registered before the file is first read, so a change landing during the read is not missed.
+                if (directories.add(path.getParent())) {
+                    path.getParent().register(watcher, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_MODIFY);
+                }
+                file = new Watched(fileName, new M3DJ_Model());
+                watched.put(path, file);
+            }
+        }
+
+        // The watcher thread may load the file first; whichever comes second finds it unchanged.
+        synchronized (file) {
+            boolean loaded = false;
+            try {
+                loaded = file.chunks != null || Patch(file) >= 0;
+            }
+            finally {
+                if (!loaded) {
+                    synchronized (watched) {
+                        watched.remove(path, file);
+                    }
+                }
+            }
+            return loaded ? file.model : null;
+        }
+    }
+
+    /**
+     * Stops patching the model of a file. The model keeps its current state.
+     * @param fileName String path to the file location.
+     */
+    public void Unwatch(String fileName) {
+        synchronized (watched) {
+            watched.remove(Paths.get(fileName).toAbsolutePath().normalize());
+        }
+    }
+
+    /**
+     * Compares a watched file with its model right away and patches the model if the file changed, as the watcher
+     * thread does when the file system reports a change.
+     * @param fileName String path to the file location.
+     * @return Changes flags of the parts that changed; 0 if the file is not watched, unchanged or incomplete.
+     * @throws IOException if the file cannot be read.
+     */
+    public int Reload(String fileName) throws IOException {
+        Watched file;
+        synchronized (watched) {
+            file = watched.get(Paths.get(fileName).toAbsolutePath().normalize());
+        }
+        if (file == null) {
+            return 0;
+        }
+
+        int changes;
+        // Keeps the watcher thread and direct calls from patching the same model at once.
+        synchronized (file) {
+            changes = Math.max(0, Patch(file));
+        }
+        if (changes != 0) {
+            for (Listener listener : listeners) {
+                listener.ModelChanged(file.fileName, file.model, changes);
+            }
+        }
+        return changes;
+    }
+
+    /**
+     * Stops the watcher thread. Models keep their current state.
+     */
+    @Override
+    public void close() throws IOException {
+        watcher.close();
+        thread.interrupt();
+    }
+
+    private void Run() {
+        try {
+            while (true) {
+                WatchKey key = watcher.take();
+                Path directory = (Path) key.watchable();
+
+                for (WatchEvent<?> event : key.pollEvents()) {
+                    if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+                        continue;
+                    }
+                    Path path = directory.resolve((Path) event.context()).toAbsolutePath().normalize();
+
+                    Watched file;
+                    synchronized (watched) {
+                        file = watched.get(path);
+                    }
+                    if (file != null) {
+                        try {
+                            Reload(file.fileName);
+                        }
+                        catch (Throwable e) {
+                            // The watcher thread must outlive any failed reload; the file is retried on its next change.
+                            parser.GetLogger().out(Tracelog.LogType.LOG_ERROR, "Failed to reload " + file.fileName + ": " + e);
+                        }
+                    }
+                }
+                key.reset();
+            }
+        }
+        catch (InterruptedException | ClosedWatchServiceException e) {
+            // Closed.
+        }
+    }
+
+    /**
+     * Decodes the chunks of a file that differ from the ones its model was decoded from, and swaps them into the
+     * model.
+     * @return Changes flags of the parts that changed, or -1 if the file is not a complete binary model.
+     */
+    private int Patch(Watched file) throws IOException {
+        M3DJ load = parser.Snapshot();
+        // A mapped file that an editor truncates while it is read fails with an Error rather than an IOException.
+        load.EnableMemoryMapping(false);
+        try {
+            return Patch(file, load);
+        }
+        finally {
+            load.M3DJ_Release();
+        }
+    }
+
+    private int Patch(Watched file, M3DJ load) throws IOException {
+        ByteBuffer fileData = load.M3DJ_ReadFile(file.fileName);
+        if (fileData == null) {
+            return -1;
+        }
+
+        M3DJ_Model patch = new M3DJ_Model();
+        ByteBuffer body = load.M3DJ_ReadBody(fileData, patch);
+        if (body == null) {
+            return -1;
+        }
+        ChunkIndex index = ChunkIndex.Build(body);
+        if (index.Count() == 0 || index.GetMagic(0) != Magic.HEAD || index.Find(Magic.OMD3, 0) < 0) {
+            return -1;
+        }
+
+        // Chunks the load options skip are left out, so their changes are neither reported nor decoded.
+        HashMap<Integer, long[]> chunks = new HashMap<>();
+        for (int i = 0; i < index.Count(); i++) {
+            if (!load.IsChunkWanted(index.GetMagic(i))) {
+                continue;
+            }
+            long[] signatures = chunks.get(index.GetMagic(i));
+            signatures = signatures == null ? new long[1] : Arrays.copyOf(signatures, signatures.length + 1);
+            signatures[signatures.length - 1] = Sign(index.GetData(body, i));
+            chunks.put(index.GetMagic(i), signatures);
+        }
+        long preview = patch.preview.imageData != null ? Sign(patch.preview.imageData.duplicate()) : 0;
+
+        M3DJ_Model model = file.model;
+        int changes = 0;
+        if (file.chunks == null) {
+            changes = Changes.ALL;
+        }
+        else {
+            HashSet<Integer> magics = new HashSet<>(chunks.keySet());
+            magics.addAll(file.chunks.keySet());
+            for (int magic : magics) {
+                if (!Arrays.equals(chunks.get(magic), file.chunks.get(magic))) {
+                    changes |= GetChange(magic);
+                }
+            }
+            if (preview != file.preview) {
+                changes |= Changes.PREVIEW;
+            }
+        }
+        if (changes == 0) {
+            return 0;
+        }
+
+        if ((changes & Changes.HEADER) != 0) {
+            // Every chunk is read through the header's types and string table.
+            if (load.M3DJ_LoadChunks(new BufferChunkReader(body, load::IsChunkWanted), patch) == null) {
+                return -1;
+            }
+            changes = Changes.ALL;
+        }
+        else {
+            patch.header = model.header;
+
+            if ((changes & Changes.COLOR_MAP) != 0) {
+                // Vertices and materials read colour indices through the colour map.
+                changes |= Changes.VERTICES | Changes.MATERIALS;
+
+                int i = index.Find(Magic.CMAP, 0);
+                if (i >= 0 && patch.header.TI_T != UNDEFINED) {
+                    load.ReadColorMap(index.GetData(body, i), patch);
+                }
+            }
+            else {
+                patch.colors = model.colors;
+            }
+            if ((changes & Changes.TEXTURE_MAP) != 0) {
+                int i = index.Find(Magic.TMAP, 0);
+                if (i >= 0 && patch.header.TI_T != UNDEFINED) {
+                    load.ReadTextureMap(index.GetData(body, i), patch);
+                }
+            }
+            if ((changes & Changes.VERTICES) != 0) {
+                int i = index.Find(Magic.VRTS, 0);
+                if (i >= 0) {
+                    load.ReadVertices(index.GetData(body, i), patch);
+                }
+            }
+            if ((changes & Changes.MATERIALS) != 0) {
+                for (int i = index.Find(Magic.MTRL, 0); i >= 0; i = index.Find(Magic.MTRL, i + 1)) {
+                    load.ReadMaterial(index.GetData(body, i), patch);
+                }
+                // Faces refer to materials by their position, which follows from the material names.
+                if (!MaterialNames(patch).equals(MaterialNames(model))) {
+                    changes |= Changes.MESH;
+                }
+            }
+            else {
+                patch.materials = model.materials;
+            }
+            if ((changes & Changes.MESH) != 0) {
+                for (int i = index.Find(Magic.MESH, 0); i >= 0; i = index.Find(Magic.MESH, i + 1)) {
+                    if (!load.ReadMesh(index.GetData(body, i), patch)) {
+                        return -1;
+                    }
+                }
+            }
+        }
+
+        synchronized (model) {
+            if ((changes & Changes.PREVIEW) != 0) {
+                model.preview = patch.preview;
+            }
+            if ((changes & Changes.HEADER) != 0) {
+                model.header = patch.header;
+                model.bones = patch.bones;
+                model.skins = patch.skins;
+            }
+            if ((changes & Changes.COLOR_MAP) != 0) {
+                model.colors = patch.colors;
+            }
+            if ((changes & Changes.TEXTURE_MAP) != 0) {
+                model.textureMap = patch.textureMap;
+            }
+            if ((changes & Changes.VERTICES) != 0) {
+                model.vertices = patch.vertices;
+            }
+            if ((changes & Changes.MATERIALS) != 0) {
+                model.materials = patch.materials;
+            }
+            if ((changes & Changes.MESH) != 0) {
+                model.faces = patch.faces;
+                model.parameters = patch.parameters;
+            }
+        }
+
+        file.chunks = chunks;
+        file.preview = preview;
+        return changes;
+    }
+
+    private static int GetChange(int magic) {
+        return switch (magic) {
+            case Magic.HEAD -> Changes.HEADER;
+            case Magic.CMAP -> Changes.COLOR_MAP;
+            case Magic.TMAP -> Changes.TEXTURE_MAP;
+            case Magic.VRTS -> Changes.VERTICES;
+            case Magic.MTRL -> Changes.MATERIALS;
+            case Magic.MESH -> Changes.MESH;
+            default -> Changes.OTHER;
+        };
+    }
+
+    /**
+     * @return CRC-32C of the chunk's payload in the low 32 bits and its length in the high 32 bits.
+     */
+    private static long Sign(ByteBuffer chunk) {
+        CRC32C crc = new CRC32C();
+        long length = chunk.remaining();
+        crc.update(chunk);
+        return (length << 32) | crc.getValue();
+    }
+
+    private static ArrayList<String> MaterialNames(M3DJ_Model model) {
+        ArrayList<String> names = new ArrayList<>();
+        for (M3DJ_Material material : model.materials) {
+            names.add(material.name);
+        }
+        return names;
+    }
+}
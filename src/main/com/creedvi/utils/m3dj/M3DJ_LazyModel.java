@@ -0,0 +1,155 @@
+package com.creedvi.utils.m3dj;
+
+import com.creedvi.utils.m3dj.io.ChunkIndex;
+import com.creedvi.utils.m3dj.io.ChunkReader.Magic;
+import com.creedvi.utils.m3dj.model.M3DJ_Model;
+import com.creedvi.utils.m3dj.model.chunks.*;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayList;
+
+import static com.creedvi.utils.m3dj.model.chunks.VariableTypes.VariableType.UNDEFINED;
+
+/**
+ * Model whose chunks are decoded on first access.
+ * The header and preview are available immediately; every other accessor decodes the chunks it needs (and the
+ * chunks those depend on) the first time it is called and caches the result.
+ * Accessors are synchronized, so a lazy model may be shared between threads.
+ */
+public class M3DJ_LazyModel {
+
+    private final M3DJ parser;
+    private final M3DJ_Model model;
+    private final ByteBuffer data;
+    private final ChunkIndex index;
+
+    private boolean colorsDecoded;
+    private boolean textureMapDecoded;
+    private boolean verticesDecoded;
+    private boolean materialsDecoded;
+    private boolean facesDecoded;
+
+    M3DJ_LazyModel(M3DJ parser, M3DJ_Model model, ByteBuffer data, ChunkIndex index) {
+        this.parser = parser;
+        this.model = model;
+        this.data = data;
+        this.index = index;
+    }
+
+    public M3DJ_Header GetHeader() {
+        return model.header;
+    }
+
+    public M3DJ_Preview GetPreview() {
+        return model.preview;
+    }
+
+    public ChunkIndex GetChunkIndex() {
+        return index;
+    }
+
+    /**
+     * Returns the raw payload of a chunk, e.g. for chunk types the parser does not decode yet (BONE, ACTN, ...).
+     * @param magic Four character chunk magic.
+     * @return Read-only little-endian payload of the first chunk with that magic, or null if there is none.
+     */
+    public ByteBuffer GetChunkData(String magic) {
+        int i = index.Find(magic);
+        if (i < 0) {
+            return null;
+        }
+        return index.GetData(data, i).asReadOnlyBuffer().order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    public synchronized ArrayList<M3DJ_Color> GetColors() {
+        if (!colorsDecoded) {
+            colorsDecoded = true;
+
+            int i = index.Find(Magic.CMAP, 0);
+            if (i >= 0 && model.header.TI_T != UNDEFINED) {
+                parser.ReadColorMap(index.GetData(data, i), model);
+            }
+        }
+        return model.colors;
+    }
+
+    public synchronized ArrayList<M3DJ_TextureCoordinate> GetTextureMap() {
+        if (!textureMapDecoded) {
+            textureMapDecoded = true;
+
+            int i = index.Find(Magic.TMAP, 0);
+            if (i >= 0 && model.header.TI_T != UNDEFINED) {
+                parser.ReadTextureMap(index.GetData(data, i), model);
+            }
+        }
+        return model.textureMap;
+    }
+
+    public synchronized ArrayList<M3DJ_Vertex> GetVertices() {
+        if (!verticesDecoded) {
+            // Colour indices are only present when a colour map was loaded first.
+            GetColors();
+            verticesDecoded = true;
+
+            int i = index.Find(Magic.VRTS, 0);
+            if (i >= 0) {
+                parser.ReadVertices(index.GetData(data, i), model);
+            }
+        }
+        return model.vertices;
+    }
+
+    public synchronized ArrayList<M3DJ_Material> GetMaterials() {
+        if (!materialsDecoded) {
+            GetColors();
+            materialsDecoded = true;
+
+            for (int i = index.Find(Magic.MTRL, 0); i >= 0; i = index.Find(Magic.MTRL, i + 1)) {
+                parser.ReadMaterial(index.GetData(data, i), model);
+            }
+        }
+        return model.materials;
+    }
+
+    /**
+     * @return Faces of all mesh chunks; empty if any mesh chunk is invalid.
+     */
+    public synchronized ArrayList<M3DJ_Face> GetFaces() {
+        DecodeFaces();
+        return model.faces;
+    }
+
+    public synchronized ArrayList<M3DJ_Parameter> GetParameters() {
+        DecodeFaces();
+        return model.parameters;
+    }
+
+    /**
+     * Decodes every remaining chunk.
+     * @return The fully decoded model backing this lazy model.
+     */
+    public synchronized M3DJ_Model GetModel() {
+        GetTextureMap();
+        GetVertices();
+        DecodeFaces();
+        return model;
+    }
+
+    private void DecodeFaces() {
+        if (facesDecoded) {
+            return;
+        }
+        // Faces reference materials by name.
+        GetMaterials();
+        facesDecoded = true;
+
+        for (int i = index.Find(Magic.MESH, 0); i >= 0; i = index.Find(Magic.MESH, i + 1)) {
+            if (!parser.ReadMesh(index.GetData(data, i), model)) {
+                model.faces.clear();
+                model.parameters.clear();
+                break;
+            }
+        }
+    }
+}
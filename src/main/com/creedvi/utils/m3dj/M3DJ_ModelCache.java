@@ -0,0 +1,264 @@
+package com.creedvi.utils.m3dj;
+
+import com.creedvi.utils.m3dj.model.M3DJ_Model;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+/**
+ * Cache of loaded models in front of a parser, keyed by the canonical path of the file.
+ * A cached model is returned as long as the file's modification time and size are unchanged; with content hashing
+ * enabled, a file whose time or size changed is hashed and only reloaded if its content differs too.
+ * The cache is bounded by the estimated size of its models (see M3DJ_Model.GetEstimatedBytes) and evicts the
+ * least recently used models first. Concurrent requests for a file that is not cached share a single load.
+ * Cached models are shared between every caller that gets them, so they must not be modified.
+ */
+public class M3DJ_ModelCache {
+
+    private static class Entry {
+        final M3DJ_Model model;
+        final long bytes;
+        FileTime modified;
+        long size;
+        byte[] hash;
+
+        Entry(M3DJ_Model model, BasicFileAttributes attributes, byte[] hash) {
+            this.model = model;
+            this.bytes = model.GetEstimatedBytes();
+            this.modified = attributes.lastModifiedTime();
+            this.size = attributes.size();
+            this.hash = hash;
+        }
+
+        boolean Matches(BasicFileAttributes attributes) {
+            return modified.equals(attributes.lastModifiedTime()) && size == attributes.size();
+        }
+    }
+
+    private final M3DJ parser;
+    private final long maxBytes;
+
+    private boolean CONTENT_HASH = false;
+
+    // Access ordered, so iteration starts at the least recently used model.
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private final HashMap<String, CompletableFuture<M3DJ_Model>> loading = new HashMap<>();
+    private long bytes;
+    private long hits;
+    private long misses;
+
+    /**
+     * @param parser Parser loading the files that are not cached.
+     * @param maxBytes Estimated size the cached models may take together.
+     */
+    public M3DJ_ModelCache(M3DJ parser, long maxBytes) {
+        this.parser = parser;
+        this.maxBytes = maxBytes;
+    }
+
+    /**
+     * Set to configure the cache to compare file contents before reloading a file whose modification time or
+     * size changed. Files are hashed when they are loaded and when they appear changed, so touching a file or
+     * copying it over with identical content keeps its model cached.
+     * Default is disabled.
+     * @param b true enables content hashing; false disables content hashing.
+     */
+    public synchronized void EnableContentHashing(boolean b) {
+        this.CONTENT_HASH = b;
+    }
+
+    /**
+     * Returns the cached model of a file, loading it through the parser if it is not cached or the file changed.
+     * @param fileName String path to the file location.
+     * @return Model of the file, or null if it is not a valid model. Models that fail to load are not cached.
+     * @throws IOException if the file fails to load into memory.
+     */
+    public M3DJ_Model Get(String fileName) throws IOException {
+        Path path = Paths.get(fileName).toRealPath();
+        String key = path.toString();
+        BasicFileAttributes attributes = Files.readAttributes(path, BasicFileAttributes.class);
+
+        CompletableFuture<M3DJ_Model> load;
+        Entry previous;
+        boolean owner = false;
+        boolean hash;
+        synchronized (this) {
+            previous = entries.get(key);
+            if (previous != null && previous.Matches(attributes)) {
+                hits++;
+                return previous.model;
+            }
+
+            load = loading.get(key);
+            if (load != null) {
+                hits++;
+            }
+            else {
+                misses++;
+                load = new CompletableFuture<>();
+                loading.put(key, load);
+                owner = true;
+            }
+            hash = CONTENT_HASH;
+        }
+
+        if (!owner) {
+            return Join(load);
+        }
+
+        try {
+            M3DJ_Model model = Load(key, path, attributes, previous, hash);
+            load.complete(model);
+            return model;
+        }
+        catch (IOException | RuntimeException | Error e) {
+            load.completeExceptionally(e);
+            throw e;
+        }
+        finally {
+            synchronized (this) {
+                loading.remove(key);
+            }
+        }
+    }
+
+    private M3DJ_Model Load(String key, Path path, BasicFileAttributes attributes, Entry previous, boolean hash) throws IOException {
+        byte[] digest = hash ? Hash(path) : null;
+
+        if (previous != null && digest != null && Arrays.equals(digest, previous.hash)) {
+            // Only the file's metadata changed.
+            synchronized (this) {
+                previous.modified = attributes.lastModifiedTime();
+                previous.size = attributes.size();
+            }
+            return previous.model;
+        }
+
+        M3DJ_Model model = parser.LoadFile(path.toString());
+
+        synchronized (this) {
+            Entry removed = entries.remove(key);
+            if (removed != null) {
+                bytes -= removed.bytes;
+            }
+            if (model == null) {
+                return null;
+            }
+
+            Entry entry = new Entry(model, attributes, digest);
+            if (entry.bytes <= maxBytes) {
+                entries.put(key, entry);
+                bytes += entry.bytes;
+                Evict();
+            }
+        }
+        return model;
+    }
+
+    /**
+     * Waits for a load started by another caller.
+     */
+    private M3DJ_Model Join(CompletableFuture<M3DJ_Model> load) throws IOException {
+        try {
+            return load.join();
+        }
+        catch (CompletionException e) {
+            if (e.getCause() instanceof IOException cause) {
+                throw cause;
+            }
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw e;
+        }
+    }
+
+    private void Evict() {
+        Iterator<Map.Entry<String, Entry>> eldest = entries.entrySet().iterator();
+        while (bytes > maxBytes && eldest.hasNext()) {
+            bytes -= eldest.next().getValue().bytes;
+            eldest.remove();
+        }
+    }
+
+    private static byte[] Hash(Path path) throws IOException {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        }
+        catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+
+        byte[] buffer = new byte[64 * 1024];
+        try (InputStream stream = Files.newInputStream(path)) {
+            int read;
+            while ((read = stream.read(buffer)) > 0) {
+                digest.update(buffer, 0, read);
+            }
+        }
+        return digest.digest();
+    }
+
+    /**
+     * Removes a file's model from the cache, so the next Get loads it again.
+     * @param fileName String path to the file location.
+     * @throws IOException if the file's canonical path cannot be resolved.
+     */
+    public synchronized void Invalidate(String fileName) throws IOException {
+        Entry removed = entries.remove(Paths.get(fileName).toRealPath().toString());
+        if (removed != null) {
+            bytes -= removed.bytes;
+        }
+    }
+
+    /**
+     * Removes every model from the cache.
+     */
+    public synchronized void Clear() {
+        entries.clear();
+        bytes = 0;
+    }
+
+    /**
+     * @return Number of cached models.
+     */
+    public synchronized int GetCount() {
+        return entries.size();
+    }
+
+    /**
+     * @return Estimated size of the cached models in bytes.
+     */
+    public synchronized long GetBytes() {
+        return bytes;
+    }
+
+    /**
+     * @return Number of Get calls answered from the cache or by sharing another caller's load.
+     */
+    public synchronized long GetHitCount() {
+        return hits;
+    }
+
+    /**
+     * @return Number of Get calls that loaded their file.
+     */
+    public synchronized long GetMissCount() {
+        return misses;
+    }
+}
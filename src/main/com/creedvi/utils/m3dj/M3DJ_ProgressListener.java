@@ -0,0 +1,38 @@
+package com.creedvi.utils.m3dj;
+
+import com.creedvi.utils.m3dj.model.M3DJ_ModelSnapshot;
+
+/**
+ * Receives a model part by part as it is loaded by M3DJ.LoadFileProgressive, so something can be shown before
+ * the whole model has been read.
+ * Stages are reported once each, in the order of the Stage constants, on the loading thread. A stage is ready
+ * once the load has moved past every chunk it is made of; stages whose chunks are missing from the file are still
+ * reported, with their parts empty. No further stages are reported if the load fails.
+ */
+public interface M3DJ_ProgressListener {
+
+    /**
+     * Stages of a progressive load, in the order they are reported.
+     */
+    class Stage {
+        public final static int
+            // The preview image.
+            PREVIEW = 0,
+            // The header and its string table.
+            HEADER = 1,
+            // The colour map, texture map, vertices and faces.
+            GEOMETRY = 2,
+            MATERIALS = 3,
+            // Bones and skins.
+            SKELETON = 4,
+            // Animations; the model is complete.
+            ANIMATION = 5;
+    }
+
+    /**
+     * Called when a stage of the load is ready.
+     * @param stage One of the Stage constants.
+     * @param snapshot Immutable view of everything loaded so far; it may be handed to another thread.
+     */
+    void StageReady(int stage, M3DJ_ModelSnapshot snapshot);
+}
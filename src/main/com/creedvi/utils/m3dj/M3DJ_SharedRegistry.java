@@ -0,0 +1,231 @@
+package com.creedvi.utils.m3dj;
+
+import com.creedvi.utils.m3dj.model.M3DJ_PackedModel;
+import com.creedvi.utils.m3dj.model.chunks.M3DJ_Material;
+import com.creedvi.utils.m3dj.model.chunks.M3DJ_Property;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Objects;
+
+/**
+ * Registry that lets packed models share identical decoded data, so memory grows with the number of distinct
+ * models rather than with the number of models loaded. When a model is interned, its positions, colour and skin
+ * indices, palette, texture coordinates and materials are looked up by content; data the registry already holds is
+ * replaced by the registry's copy, and data it does not hold yet becomes the copy later models share.
+ * Shared data is reference counted: every interned model holds one reference to each piece of data it shares
+ * until it is released.
+ * Shared arrays and materials are used by several models at once and must never be modified. Quantized positions
+ * and texture coordinates are not shared.
+ */
+public class M3DJ_SharedRegistry {
+
+    private static class Key {
+        final Object content;
+        final int hash;
+
+        Key(Object content) {
+            this.content = content;
+            this.hash = Arrays.deepHashCode(new Object[] { content });
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            return other instanceof Key key && hash == key.hash && Objects.deepEquals(content, key.content);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+
+    private static class Entry {
+        final Key key;
+        final Object data;
+        final long bytes;
+        int references;
+
+        Entry(Key key, Object data, long bytes) {
+            this.key = key;
+            this.data = data;
+            this.bytes = bytes;
+        }
+    }
+
+    private final M3DJ parser;
+
+    private final HashMap<Key, Entry> entries = new HashMap<>();
+    // Shared data, by identity, to the entry holding it.
+    private final IdentityHashMap<Object, Entry> shared = new IdentityHashMap<>();
+    private long sharedBytes;
+    private long referencedBytes;
+
+    /**
+     * @param parser Parser loading the files of LoadFile.
+     */
+    public M3DJ_SharedRegistry(M3DJ parser) {
+        this.parser = parser;
+    }
+
+    /**
+     * Loads a file into a packed model and interns it.
+     * @param fileName String path to the file location.
+     * @return Interned model, or null if the file is not a valid model.
+     * @throws IOException if the file fails to load into memory.
+     */
+    public M3DJ_PackedModel LoadFile(String fileName) throws IOException {
+        M3DJ_PackedModel model = parser.LoadFilePacked(fileName);
+        return model != null ? Intern(model) : null;
+    }
+
+    /**
+     * Replaces the data of a model by the registry's shared copies, adding the data the registry does not hold yet.
+     * Arrays longer than the model's element count are trimmed. Each call must be matched by a call to Release.
+     * @param model Model to intern; its fields are updated in place.
+     * @return The given model.
+     */
+    public M3DJ_PackedModel Intern(M3DJ_PackedModel model) {
+        // Content is trimmed and hashed before taking the lock; only the lookups and reference counts run under it.
+        int positions = model.vertexCount * M3DJ_PackedModel.POSITION_COMPONENTS;
+        int texCoords = model.texCoordCount * M3DJ_PackedModel.TEXCOORD_COMPONENTS;
+        boolean doublePositions = model.positionsDouble != null;
+        boolean floatPositions = !doublePositions && model.quantizedPositions == null;
+        boolean floatTexCoords = model.quantizedTexCoords == null;
+
+        Key positionKey = doublePositions ? new Key(Trim(model.positionsDouble, positions)) :
+                floatPositions ? new Key(Trim(model.positions, positions)) : null;
+        Key colorKey = new Key(Trim(model.colorIndices, model.vertexCount));
+        Key skinKey = new Key(Trim(model.skinIndices, model.vertexCount));
+        Key paletteKey = new Key(Trim(model.palette, model.colorCount));
+        Key texCoordKey = floatTexCoords ? new Key(Trim(model.texCoords, texCoords)) : null;
+        Key[] materialKeys = new Key[model.materials.size()];
+        for (int i = 0; i < materialKeys.length; i++) {
+            materialKeys[i] = new Key(DescribeMaterial(model.materials.get(i)));
+        }
+
+        synchronized (this) {
+            if (doublePositions) {
+                model.positionsDouble = (double[]) Share(positionKey, (long) positions * Double.BYTES);
+            }
+            else if (floatPositions) {
+                model.positions = (float[]) Share(positionKey, (long) positions * Float.BYTES);
+            }
+            model.colorIndices = (int[]) Share(colorKey, (long) model.vertexCount * Integer.BYTES);
+            model.skinIndices = (int[]) Share(skinKey, (long) model.vertexCount * Integer.BYTES);
+            model.palette = (int[]) Share(paletteKey, (long) model.colorCount * Integer.BYTES);
+            if (floatTexCoords) {
+                model.texCoords = (float[]) Share(texCoordKey, (long) texCoords * Float.BYTES);
+            }
+
+            for (int i = 0; i < materialKeys.length; i++) {
+                M3DJ_Material material = model.materials.get(i);
+                model.materials.set(i, (M3DJ_Material) Share(materialKeys[i], material, EstimateBytes(material)));
+            }
+        }
+
+        return model;
+    }
+
+    private Object Share(Key key, long bytes) {
+        return Share(key, key.content, bytes);
+    }
+
+    /**
+     * @param key Content the data is compared by: the data itself for arrays, or a description of it.
+     * @param data The data, kept as the shared copy if the registry does not hold it yet.
+     * @return The registry's copy of the data.
+     */
+    private Object Share(Key key, Object data, long bytes) {
+        Entry entry = shared.get(data);
+        if (entry == null) {
+            entry = entries.get(key);
+            if (entry == null) {
+                entry = new Entry(key, data, bytes);
+                entries.put(key, entry);
+                shared.put(data, entry);
+                sharedBytes += bytes;
+            }
+        }
+        entry.references++;
+        referencedBytes += entry.bytes;
+        return entry.data;
+    }
+
+    private static int[] Trim(int[] array, int length) {
+        return array.length == length ? array : Arrays.copyOf(array, length);
+    }
+
+    private static float[] Trim(float[] array, int length) {
+        return array.length == length ? array : Arrays.copyOf(array, length);
+    }
+
+    private static double[] Trim(double[] array, int length) {
+        return array.length == length ? array : Arrays.copyOf(array, length);
+    }
+
+    /**
+     * Gives up a model's references to shared data, removing data no other model references.
+     * The model must not be used afterwards.
+     * @param model Model previously passed to Intern or returned by LoadFile.
+     */
+    public synchronized void Release(M3DJ_PackedModel model) {
+        Unshare(model.positions);
+        Unshare(model.positionsDouble);
+        Unshare(model.colorIndices);
+        Unshare(model.skinIndices);
+        Unshare(model.palette);
+        Unshare(model.texCoords);
+        for (M3DJ_Material material : model.materials) {
+            Unshare(material);
+        }
+    }
+
+    private void Unshare(Object data) {
+        Entry entry = data != null ? shared.get(data) : null;
+        if (entry == null) {
+            return;
+        }
+        referencedBytes -= entry.bytes;
+        if (--entry.references == 0) {
+            entries.remove(entry.key);
+            shared.remove(entry.data);
+            sharedBytes -= entry.bytes;
+        }
+    }
+
+    /**
+     * @return Number of distinct pieces of data held by the registry.
+     */
+    public synchronized int GetEntryCount() {
+        return entries.size();
+    }
+
+    /**
+     * @return Bytes of data held by the registry, counting each piece of data once.
+     */
+    public synchronized long GetSharedBytes() {
+        return sharedBytes;
+    }
+
+    /**
+     * @return Bytes of data the interned models would hold if nothing were shared.
+     */
+    public synchronized long GetReferencedBytes() {
+        return referencedBytes;
+    }
+
+    private static String DescribeMaterial(M3DJ_Material material) {
+        StringBuilder description = new StringBuilder(material.name);
+        for (M3DJ_Property property : material.properties) {
+            description.append('\0').append(property.id).append(':').append(property.format).append('=').append(property.GetPropertyValue());
+        }
+        return description.toString();
+    }
+
+    private static long EstimateBytes(M3DJ_Material material) {
+        return 48L + (material.name != null ? material.name.length() : 0) + material.properties.size() * 44L;
+    }
+}
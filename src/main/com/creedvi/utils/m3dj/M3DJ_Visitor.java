@@ -0,0 +1,83 @@
+package com.creedvi.utils.m3dj;
+
+import com.creedvi.utils.m3dj.model.chunks.M3DJ_Header;
+import com.creedvi.utils.m3dj.model.chunks.M3DJ_Material;
+
+/**
+ * Receives the contents of a model as its chunks are decoded by M3DJ.Visit, instead of having them collected into
+ * an M3DJ_Model first. Every method does nothing by default, so a visitor only overrides what it consumes.
+ * Methods are called on the loading thread in file order: VisitHeader first, then the chunks in the order they
+ * appear in the file, then VisitEnd if the whole model was read. Element data is passed in batches; the arrays of
+ * a batch are reused for the next one and must be copied if they are kept.
+ */
+public interface M3DJ_Visitor {
+
+    /**
+     * Called once the header has been read.
+     * @param header Header of the model, including its bitfield types and string table.
+     */
+    default void VisitHeader(M3DJ_Header header) {
+
+    }
+
+    /**
+     * Called for a batch of colour map entries.
+     * @param first Index of the first colour of the batch.
+     * @param count Number of colours in the batch.
+     * @param palette One colour per int, as stored in the file: red in the lowest byte, alpha in the highest.
+     */
+    default void VisitColors(int first, int count, int[] palette) {
+
+    }
+
+    /**
+     * Called for a batch of texture coordinates.
+     * @param first Index of the first texture coordinate of the batch.
+     * @param count Number of texture coordinates in the batch.
+     * @param texCoords u, v per texture coordinate.
+     */
+    default void VisitTextureCoordinates(int first, int count, float[] texCoords) {
+
+    }
+
+    /**
+     * Called for a batch of vertices.
+     * @param first Index of the first vertex of the batch.
+     * @param count Number of vertices in the batch.
+     * @param positions x, y, z, w per vertex. Double precision coordinates are truncated to float.
+     * @param colorIndices Colour map index of each vertex, or its colour for 32-bit colour indices.
+     * @param skinIndices Skin index of each vertex.
+     */
+    default void VisitVertices(int first, int count, float[] positions, int[] colorIndices, int[] skinIndices) {
+
+    }
+
+    /**
+     * Called for each material once all of its properties have been read.
+     */
+    default void VisitMaterial(M3DJ_Material material) {
+
+    }
+
+    /**
+     * Called for a batch of triangles sharing a material and parameter.
+     * Corners without a texture coordinate or normal hold M3D_UNDEF.
+     * @param first Index of the first face of the batch.
+     * @param count Number of faces in the batch.
+     * @param material Index of the material of the faces in visit order, or M3D_UNDEF.
+     * @param parameter Index of the parameter of the faces, or M3D_UNDEF.
+     * @param vertices Three vertex indices per face.
+     * @param texCoords Three texture coordinate indices per face.
+     * @param normals Three normal (vertex) indices per face.
+     */
+    default void VisitFaces(int first, int count, int material, int parameter, int[] vertices, int[] texCoords, int[] normals) {
+
+    }
+
+    /**
+     * Called after the end chunk has been reached.
+     */
+    default void VisitEnd() {
+
+    }
+}
@@ -0,0 +1,71 @@
+package com.creedvi.utils.m3dj.io;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.function.IntPredicate;
+
+/**
+ * Reads chunks from a buffer that holds the whole (decompressed) model.
+ * Chunk payloads are slices of the source buffer, so no data is copied.
+ */
+public class BufferChunkReader extends ChunkReader {
+
+    private final ByteBuffer source;
+
+    /**
+     * @param source Buffer positioned at the first chunk magic.
+     */
+    public BufferChunkReader(ByteBuffer source) {
+        this(source, ALL);
+    }
+
+    /**
+     * @param source Buffer positioned at the first chunk magic.
+     * @param filter Accepts the magic of every chunk that should be returned.
+     */
+    public BufferChunkReader(ByteBuffer source, IntPredicate filter) {
+        super(filter);
+        this.source = source;
+    }
+
+    @Override
+    public boolean Next() {
+        boolean found;
+        do {
+            found = ReadChunk();
+        } while (found && magic != Magic.OMD3 && !filter.test(magic));
+
+        return found;
+    }
+
+    private boolean ReadChunk() {
+        if (source.remaining() < MAGIC_LENGTH) {
+            return false;
+        }
+
+        magic = ReadMagic(source, source.position());
+        source.position(source.position() + MAGIC_LENGTH);
+
+        // OMD3 indicated the end of the file and does not have a size component.
+        if (magic == Magic.OMD3) {
+            data = EMPTY;
+            return true;
+        }
+
+        if (source.remaining() < Integer.BYTES) {
+            return false;
+        }
+
+        // Chunk size includes the length of Magic and Integer value.
+        int chunkSize = source.order(ByteOrder.LITTLE_ENDIAN).getInt(source.position()) - HEADER_LENGTH;
+        source.position(source.position() + Integer.BYTES);
+        if (chunkSize < 0 || chunkSize > source.remaining()) {
+            return false;
+        }
+
+        data = source.slice(source.position(), chunkSize).order(ByteOrder.LITTLE_ENDIAN);
+        source.position(source.position() + chunkSize);
+
+        return true;
+    }
+}
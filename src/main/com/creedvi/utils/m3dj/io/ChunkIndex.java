@@ -0,0 +1,121 @@
+package com.creedvi.utils.m3dj.io;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+
+/**
+ * Table of contents for the chunks of a decompressed model.
+ * Built by walking the chunk headers only; each entry records the packed magic, the absolute offset of the
+ * payload within the source buffer and the payload length.
+ */
+public class ChunkIndex {
+
+    private int count;
+    private int[] magics;
+    private int[] offsets;
+    private int[] lengths;
+
+    private ChunkIndex(int capacity) {
+        this.count = 0;
+        this.magics = new int[capacity];
+        this.offsets = new int[capacity];
+        this.lengths = new int[capacity];
+    }
+
+    /**
+     * Scans the chunk headers of a buffer without decoding any payload.
+     * The scan stops after the end chunk (OMD3) or at the first truncated chunk.
+     * @param source Buffer positioned at the first chunk magic. Its position is left unchanged.
+     * @return Index of all complete chunks, including the end chunk if present.
+     */
+    public static ChunkIndex Build(ByteBuffer source) {
+        ChunkIndex index = new ChunkIndex(16);
+        int position = source.position();
+        int limit = source.limit();
+
+        while (limit - position >= ChunkReader.MAGIC_LENGTH) {
+            int magic = ChunkReader.ReadMagic(source, position);
+            position += ChunkReader.MAGIC_LENGTH;
+
+            // OMD3 indicated the end of the file and does not have a size component.
+            if (magic == ChunkReader.Magic.OMD3) {
+                index.Add(magic, position, 0);
+                break;
+            }
+
+            if (limit - position < Integer.BYTES) {
+                break;
+            }
+            // Chunk size includes the length of Magic and Integer value.
+            int chunkSize = source.order(ByteOrder.LITTLE_ENDIAN).getInt(position) - ChunkReader.HEADER_LENGTH;
+            position += Integer.BYTES;
+            if (chunkSize < 0 || chunkSize > limit - position) {
+                break;
+            }
+
+            index.Add(magic, position, chunkSize);
+            position += chunkSize;
+        }
+
+        return index;
+    }
+
+    private void Add(int magic, int offset, int length) {
+        if (count == magics.length) {
+            magics = Arrays.copyOf(magics, count * 2);
+            offsets = Arrays.copyOf(offsets, count * 2);
+            lengths = Arrays.copyOf(lengths, count * 2);
+        }
+        magics[count] = magic;
+        offsets[count] = offset;
+        lengths[count] = length;
+        count++;
+    }
+
+    public int Count() {
+        return count;
+    }
+
+    public int GetMagic(int i) {
+        return magics[i];
+    }
+
+    public String GetMagicString(int i) {
+        return ChunkReader.UnpackMagic(magics[i]);
+    }
+
+    public int GetOffset(int i) {
+        return offsets[i];
+    }
+
+    public int GetLength(int i) {
+        return lengths[i];
+    }
+
+    /**
+     * @return Index of the first chunk with the given magic, or -1 if the model has none.
+     */
+    public int Find(String magic) {
+        return Find(ChunkReader.PackMagic(magic), 0);
+    }
+
+    /**
+     * @return Index of the first chunk with the given packed magic at or after from, or -1 if there is none.
+     */
+    public int Find(int magic, int from) {
+        for (int i = from; i < count; i++) {
+            if (magics[i] == magic) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * @return Little-endian slice of the source buffer holding the payload of chunk i.
+     */
+    public ByteBuffer GetData(ByteBuffer source, int i) {
+        return source.slice(offsets[i], lengths[i]).order(ByteOrder.LITTLE_ENDIAN);
+    }
+}
@@ -0,0 +1,108 @@
+package com.creedvi.utils.m3dj.io;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.function.IntPredicate;
+
+/**
+ * Sequential source of model chunks.
+ * Each call to Next() advances to the following chunk and exposes its magic and payload.
+ * The payload buffer is little-endian, starts at position 0 and is only valid until the next call to Next().
+ * Chunks rejected by the reader's filter are skipped without reading their payload.
+ */
+public abstract class ChunkReader {
+
+    /**
+     * Chunk magics packed into an int, matching a little-endian read of their four bytes.
+     */
+    public static class Magic {
+        public final static int
+            BINARY = '3' | 'D' << 8 | 'M' << 16 | 'O' << 24,
+            ASCII = '3' | 'd' << 8 | 'm' << 16 | 'o' << 24,
+            PRVW = 'P' | 'R' << 8 | 'V' << 16 | 'W' << 24,
+            HEAD = 'H' | 'E' << 8 | 'A' << 16 | 'D' << 24,
+            CMAP = 'C' | 'M' << 8 | 'A' << 16 | 'P' << 24,
+            TMAP = 'T' | 'M' << 8 | 'A' << 16 | 'P' << 24,
+            VRTS = 'V' | 'R' << 8 | 'T' << 16 | 'S' << 24,
+            BONE = 'B' | 'O' << 8 | 'N' << 16 | 'E' << 24,
+            MTRL = 'M' | 'T' << 8 | 'R' << 16 | 'L' << 24,
+            PROC = 'P' | 'R' << 8 | 'O' << 16 | 'C' << 24,
+            MESH = 'M' | 'E' << 8 | 'S' << 16 | 'H' << 24,
+            SHPE = 'S' | 'H' << 8 | 'P' << 16 | 'E' << 24,
+            VOXT = 'V' | 'O' << 8 | 'X' << 16 | 'T' << 24,
+            VOXD = 'V' | 'O' << 8 | 'X' << 16 | 'D' << 24,
+            LBLS = 'L' | 'B' << 8 | 'L' << 16 | 'S' << 24,
+            ACTN = 'A' | 'C' << 8 | 'T' << 16 | 'N' << 24,
+            ASET = 'A' | 'S' << 8 | 'E' << 16 | 'T' << 24,
+            OMD3 = 'O' | 'M' << 8 | 'D' << 16 | '3' << 24;
+    }
+
+    public static final int MAGIC_LENGTH = 4;
+    public static final int HEADER_LENGTH = MAGIC_LENGTH + Integer.BYTES;
+
+    public static final ByteBuffer EMPTY = ByteBuffer.allocate(0).order(ByteOrder.LITTLE_ENDIAN);
+    public static final IntPredicate ALL = magic -> true;
+
+    public int magic;
+    public ByteBuffer data;
+
+    protected final IntPredicate filter;
+
+    /**
+     * @param filter Accepts the magic of every chunk that should be returned. The end chunk is always returned.
+     */
+    protected ChunkReader(IntPredicate filter) {
+        this.filter = filter;
+    }
+
+    /**
+     * Advances to the next chunk.
+     * The end chunk (OMD3) carries no size component and is exposed with an empty payload.
+     * @return true if a chunk was read; false if the source is exhausted or the chunk is truncated.
+     * @throws IOException if the underlying source fails.
+     */
+    public abstract boolean Next() throws IOException;
+
+    /**
+     * Releases any resources held by the reader once the caller is done with it.
+     */
+    public void Close() {
+
+    }
+
+    public static int ReadMagic(byte[] bytes, int offset) {
+        return ReadInt(bytes, offset);
+    }
+
+    /**
+     * Reads a little-endian int from a header without wrapping it in a buffer.
+     */
+    public static int ReadInt(byte[] bytes, int offset) {
+        return (bytes[offset] & 0xFF) |
+               (bytes[offset + 1] & 0xFF) << 8 |
+               (bytes[offset + 2] & 0xFF) << 16 |
+               (bytes[offset + 3] & 0xFF) << 24;
+    }
+
+    public static int ReadMagic(ByteBuffer buffer, int index) {
+        return (buffer.get(index) & 0xFF) |
+               (buffer.get(index + 1) & 0xFF) << 8 |
+               (buffer.get(index + 2) & 0xFF) << 16 |
+               (buffer.get(index + 3) & 0xFF) << 24;
+    }
+
+    /**
+     * Packs a four character magic into an int, matching a little-endian read of its bytes.
+     */
+    public static int PackMagic(String magic) {
+        return (magic.charAt(0) & 0xFF) |
+               (magic.charAt(1) & 0xFF) << 8 |
+               (magic.charAt(2) & 0xFF) << 16 |
+               (magic.charAt(3) & 0xFF) << 24;
+    }
+
+    public static String UnpackMagic(int magic) {
+        return "" + (char) (magic & 0xFF) + (char) ((magic >> 8) & 0xFF) + (char) ((magic >> 16) & 0xFF) + (char) ((magic >>> 24) & 0xFF);
+    }
+}
@@ -0,0 +1,134 @@
+package com.creedvi.utils.m3dj.io;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+/**
+ * Per-thread decompression engine.
+ * Each thread owns one Inflater and one direct output buffer which are reused across loads, so steady-state
+ * decompression neither allocates nor copies: data is inflated straight into the buffer the parser reads from.
+ * A load leases its thread's decompressor for as long as it reads the inflated data. A load started while the
+ * thread's decompressor is leased, such as one started from a callback of another load, gets a decompressor of
+ * its own, so it never resets an Inflater or overwrites a buffer the outer load is still reading.
+ */
+public class Decompressor {
+
+    // The output starts at a multiple of the compressed length, within these bounds, and doubles as data inflates.
+    // The size in the 3DMO preamble is not trusted for this, so a damaged file cannot reserve memory it never fills.
+    private static final int SIZE_HINT_FACTOR = 4;
+    private static final int MIN_CAPACITY = 64 * 1024;
+    private static final int MAX_INITIAL_CAPACITY = 4 * 1024 * 1024;
+    // Buffers above this size are released after use rather than pinned to the thread.
+    private static final int MAX_RETAINED_CAPACITY = 64 * 1024 * 1024;
+
+    private static final ThreadLocal<Decompressor> POOL = ThreadLocal.withInitial(Decompressor::new);
+
+    private final Inflater inflater;
+    private final boolean pooled;
+    private ByteBuffer output;
+    private boolean leased;
+
+    private Decompressor() {
+        this(true);
+    }
+
+    private Decompressor(boolean pooled) {
+        this.inflater = new Inflater();
+        this.pooled = pooled;
+    }
+
+    /**
+     * Leases the calling thread's decompressor, or a new one if it is already leased.
+     * Every call must be matched by a call to Release on the same thread once the inflated data is no longer read.
+     * @return Decompressor held by the caller until it is released.
+     */
+    public static Decompressor Acquire() {
+        Decompressor decompressor = POOL.get();
+        if (decompressor.leased) {
+            return new Decompressor(false);
+        }
+        decompressor.leased = true;
+        return decompressor;
+    }
+
+    /**
+     * Hands the decompressor back to its thread. Buffers it returned without detaching them must not be read
+     * afterwards.
+     */
+    public void Release() {
+        if (pooled) {
+            leased = false;
+        }
+        else {
+            inflater.end();
+        }
+    }
+
+    /**
+     * @return This decompressor's Inflater, reset and ready for a new stream.
+     */
+    public Inflater GetInflater() {
+        inflater.reset();
+        return inflater;
+    }
+
+    /**
+     * Inflates a zlib stream into this decompressor's output buffer.
+     * The returned buffer is only valid until the decompressor is released or inflates again.
+     * @param compressedData Buffer positioned at the start of the zlib stream.
+     * @return Little-endian buffer holding the inflated data.
+     * @throws DataFormatException if the compressed data is invalid.
+     */
+    public ByteBuffer Inflate(ByteBuffer compressedData) throws DataFormatException {
+        return Inflate(compressedData, false);
+    }
+
+    /**
+     * Inflates a zlib stream into this decompressor's output buffer.
+     * @param compressedData Buffer positioned at the start of the zlib stream.
+     * @param detach true hands the output buffer over to the caller for as long as it needs it, and the pool
+     *               allocates a new one for the next call; false keeps it pooled.
+     * @return Little-endian buffer holding the inflated data.
+     * @throws DataFormatException if the compressed data is invalid.
+     */
+    public ByteBuffer Inflate(ByteBuffer compressedData, boolean detach) throws DataFormatException {
+        int sizeHint = (int) Math.min(MAX_INITIAL_CAPACITY, Math.max((long) compressedData.remaining() * SIZE_HINT_FACTOR, MIN_CAPACITY));
+        if (output == null || output.capacity() < sizeHint) {
+            output = ByteBuffer.allocateDirect(sizeHint);
+        }
+        output.clear();
+
+        inflater.reset();
+        inflater.setInput(compressedData);
+
+        while (!inflater.finished()) {
+            if (!output.hasRemaining()) {
+                Grow();
+            }
+            if (inflater.inflate(output) == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+                break;
+            }
+        }
+
+        output.flip();
+        ByteBuffer result = output.slice().order(ByteOrder.LITTLE_ENDIAN);
+
+        if (detach || output.capacity() > MAX_RETAINED_CAPACITY) {
+            output = null;
+        }
+
+        return result;
+    }
+
+    private void Grow() {
+        if (output.capacity() == Integer.MAX_VALUE) {
+            throw new IllegalStateException("Inflated model exceeds the maximum buffer size.");
+        }
+        ByteBuffer grown = ByteBuffer.allocateDirect((int) Math.min(Integer.MAX_VALUE, output.capacity() * 2L));
+        output.flip();
+        grown.put(output);
+        output = grown;
+    }
+}
@@ -3,9 +3,12 @@ package com.creedvi.utils.m3dj.io;
 import java.io.BufferedReader;
 import java.io.FileReader;
 import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
 
 public class IO {
     public static byte[] LoadFileData(String fileName) throws IOException {
@@ -25,6 +28,31 @@ public class IO {
         return fileData;
     }
 
+    /**
+     * Maps a file into memory as a read-only buffer instead of copying it onto the heap.
+     * The mapping remains valid after the underlying channel is closed.
+     * @param fileName String path to the file location.
+     * @return Read-only buffer backed by the file's pages, or null if no file name was given.
+     * @throws IOException if the file cannot be opened or is too large to map into a single buffer.
+     */
+    public static MappedByteBuffer MapFileData(String fileName) throws IOException {
+        MappedByteBuffer fileData = null;
+
+        if (fileName != null) {
+            Path path = Paths.get(fileName);
+
+            try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+                long size = channel.size();
+                if (size > Integer.MAX_VALUE) {
+                    throw new IOException("File " + fileName + " is too large to be mapped (" + size + "B).");
+                }
+                fileData = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+            }
+        }
+
+        return fileData;
+    }
+
     public static String LoadFileText(String fileName) throws IOException {
         StringBuilder text = new StringBuilder();
 
@@ -0,0 +1,107 @@
+package com.creedvi.utils.m3dj.io;
+
+import java.io.IOException;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.function.IntPredicate;
+
+/**
+ * Reads chunks from a file through long offsets, mapping it one window at a time instead of as a whole.
+ * A window covers at least WINDOW_SIZE bytes, or the whole chunk if it is larger, and is remapped whenever a chunk
+ * does not lie inside it, so files larger than 2 GiB can be read as long as every single chunk is smaller.
+ * Payloads are slices of the current window and are only valid until the next call to Next().
+ */
+public class MappedChunkReader extends ChunkReader {
+
+    public static final int WINDOW_SIZE = 64 * 1024 * 1024;
+
+    private final FileChannel channel;
+    private final long length;
+    private MappedByteBuffer window;
+    private long windowStart;
+    private long position;
+
+    /**
+     * Offset of the current chunk's payload from the start of the file, and the payload's length.
+     */
+    public long offset;
+    public int size;
+
+    /**
+     * @param channel Channel of the file to read. It is not closed by the reader.
+     * @param position Offset of the first chunk magic.
+     * @param filter Accepts the magic of every chunk that should be returned; other payloads are skipped.
+     * @throws IOException if the size of the file cannot be read.
+     */
+    public MappedChunkReader(FileChannel channel, long position, IntPredicate filter) throws IOException {
+        super(filter);
+        this.channel = channel;
+        this.length = channel.size();
+        this.position = position;
+    }
+
+    @Override
+    public boolean Next() throws IOException {
+        while (ReadHeader()) {
+            if (magic == Magic.OMD3) {
+                data = EMPTY;
+                return true;
+            }
+
+            if (filter.test(magic)) {
+                Map(offset, size);
+                data = window.slice((int) (offset - windowStart), size).order(ByteOrder.LITTLE_ENDIAN);
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    private boolean ReadHeader() throws IOException {
+        if (length - position < MAGIC_LENGTH) {
+            return false;
+        }
+        Map(position, (int) Math.min(HEADER_LENGTH, length - position));
+
+        int index = (int) (position - windowStart);
+        magic = ReadMagic(window, index);
+        offset = position + MAGIC_LENGTH;
+        size = 0;
+
+        // OMD3 indicated the end of the file and does not have a size component.
+        if (magic == Magic.OMD3) {
+            position = offset;
+            return true;
+        }
+        if (length - position < HEADER_LENGTH) {
+            return false;
+        }
+
+        // Chunk size includes the length of Magic and Integer value, and is unsigned in the file.
+        long chunkSize = Integer.toUnsignedLong(window.getInt(index + MAGIC_LENGTH)) - HEADER_LENGTH;
+        offset = position + HEADER_LENGTH;
+        if (chunkSize < 0 || chunkSize > Integer.MAX_VALUE || chunkSize > length - offset) {
+            return false;
+        }
+
+        size = (int) chunkSize;
+        position = offset + size;
+
+        return true;
+    }
+
+    /**
+     * Makes sure the given range of the file lies inside the current window, mapping a new one if it does not.
+     */
+    private void Map(long start, int count) throws IOException {
+        if (window != null && start >= windowStart && start + count <= windowStart + window.capacity()) {
+            return;
+        }
+
+        windowStart = start;
+        window = channel.map(FileChannel.MapMode.READ_ONLY, start, Math.min(Math.max(WINDOW_SIZE, count), length - start));
+        window.order(ByteOrder.LITTLE_ENDIAN);
+    }
+}
@@ -0,0 +1,246 @@
+package com.creedvi.utils.m3dj.io;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.IntPredicate;
+
+/**
+ * Reads chunks from a stream on a background thread.
+ * The background stage (typically inflating a compressed body) fills a fixed ring of chunk buffers while the
+ * caller decodes the chunks that have already completed, so inflation and parsing overlap.
+ * A buffer is handed back to the ring when the caller advances to the next chunk.
+ * Background stages run on a pool of daemon threads shared by every reader.
+ */
+public class PipelinedChunkReader extends ChunkReader {
+
+    public static final int DEFAULT_RING_SIZE = 4;
+
+    private static final int INITIAL_SLOT_SIZE = 64 * 1024;
+
+    private static class Slot {
+        int magic;
+        ByteBuffer buffer = ByteBuffer.allocate(INITIAL_SLOT_SIZE);
+        int size;
+        boolean end;
+        Throwable error;
+    }
+
+    private final InputStream stream;
+    private final BlockingQueue<Slot> free;
+    private final BlockingQueue<Slot> filled;
+    private final CountDownLatch done = new CountDownLatch(1);
+    // Thread running the background stage while it runs, guarded by this reader.
+    private Thread producer;
+    private boolean closed;
+    private Slot current;
+
+    private static ExecutorService executor;
+
+    /**
+     * Starts the background stage immediately.
+     * @param stream Stream positioned at the first chunk magic. It is read exclusively by the background thread.
+     * @param ringSize Number of chunk buffers in flight between the two stages.
+     */
+    public PipelinedChunkReader(InputStream stream, int ringSize) {
+        this(stream, ringSize, ALL);
+    }
+
+    /**
+     * Starts the background stage immediately.
+     * @param stream Stream positioned at the first chunk magic. It is read exclusively by the background thread.
+     * @param ringSize Number of chunk buffers in flight between the two stages.
+     * @param filter Accepts the magic of every chunk that should be returned; other payloads are skipped.
+     */
+    public PipelinedChunkReader(InputStream stream, int ringSize, IntPredicate filter) {
+        super(filter);
+        this.stream = stream;
+        this.free = new ArrayBlockingQueue<>(ringSize);
+        this.filled = new ArrayBlockingQueue<>(ringSize + 1);
+        for (int i = 0; i < ringSize; i++) {
+            free.add(new Slot());
+        }
+
+        GetExecutor().execute(this::Run);
+    }
+
+    private static synchronized ExecutorService GetExecutor() {
+        if (executor == null) {
+            executor = Executors.newCachedThreadPool(runnable -> {
+                Thread thread = new Thread(runnable, "M3DJ-Pipeline");
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+        return executor;
+    }
+
+    @Override
+    public boolean Next() throws IOException {
+        try {
+            if (current != null) {
+                free.put(current);
+            }
+            current = filled.take();
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for chunk data.");
+        }
+
+        if (current.end) {
+            Slot end = current;
+            current = null;
+            // Leave the end marker in place so further calls keep reporting the end of the source.
+            filled.offer(end);
+
+            if (end.error instanceof IOException e) {
+                throw e;
+            }
+            if (end.error instanceof Error e) {
+                throw e;
+            }
+            if (end.error != null) {
+                throw new RuntimeException(end.error);
+            }
+            return false;
+        }
+
+        magic = current.magic;
+        data = current.buffer.clear().limit(current.size).slice().order(ByteOrder.LITTLE_ENDIAN);
+
+        return true;
+    }
+
+    /**
+     * Stops the background stage and waits for it to finish, so the stream may be reused afterwards.
+     */
+    @Override
+    public void Close() {
+        synchronized (this) {
+            closed = true;
+            if (producer != null) {
+                producer.interrupt();
+            }
+        }
+
+        try {
+            done.await();
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void Run() {
+        boolean run;
+        synchronized (this) {
+            run = !closed;
+            producer = run ? Thread.currentThread() : null;
+        }
+        try {
+            if (run) {
+                Produce();
+            }
+        }
+        finally {
+            synchronized (this) {
+                producer = null;
+                // An interrupt from Close must not leak into the next task of the pooled thread.
+                Thread.interrupted();
+            }
+            done.countDown();
+        }
+    }
+
+    private void Produce() {
+        byte[] header = new byte[HEADER_LENGTH];
+        Slot end = new Slot();
+        end.end = true;
+
+        try {
+            while (true) {
+                Slot slot = free.take();
+
+                if (StreamChunkReader.ReadFully(stream, header, 0, MAGIC_LENGTH) < MAGIC_LENGTH) {
+                    break;
+                }
+                slot.magic = ReadMagic(header, 0);
+                slot.size = 0;
+
+                // OMD3 indicated the end of the file and does not have a size component.
+                if (slot.magic == Magic.OMD3) {
+                    filled.put(slot);
+                    break;
+                }
+
+                if (StreamChunkReader.ReadFully(stream, header, MAGIC_LENGTH, Integer.BYTES) < Integer.BYTES) {
+                    break;
+                }
+
+                // Chunk size includes the length of Magic and Integer value.
+                int chunkSize = ReadInt(header, MAGIC_LENGTH) - HEADER_LENGTH;
+                if (chunkSize < 0) {
+                    break;
+                }
+
+                if (!filter.test(slot.magic)) {
+                    if (!StreamChunkReader.Skip(stream, chunkSize)) {
+                        break;
+                    }
+                    free.put(slot);
+                    continue;
+                }
+
+                if (!ReadPayload(slot, chunkSize)) {
+                    break;
+                }
+                slot.size = chunkSize;
+
+                filled.put(slot);
+            }
+        }
+        catch (InterruptedException e) {
+            // Consumer stopped early; nothing left to hand over.
+            return;
+        }
+        catch (Throwable e) {
+            // Anything escaping here would leave the consumer waiting for the end marker forever.
+            end.error = e;
+        }
+
+        // The ring never holds more than ringSize slots, so the extra capacity always fits the end marker.
+        filled.offer(end);
+    }
+
+    /**
+     * Reads a payload into a slot, growing its buffer only as the data arrives, so a corrupt chunk size
+     * allocates no more than the stream actually holds.
+     * @return false if the stream ends before the payload does.
+     */
+    private boolean ReadPayload(Slot slot, int chunkSize) throws IOException {
+        int read = 0;
+        while (read < chunkSize) {
+            if (read == slot.buffer.capacity()) {
+                int capacity = (int) Math.min(chunkSize, Math.max(INITIAL_SLOT_SIZE, slot.buffer.capacity() * 2L));
+                slot.buffer = ByteBuffer.wrap(Arrays.copyOf(slot.buffer.array(), capacity));
+            }
+
+            int length = Math.min(chunkSize, slot.buffer.capacity()) - read;
+            int count = StreamChunkReader.ReadFully(stream, slot.buffer.array(), read, length);
+            read += count;
+            if (count < length) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -0,0 +1,190 @@
+package com.creedvi.utils.m3dj.io;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+import java.util.function.IntPredicate;
+
+/**
+ * Reads chunks incrementally from an input stream.
+ * Each payload is read into a single window buffer that is reused between chunks and only grows when a chunk
+ * exceeds its current capacity, so memory use stays near the size of the largest chunk. The window grows as the
+ * payload arrives rather than to the size the chunk declares, so a corrupt chunk size allocates no more than the
+ * stream actually holds.
+ */
+public class StreamChunkReader extends ChunkReader {
+
+    private static final int INITIAL_WINDOW = 64 * 1024;
+
+    private final InputStream stream;
+    private final byte[] header;
+    private ByteBuffer window = ByteBuffer.allocate(0);
+    private long position;
+
+    /**
+     * Offset of the current chunk's payload from the start of the stream, and the payload's length.
+     */
+    public long offset;
+    public int size;
+
+    /**
+     * @param stream Stream positioned at the first chunk magic.
+     */
+    public StreamChunkReader(InputStream stream) {
+        this(stream, ALL);
+    }
+
+    /**
+     * @param stream Stream positioned at the first chunk magic.
+     * @param filter Accepts the magic of every chunk that should be returned; other payloads are skipped.
+     */
+    public StreamChunkReader(InputStream stream, IntPredicate filter) {
+        super(filter);
+        this.stream = stream;
+        this.header = new byte[HEADER_LENGTH];
+        this.position = 0;
+    }
+
+    @Override
+    public boolean Next() throws IOException {
+        if (!ReadHeader()) {
+            return false;
+        }
+        while (magic != Magic.OMD3 && !filter.test(magic)) {
+            if (!SkipPayload() || !ReadHeader()) {
+                return false;
+            }
+        }
+
+        if (!ReadPayload()) {
+            return false;
+        }
+        position += size;
+
+        data = window.clear().limit(size).slice().order(ByteOrder.LITTLE_ENDIAN);
+
+        return true;
+    }
+
+    /**
+     * Advances to the next chunk without reading its payload.
+     * The payload is skipped, which seeks on seekable sources; data is left empty and size holds the payload length.
+     * @return true if a chunk header was read; false if the source is exhausted or the chunk is truncated.
+     * @throws IOException if the underlying source fails.
+     */
+    public boolean NextHeader() throws IOException {
+        if (!ReadHeader()) {
+            return false;
+        }
+
+        data = EMPTY;
+        return SkipPayload();
+    }
+
+    /**
+     * Reads the current payload into the window, growing it only as the data arrives.
+     * @return false if the stream ends before the payload does.
+     */
+    private boolean ReadPayload() throws IOException {
+        int read = 0;
+        while (read < size) {
+            if (read == window.capacity()) {
+                int capacity = (int) Math.min(size, Math.max(INITIAL_WINDOW, window.capacity() * 2L));
+                window = ByteBuffer.wrap(Arrays.copyOf(window.array(), capacity));
+            }
+
+            int length = Math.min(size, window.capacity()) - read;
+            int count = ReadFully(stream, window.array(), read, length);
+            read += count;
+            if (count < length) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private boolean SkipPayload() throws IOException {
+        if (!Skip(stream, size)) {
+            return false;
+        }
+        position += size;
+
+        return true;
+    }
+
+    private boolean ReadHeader() throws IOException {
+        if (ReadFully(stream, header, 0, MAGIC_LENGTH) < MAGIC_LENGTH) {
+            return false;
+        }
+        position += MAGIC_LENGTH;
+
+        magic = ReadMagic(header, 0);
+        offset = position;
+        size = 0;
+
+        // OMD3 indicated the end of the file and does not have a size component.
+        if (magic == Magic.OMD3) {
+            data = EMPTY;
+            return true;
+        }
+
+        if (ReadFully(stream, header, MAGIC_LENGTH, Integer.BYTES) < Integer.BYTES) {
+            return false;
+        }
+        position += Integer.BYTES;
+        offset = position;
+
+        // Chunk size includes the length of Magic and Integer value.
+        size = ReadInt(header, MAGIC_LENGTH) - HEADER_LENGTH;
+
+        return size >= 0;
+    }
+
+    /**
+     * Reads until the requested number of bytes has arrived or the stream ends.
+     * @return Number of bytes actually read.
+     */
+    public static int ReadFully(InputStream stream, byte[] buffer, int offset, int length) throws IOException {
+        int total = 0;
+        while (total < length) {
+            int read = stream.read(buffer, offset + total, length - total);
+            if (read < 0) {
+                break;
+            }
+            total += read;
+        }
+        return total;
+    }
+
+    /**
+     * Skips the requested number of bytes, seeking where the stream supports it.
+     * @return false if the stream ends first.
+     */
+    public static boolean Skip(InputStream stream, long length) throws IOException {
+        long remaining = length;
+        while (remaining > 0) {
+            long skipped = stream.skip(remaining);
+            if (skipped <= 0) {
+                if (stream.read() < 0) {
+                    return false;
+                }
+                skipped = 1;
+            }
+            remaining -= skipped;
+        }
+        return true;
+    }
+
+    /**
+     * Reads exactly the requested number of bytes.
+     * @throws EOFException if the stream ends first.
+     */
+    public static void ReadExactly(InputStream stream, byte[] buffer, int offset, int length) throws IOException {
+        if (ReadFully(stream, buffer, offset, length) < length) {
+            throw new EOFException("Unexpected end of model stream.");
+        }
+    }
+}
@@ -24,11 +24,19 @@ public class Tracelog {
     }
 
     public void out(LogType logType, String message) {
-        if (logType.ordinal() <= this.logLevel) {
+        if (isEnabled(logType)) {
             System.out.println("M3D-J :: " + logType + " :: " + message);
         }
     }
 
+    /**
+     * Lets hot loops skip building messages that would be discarded anyway.
+     * @return true if messages of the given type are printed at the current log level.
+     */
+    public boolean isEnabled(LogType logType) {
+        return logType.ordinal() <= this.logLevel;
+    }
+
     public void setLogLevel(int logLevel) {
         this.logLevel = logLevel;
     }
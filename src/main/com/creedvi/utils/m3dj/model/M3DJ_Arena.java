@@ -0,0 +1,198 @@
+package com.creedvi.utils.m3dj.model;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Owner of the off-heap buffers a model is decoded into, accounting for the memory they take.
+ * Closing the arena frees every buffer it allocated at once instead of leaving them to the garbage collector, so
+ * large models can be released without waiting for a collection. The buffers are never handed out: the models
+ * and index buffers holding them only read and write them between Acquire and Release, and close waits for those
+ * calls to return before freeing anything, so memory is never read after it has been freed. Once the arena is
+ * closed, Acquire and every accessor of its models throw IllegalStateException.
+ * If the runtime does not allow direct buffers to be freed explicitly, closing only drops the arena's references
+ * and the memory is returned when the buffers are collected.
+ */
+public class M3DJ_Arena implements AutoCloseable {
+
+    private static final Object UNSAFE;
+    private static final Method INVOKE_CLEANER;
+
+    static {
+        Object unsafe = null;
+        Method invokeCleaner = null;
+        try {
+            Class<?> unsafeClass = Class.forName("sun.misc.Unsafe");
+            Field field = unsafeClass.getDeclaredField("theUnsafe");
+            field.setAccessible(true);
+            unsafe = field.get(null);
+            invokeCleaner = unsafeClass.getMethod("invokeCleaner", ByteBuffer.class);
+        }
+        catch (ReflectiveOperationException | RuntimeException e) {
+            unsafe = null;
+            invokeCleaner = null;
+        }
+        UNSAFE = unsafe;
+        INVOKE_CLEANER = invokeCleaner;
+    }
+
+    // Number of Acquire calls not yet released, or -1 once the arena is closed.
+    private final AtomicInteger users;
+    private final ArrayList<ByteBuffer> buffers;
+    // Buffers given up while the arena is in use, freed once nothing is using it.
+    private final ArrayList<ByteBuffer> retired;
+    private volatile boolean hasRetired;
+    private long allocatedBytes;
+
+    public M3DJ_Arena() {
+        this.users = new AtomicInteger();
+        this.buffers = new ArrayList<>();
+        this.retired = new ArrayList<>();
+    }
+
+    /**
+     * Allocates a zeroed little-endian direct buffer owned by this arena.
+     * The buffer must only be read or written between Acquire and Release, and must not be handed to code that
+     * could keep it past the arena's life.
+     * @param bytes Size of the buffer, at most Integer.MAX_VALUE.
+     * @throws IllegalArgumentException if the size is negative or exceeds what a single buffer can address.
+     * @throws IllegalStateException if the arena is closed.
+     */
+    public synchronized ByteBuffer Allocate(long bytes) {
+        if (!IsOpen()) {
+            throw new IllegalStateException("Arena has been closed.");
+        }
+        if (bytes < 0 || bytes > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Off-heap buffers are limited to " + Integer.MAX_VALUE + "B, requested " + bytes + "B.");
+        }
+
+        ByteBuffer buffer = ByteBuffer.allocateDirect((int) bytes).order(ByteOrder.LITTLE_ENDIAN);
+        buffers.add(buffer);
+        allocatedBytes += bytes;
+
+        return buffer;
+    }
+
+    /**
+     * Frees a buffer of this arena before the arena is closed, such as one that has been replaced by a larger
+     * copy. The memory is freed as soon as no Acquire is outstanding. Buffers the arena does not own are ignored.
+     */
+    public void Free(ByteBuffer buffer) {
+        synchronized (this) {
+            int i = buffers.size() - 1;
+            while (i >= 0 && buffers.get(i) != buffer) {
+                i--;
+            }
+            if (i < 0) {
+                return;
+            }
+            buffers.remove(i);
+            allocatedBytes -= buffer.capacity();
+            retired.add(buffer);
+            hasRetired = true;
+        }
+        if (users.get() == 0) {
+            FreeRetired();
+        }
+    }
+
+    /**
+     * @return Total size of the buffers currently owned by the arena.
+     */
+    public synchronized long GetAllocatedBytes() {
+        return allocatedBytes;
+    }
+
+    public boolean IsOpen() {
+        return users.get() >= 0;
+    }
+
+    /**
+     * Keeps the arena's buffers from being freed until the matching call to Release. Calls may be nested, and
+     * every call must be matched by a call to Release.
+     * @throws IllegalStateException if the arena is closed.
+     */
+    public void Acquire() {
+        while (true) {
+            int count = users.get();
+            if (count < 0) {
+                throw new IllegalStateException("Arena has been closed.");
+            }
+            if (users.compareAndSet(count, count + 1)) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * Ends a call to Acquire.
+     */
+    public void Release() {
+        if (users.decrementAndGet() == 0 && hasRetired) {
+            FreeRetired();
+        }
+    }
+
+    /**
+     * Frees the buffers given up by Free, unless the arena is in use. A buffer is only given up once nothing
+     * refers to it any more, so only an Acquire outstanding at that time can still read it.
+     */
+    private synchronized void FreeRetired() {
+        if (users.get() != 0) {
+            return;
+        }
+        for (ByteBuffer buffer : retired) {
+            FreeNow(buffer);
+        }
+        retired.clear();
+        hasRetired = false;
+    }
+
+    /**
+     * Frees every buffer owned by the arena, first waiting for outstanding calls to Acquire to be released.
+     * Closing an arena more than once has no effect. Must not be called between Acquire and Release on the same
+     * thread.
+     */
+    @Override
+    public void close() {
+        while (true) {
+            int count = users.get();
+            if (count < 0) {
+                return;
+            }
+            if (count == 0 && users.compareAndSet(0, -1)) {
+                break;
+            }
+            Thread.onSpinWait();
+        }
+
+        synchronized (this) {
+            for (ByteBuffer buffer : buffers) {
+                FreeNow(buffer);
+            }
+            for (ByteBuffer buffer : retired) {
+                FreeNow(buffer);
+            }
+            buffers.clear();
+            retired.clear();
+            hasRetired = false;
+            allocatedBytes = 0;
+        }
+    }
+
+    private static void FreeNow(ByteBuffer buffer) {
+        if (INVOKE_CLEANER == null) {
+            return;
+        }
+        try {
+            INVOKE_CLEANER.invoke(UNSAFE, buffer);
+        }
+        catch (ReflectiveOperationException e) {
+            // Left for the garbage collector to free.
+        }
+    }
+}
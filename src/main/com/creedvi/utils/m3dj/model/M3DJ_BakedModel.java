@@ -0,0 +1,74 @@
+package com.creedvi.utils.m3dj.model;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Model opened from a baked cache file (see M3DJ_BakedCache). Vertices, the colour map, the texture map and the
+ * face streams are little-endian slices of the mapped file, laid out as the arrays of M3DJ_PackedModel, so they
+ * are read in place without being decoded. The header and materials are decoded onto the heap as they are for
+ * M3DJ_Model; the preview is a slice of the mapped file as well.
+ * The buffers are read-only and stay valid for as long as the model is reachable.
+ */
+public class M3DJ_BakedModel extends M3DJ_Model {
+
+    public int vertexCount;
+    public ByteBuffer positions;
+    public boolean doublePrecision;
+    public ByteBuffer colorIndices;
+    public ByteBuffer skinIndices;
+
+    public int colorCount;
+    // One colour per int, as stored in the file: red in the lowest byte, alpha in the highest.
+    public ByteBuffer palette;
+
+    public int texCoordCount;
+    public ByteBuffer texCoords;
+
+    public M3DJ_PackedFaces packedFaces;
+
+    public M3DJ_BakedModel() {
+        super();
+        this.packedFaces = new M3DJ_PackedFaces();
+    }
+
+    public double GetX(int vertex) {
+        return GetPosition(vertex, 0);
+    }
+
+    public double GetY(int vertex) {
+        return GetPosition(vertex, 1);
+    }
+
+    public double GetZ(int vertex) {
+        return GetPosition(vertex, 2);
+    }
+
+    public double GetW(int vertex) {
+        return GetPosition(vertex, 3);
+    }
+
+    private double GetPosition(int vertex, int component) {
+        int i = vertex * M3DJ_PackedModel.POSITION_COMPONENTS + component;
+        return doublePrecision ? positions.getDouble(i * Double.BYTES) : positions.getFloat(i * Float.BYTES);
+    }
+
+    public int GetColorIndex(int vertex) {
+        return colorIndices.getInt(vertex * Integer.BYTES);
+    }
+
+    public int GetSkinIndex(int vertex) {
+        return skinIndices.getInt(vertex * Integer.BYTES);
+    }
+
+    public int GetColor(int color) {
+        return palette.getInt(color * Integer.BYTES);
+    }
+
+    public float GetU(int texCoord) {
+        return texCoords.getFloat(texCoord * M3DJ_PackedModel.TEXCOORD_COMPONENTS * Float.BYTES);
+    }
+
+    public float GetV(int texCoord) {
+        return texCoords.getFloat((texCoord * M3DJ_PackedModel.TEXCOORD_COMPONENTS + 1) * Float.BYTES);
+    }
+}
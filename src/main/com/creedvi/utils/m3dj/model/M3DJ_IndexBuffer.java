@@ -0,0 +1,249 @@
+package com.creedvi.utils.m3dj.model;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * Index stream kept at the width the model stores it with: a byte[], short[] or int[] for 1, 2 or 4 byte indices.
+ * Only the array matching indexSize is allocated; indices of an undefined (0 byte) type use the int[].
+ * Values are stored as read from the file and widened by Get, which follows the M3D convention: the two highest
+ * values of a narrow index are the negative markers (M3D_UNDEF being -1), every other value is unsigned.
+ * A buffer created with an arena keeps its indices off-heap in a direct buffer of the same width instead. That
+ * buffer is only reached through the methods below, which throw IllegalStateException once the arena is closed.
+ */
+public class M3DJ_IndexBuffer {
+
+    public final int indexSize;
+    public byte[] bytes;
+    public short[] shorts;
+    public int[] ints;
+
+    private ByteBuffer buffer;
+    private final M3DJ_Arena arena;
+
+    public M3DJ_IndexBuffer(int indexSize, int length) {
+        this(indexSize, length, null);
+    }
+
+    /**
+     * @param arena Arena to allocate the indices from, or null to keep them in an array.
+     */
+    public M3DJ_IndexBuffer(int indexSize, int length, M3DJ_Arena arena) {
+        this.indexSize = indexSize;
+        this.arena = arena;
+        if (arena != null) {
+            buffer = arena.Allocate((long) length * Width());
+            return;
+        }
+        switch (indexSize) {
+            case 1 -> bytes = new byte[length];
+            case 2 -> shorts = new short[length];
+            default -> ints = new int[length];
+        }
+    }
+
+    /**
+     * Wraps indices already held in a little-endian buffer, such as a mapped file, at the width of indexSize.
+     * The buffer is used as it is and cannot grow.
+     */
+    public M3DJ_IndexBuffer(int indexSize, ByteBuffer buffer) {
+        this.indexSize = indexSize;
+        this.arena = null;
+        this.buffer = buffer;
+    }
+
+    public int Length() {
+        if (buffer != null) {
+            return buffer.capacity() / Width();
+        }
+        return switch (indexSize) {
+            case 1 -> bytes.length;
+            case 2 -> shorts.length;
+            default -> ints.length;
+        };
+    }
+
+    public int Get(int i) {
+        if (arena == null) {
+            return GetIndex(i);
+        }
+        arena.Acquire();
+        try {
+            return GetIndex(i);
+        }
+        finally {
+            arena.Release();
+        }
+    }
+
+    private int GetIndex(int i) {
+        return switch (indexSize) {
+            case 1 -> {
+                byte stored = buffer != null ? buffer.get(i) : bytes[i];
+                int value = Byte.toUnsignedInt(stored);
+                yield value > 253 ? stored : value;
+            }
+            case 2 -> {
+                short stored = buffer != null ? buffer.getShort(i * Short.BYTES) : shorts[i];
+                int value = Short.toUnsignedInt(stored);
+                yield value > 65533 ? stored : value;
+            }
+            default -> buffer != null ? buffer.getInt(i * Integer.BYTES) : ints[i];
+        };
+    }
+
+    public void Set(int i, int value) {
+        if (arena == null) {
+            SetIndex(i, value);
+            return;
+        }
+        arena.Acquire();
+        try {
+            SetIndex(i, value);
+        }
+        finally {
+            arena.Release();
+        }
+    }
+
+    private void SetIndex(int i, int value) {
+        if (buffer != null) {
+            switch (indexSize) {
+                case 1 -> buffer.put(i, (byte) value);
+                case 2 -> buffer.putShort(i * Short.BYTES, (short) value);
+                default -> buffer.putInt(i * Integer.BYTES, value);
+            }
+            return;
+        }
+        switch (indexSize) {
+            case 1 -> bytes[i] = (byte) value;
+            case 2 -> shorts[i] = (short) value;
+            default -> ints[i] = value;
+        }
+    }
+
+    /**
+     * Copies one index as stored in the file, advancing the buffer past it.
+     */
+    public void Read(int i, ByteBuffer fileData) {
+        if (buffer != null) {
+            if (arena != null) {
+                arena.Acquire();
+            }
+            try {
+                switch (indexSize) {
+                    case 1 -> buffer.put(i, fileData.get());
+                    case 2 -> buffer.putShort(i * Short.BYTES, fileData.getShort());
+                    case 4 -> buffer.putInt(i * Integer.BYTES, fileData.getInt());
+                    default -> buffer.putInt(i * Integer.BYTES, 0);
+                }
+            }
+            finally {
+                if (arena != null) {
+                    arena.Release();
+                }
+            }
+            return;
+        }
+        switch (indexSize) {
+            case 1 -> bytes[i] = fileData.get();
+            case 2 -> shorts[i] = fileData.getShort();
+            case 4 -> ints[i] = fileData.getInt();
+            // Indices of an undefined type take no space in the file.
+            default -> ints[i] = 0;
+        }
+    }
+
+    /**
+     * Grows the buffer to the given length, setting the added entries to the given value.
+     */
+    public void Grow(int length, int fill) {
+        int previous = Length();
+        if (previous >= length) {
+            return;
+        }
+        if (buffer != null) {
+            // Direct buffers cannot be resized, so the indices are copied and the old buffer is freed.
+            arena.Acquire();
+            try {
+                ByteBuffer grown = arena.Allocate((long) length * Width());
+                grown.put(0, buffer, 0, buffer.capacity());
+                ByteBuffer previousBuffer = buffer;
+                buffer = grown;
+                arena.Free(previousBuffer);
+                for (int i = previous; fill != 0 && i < length; i++) {
+                    SetIndex(i, fill);
+                }
+            }
+            finally {
+                arena.Release();
+            }
+            return;
+        }
+        switch (indexSize) {
+            case 1 -> bytes = Arrays.copyOf(bytes, length);
+            case 2 -> shorts = Arrays.copyOf(shorts, length);
+            default -> ints = Arrays.copyOf(ints, length);
+        }
+        if (fill != 0) {
+            for (int i = previous; i < length; i++) {
+                SetIndex(i, fill);
+            }
+        }
+    }
+
+    /**
+     * Copies the first length indices to the buffer as they are stored, at Width bytes each.
+     */
+    public void Write(ByteBuffer out, int length) {
+        if (buffer != null) {
+            if (arena != null) {
+                arena.Acquire();
+            }
+            try {
+                out.put(buffer.slice(0, length * Width()));
+            }
+            finally {
+                if (arena != null) {
+                    arena.Release();
+                }
+            }
+            return;
+        }
+        for (int i = 0; i < length; i++) {
+            switch (indexSize) {
+                case 1 -> out.put(bytes[i]);
+                case 2 -> out.putShort(shorts[i]);
+                default -> out.putInt(ints[i]);
+            }
+        }
+    }
+
+    /**
+     * @return Number of bytes each index takes in memory.
+     */
+    public int Width() {
+        return indexSize == 1 || indexSize == 2 ? indexSize : Integer.BYTES;
+    }
+
+    /**
+     * @return The indices widened to int, as returned by Get.
+     */
+    public int[] ToIntArray(int length) {
+        int[] result = new int[length];
+        if (arena != null) {
+            arena.Acquire();
+        }
+        try {
+            for (int i = 0; i < length; i++) {
+                result[i] = GetIndex(i);
+            }
+        }
+        finally {
+            if (arena != null) {
+                arena.Release();
+            }
+        }
+        return result;
+    }
+}
@@ -3,6 +3,7 @@ package com.creedvi.utils.m3dj.model;
 import com.creedvi.utils.m3dj.model.chunks.*;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 
 public class M3DJ_Model {
 
@@ -17,6 +18,12 @@ public class M3DJ_Model {
     public ArrayList<M3DJ_Parameter> parameters;
     public ArrayList<M3DJ_Skin> skins;
 
+    // Elements of a previous load, handed out again by the New methods after the model is cleared.
+    private final ArrayList<M3DJ_Color> spareColors;
+    private final ArrayList<M3DJ_TextureCoordinate> spareTextureMap;
+    private final ArrayList<M3DJ_Vertex> spareVertices;
+    private final ArrayList<M3DJ_Face> spareFaces;
+
     public M3DJ_Model() {
         this.preview = new M3DJ_Preview();
         this.header = new M3DJ_Header();
@@ -28,6 +35,142 @@ public class M3DJ_Model {
         this.faces = new ArrayList<>();
         this.parameters = new ArrayList<>();
         this.skins = new ArrayList<>();
+        this.spareColors = new ArrayList<>();
+        this.spareTextureMap = new ArrayList<>();
+        this.spareVertices = new ArrayList<>();
+        this.spareFaces = new ArrayList<>();
+    }
+
+    /**
+     * Empties the model so it can be loaded again.
+     * Colours, texture coordinates, vertices and faces are kept aside and handed out again by the New methods,
+     * so reloading a model of similar size allocates no new elements. Elements taken from the model before it
+     * was cleared must not be used afterwards, as they may be overwritten by the next load.
+     */
+    public void Clear() {
+        preview.Clear();
+        header.Clear();
+        Recycle(colors, spareColors);
+        Recycle(textureMap, spareTextureMap);
+        Recycle(vertices, spareVertices);
+        Recycle(faces, spareFaces);
+        bones.clear();
+        materials.clear();
+        parameters.clear();
+        skins.clear();
+    }
+
+    private static <T> void Recycle(ArrayList<T> elements, ArrayList<T> spare) {
+        spare.ensureCapacity(spare.size() + elements.size());
+        for (int i = elements.size() - 1; i >= 0; i--) {
+            spare.add(elements.get(i));
+        }
+        elements.clear();
+    }
+
+    /**
+     * @return A colour kept aside by Clear, reset to its initial values, or a new colour if none is left.
+     */
+    public M3DJ_Color NewColor() {
+        if (spareColors.isEmpty()) {
+            return new M3DJ_Color();
+        }
+        M3DJ_Color color = spareColors.remove(spareColors.size() - 1);
+        color.r = 0;
+        color.g = 0;
+        color.b = 0;
+        color.a = 0;
+        return color;
+    }
+
+    /**
+     * @return A texture coordinate kept aside by Clear, reset to its initial values, or a new one if none is left.
+     */
+    public M3DJ_TextureCoordinate NewTextureCoordinate() {
+        if (spareTextureMap.isEmpty()) {
+            return new M3DJ_TextureCoordinate(0.0f, 0.0f);
+        }
+        M3DJ_TextureCoordinate coordinate = spareTextureMap.remove(spareTextureMap.size() - 1);
+        coordinate.u = 0.0;
+        coordinate.v = 0.0;
+        return coordinate;
+    }
+
+    /**
+     * @return A vertex kept aside by Clear, reset to its initial values, or a new vertex if none is left.
+     */
+    public M3DJ_Vertex NewVertex() {
+        if (spareVertices.isEmpty()) {
+            return new M3DJ_Vertex();
+        }
+        M3DJ_Vertex vertex = spareVertices.remove(spareVertices.size() - 1);
+        vertex.x = 0.0;
+        vertex.y = 0.0;
+        vertex.z = 0.0;
+        vertex.w = 0.0;
+        vertex.colorIndex = -1;
+        vertex.skinIndex = -1;
+        return vertex;
+    }
+
+    /**
+     * @return A face kept aside by Clear, reset to its initial values, or a new face if none is left.
+     */
+    public M3DJ_Face NewFace() {
+        if (spareFaces.isEmpty()) {
+            return new M3DJ_Face();
+        }
+        M3DJ_Face face = spareFaces.remove(spareFaces.size() - 1);
+        face.materialId = -1;
+        face.paramId = -1;
+        Arrays.fill(face.vertices, 0);
+        Arrays.fill(face.normals, 0);
+        Arrays.fill(face.texCoords, 0);
+        Arrays.fill(face.vertMax, 0);
+        return face;
+    }
+
+    /**
+     * @return Number of faces NewFace can hand out without allocating.
+     */
+    public int GetSpareFaceCount() {
+        return spareFaces.size();
+    }
+
+    /**
+     * Estimates the heap space taken by the model's decoded elements, assuming compressed references.
+     * The estimate is meant for weighing models against each other, such as for cache budgets, rather than as
+     * an exact measurement. Elements kept aside by Clear are not counted.
+     * @return Estimated size of the model in bytes.
+     */
+    public long GetEstimatedBytes() {
+        // Object sizes include the element's reference in its list and any arrays it owns.
+        long bytes = 0;
+        bytes += colors.size() * 36L;
+        bytes += textureMap.size() * 36L;
+        bytes += vertices.size() * 60L;
+        bytes += faces.size() * 172L;
+        bytes += skins.size() * 108L;
+        for (M3DJ_Bone bone : bones) {
+            bytes += 44L + EstimateBytes(bone.name);
+        }
+        for (M3DJ_Material material : materials) {
+            bytes += 48L + EstimateBytes(material.name) + material.properties.size() * 44L;
+        }
+        for (M3DJ_Parameter parameter : parameters) {
+            bytes += 28L + EstimateBytes(parameter.name);
+        }
+        for (String string : header.stringTable) {
+            bytes += 4L + EstimateBytes(string);
+        }
+        if (preview.imageData != null) {
+            bytes += preview.imageData.capacity();
+        }
+        return bytes;
+    }
+
+    private static long EstimateBytes(String string) {
+        return string == null ? 0 : 40L + string.length();
     }
 
 }
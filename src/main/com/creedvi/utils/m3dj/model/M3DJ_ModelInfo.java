@@ -0,0 +1,57 @@
+package com.creedvi.utils.m3dj.model;
+
+import com.creedvi.utils.m3dj.model.chunks.M3DJ_Header;
+
+import java.util.ArrayList;
+
+/**
+ * Summary of a model file gathered from its header and chunk headers only, without decoding any chunk data.
+ */
+public class M3DJ_ModelInfo {
+
+    public static class ChunkInfo {
+        public String magic;
+        // Offset of the payload from the start of the (decompressed) chunk data, following the preamble and preview.
+        public long offset;
+        public int size;
+        // Element count estimated from the chunk size and header types, or -1 if it cannot be estimated.
+        public int estimatedCount;
+
+        public ChunkInfo(String magic, long offset, int size, int estimatedCount) {
+            this.magic = magic;
+            this.offset = offset;
+            this.size = size;
+            this.estimatedCount = estimatedCount;
+        }
+    }
+
+    public int fileSize;
+    public boolean compressed;
+
+    // Location of the preview image payload within the file, or -1 if the model has no preview.
+    public long previewOffset;
+    public int previewLength;
+
+    public M3DJ_Header header;
+    public ArrayList<ChunkInfo> chunks;
+
+    public M3DJ_ModelInfo() {
+        this.previewOffset = -1;
+        this.previewLength = 0;
+        this.header = new M3DJ_Header();
+        this.chunks = new ArrayList<>();
+    }
+
+    /**
+     * @return Sum of the estimated element counts of all chunks with the given magic, or -1 if there are none.
+     */
+    public int GetEstimatedCount(String magic) {
+        int total = -1;
+        for (ChunkInfo chunk : chunks) {
+            if (chunk.magic.equals(magic) && chunk.estimatedCount >= 0) {
+                total = Math.max(total, 0) + chunk.estimatedCount;
+            }
+        }
+        return total;
+    }
+}
@@ -0,0 +1,62 @@
+package com.creedvi.utils.m3dj.model;
+
+import com.creedvi.utils.m3dj.model.chunks.*;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Immutable view of a model part way through a progressive load (see M3DJ.LoadFileProgressive).
+ * The lists are unmodifiable copies taken when the snapshot was made, so they do not grow as the load goes on,
+ * and every field is final, so a snapshot handed to another thread is seen complete without further
+ * synchronisation. The elements themselves are shared with the model being loaded; the parser no longer changes
+ * them once their stage is ready, and they must not be modified by the reader either.
+ * Parts of the model that have not been loaded yet are empty, and the header is null until its stage is ready.
+ */
+public final class M3DJ_ModelSnapshot {
+
+    public final int stage;
+    // Read-only; null if the file has no preview.
+    public final ByteBuffer preview;
+    public final M3DJ_Header header;
+    public final List<M3DJ_Color> colors;
+    public final List<M3DJ_TextureCoordinate> textureMap;
+    public final List<M3DJ_Vertex> vertices;
+    public final List<M3DJ_Bone> bones;
+    public final List<M3DJ_Material> materials;
+    public final List<M3DJ_Face> faces;
+    public final List<M3DJ_Parameter> parameters;
+    public final List<M3DJ_Skin> skins;
+
+    /**
+     * @param stage Stage of the load the snapshot is taken at.
+     * @param model Model being loaded.
+     * @param previous Snapshot taken at an earlier stage of the same load, or null. Lists that have not grown
+     *                 since are shared with it rather than copied again.
+     */
+    public M3DJ_ModelSnapshot(int stage, M3DJ_Model model, M3DJ_ModelSnapshot previous) {
+        this.stage = stage;
+        this.preview = model.preview.imageData != null ? model.preview.imageData.asReadOnlyBuffer() : null;
+        this.header = model.header.stringTable.isEmpty() ? null : model.header;
+        this.colors = Freeze(model.colors, previous != null ? previous.colors : null);
+        this.textureMap = Freeze(model.textureMap, previous != null ? previous.textureMap : null);
+        this.vertices = Freeze(model.vertices, previous != null ? previous.vertices : null);
+        this.bones = Freeze(model.bones, previous != null ? previous.bones : null);
+        this.materials = Freeze(model.materials, previous != null ? previous.materials : null);
+        this.faces = Freeze(model.faces, previous != null ? previous.faces : null);
+        this.parameters = Freeze(model.parameters, previous != null ? previous.parameters : null);
+        this.skins = Freeze(model.skins, previous != null ? previous.skins : null);
+    }
+
+    /**
+     * Elements are only ever appended while a model loads, so a list of the same size holds the same elements.
+     */
+    private static <T> List<T> Freeze(ArrayList<T> elements, List<T> previous) {
+        if (previous != null && previous.size() == elements.size()) {
+            return previous;
+        }
+        return elements.isEmpty() ? Collections.emptyList() : Collections.unmodifiableList(new ArrayList<>(elements));
+    }
+}
@@ -0,0 +1,260 @@
+package com.creedvi.utils.m3dj.model;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Model whose vertices, colour map, texture map and face streams are held in little-endian off-heap buffers
+ * allocated from an arena, laid out as the arrays of M3DJ_PackedModel: x, y, z, w per vertex as float (double for
+ * double precision models), u, v per texture coordinate as float, and one int per colour index, skin index and
+ * palette entry. Every other chunk is decoded onto the heap as it is for M3DJ_Model. Buffers hold at least count
+ * elements; a model reloaded through M3DJ.LoadInto keeps buffers that are already large enough.
+ * The buffers are private to the model and only read and written through the methods below, so closing the arena
+ * can free them at once: the methods throw IllegalStateException from then on. A model must not be read while it
+ * is being loaded into.
+ */
+public class M3DJ_OffHeapModel extends M3DJ_Model {
+
+    public final M3DJ_Arena arena;
+
+    public int vertexCount;
+    public boolean doublePrecision;
+    public int colorCount;
+    public int texCoordCount;
+
+    public M3DJ_PackedFaces packedFaces;
+
+    private ByteBuffer positions;
+    private ByteBuffer colorIndices;
+    private ByteBuffer skinIndices;
+    // One colour per int, as stored in the file: red in the lowest byte, alpha in the highest.
+    private ByteBuffer palette;
+    private ByteBuffer texCoords;
+
+    public M3DJ_OffHeapModel(M3DJ_Arena arena) {
+        super();
+        this.arena = arena;
+        this.positions = arena.Allocate(0);
+        this.colorIndices = arena.Allocate(0);
+        this.skinIndices = arena.Allocate(0);
+        this.palette = arena.Allocate(0);
+        this.texCoords = arena.Allocate(0);
+        this.packedFaces = new M3DJ_PackedFaces(arena);
+    }
+
+    /**
+     * Empties the model so it can be loaded again, keeping its buffers for the next load.
+     */
+    @Override
+    public void Clear() {
+        super.Clear();
+        vertexCount = 0;
+        colorCount = 0;
+        texCoordCount = 0;
+        packedFaces.Clear();
+    }
+
+    /**
+     * Makes room for the given number of vertices, keeping the buffers if they are large enough.
+     * Sets doublePrecision; vertexCount is left to the caller once the vertices are set.
+     */
+    public void ReserveVertices(int count, boolean doublePrecision) {
+        arena.Acquire();
+        try {
+            int componentSize = doublePrecision ? Double.BYTES : Float.BYTES;
+            positions = Reuse(positions, (long) count * M3DJ_PackedModel.POSITION_COMPONENTS * componentSize);
+            colorIndices = Reuse(colorIndices, (long) count * Integer.BYTES);
+            skinIndices = Reuse(skinIndices, (long) count * Integer.BYTES);
+            this.doublePrecision = doublePrecision;
+        }
+        finally {
+            arena.Release();
+        }
+    }
+
+    /**
+     * Makes room for the given number of palette entries, keeping the buffer if it is large enough.
+     */
+    public void ReserveColors(int count) {
+        arena.Acquire();
+        try {
+            palette = Reuse(palette, (long) count * Integer.BYTES);
+        }
+        finally {
+            arena.Release();
+        }
+    }
+
+    /**
+     * Makes room for the given number of texture coordinates, keeping the buffer if it is large enough.
+     */
+    public void ReserveTexCoords(int count) {
+        arena.Acquire();
+        try {
+            texCoords = Reuse(texCoords, (long) count * M3DJ_PackedModel.TEXCOORD_COMPONENTS * Float.BYTES);
+        }
+        finally {
+            arena.Release();
+        }
+    }
+
+    /**
+     * @return The given buffer if it holds at least the given number of bytes; otherwise it is freed and
+     *         replaced by a new buffer of that size from the arena.
+     */
+    private ByteBuffer Reuse(ByteBuffer buffer, long bytes) {
+        if (buffer.capacity() >= bytes) {
+            return buffer;
+        }
+        ByteBuffer reserved = arena.Allocate(bytes);
+        arena.Free(buffer);
+        return reserved;
+    }
+
+    /**
+     * Sets count vertices of a single precision model from first on, with x, y, z, w per vertex.
+     */
+    public void SetVertices(int first, int count, float[] positions, int[] colorIndices, int[] skinIndices) {
+        arena.Acquire();
+        try {
+            int components = M3DJ_PackedModel.POSITION_COMPONENTS;
+            this.positions.asFloatBuffer().put(first * components, positions, 0, count * components);
+            SetIndices(first, count, colorIndices, skinIndices);
+        }
+        finally {
+            arena.Release();
+        }
+    }
+
+    /**
+     * Sets count vertices of a double precision model from first on, with x, y, z, w per vertex.
+     */
+    public void SetVertices(int first, int count, double[] positions, int[] colorIndices, int[] skinIndices) {
+        arena.Acquire();
+        try {
+            int components = M3DJ_PackedModel.POSITION_COMPONENTS;
+            this.positions.asDoubleBuffer().put(first * components, positions, 0, count * components);
+            SetIndices(first, count, colorIndices, skinIndices);
+        }
+        finally {
+            arena.Release();
+        }
+    }
+
+    private void SetIndices(int first, int count, int[] colorIndices, int[] skinIndices) {
+        this.colorIndices.asIntBuffer().put(first, colorIndices, 0, count);
+        this.skinIndices.asIntBuffer().put(first, skinIndices, 0, count);
+    }
+
+    /**
+     * Sets count palette entries from first on.
+     */
+    public void SetColors(int first, int count, int[] palette) {
+        arena.Acquire();
+        try {
+            this.palette.asIntBuffer().put(first, palette, 0, count);
+        }
+        finally {
+            arena.Release();
+        }
+    }
+
+    /**
+     * Sets count texture coordinates from first on, with u, v per coordinate.
+     */
+    public void SetTexCoords(int first, int count, float[] texCoords) {
+        arena.Acquire();
+        try {
+            int components = M3DJ_PackedModel.TEXCOORD_COMPONENTS;
+            this.texCoords.asFloatBuffer().put(first * components, texCoords, 0, count * components);
+        }
+        finally {
+            arena.Release();
+        }
+    }
+
+    public double GetX(int vertex) {
+        return GetPosition(vertex, 0);
+    }
+
+    public double GetY(int vertex) {
+        return GetPosition(vertex, 1);
+    }
+
+    public double GetZ(int vertex) {
+        return GetPosition(vertex, 2);
+    }
+
+    public double GetW(int vertex) {
+        return GetPosition(vertex, 3);
+    }
+
+    private double GetPosition(int vertex, int component) {
+        arena.Acquire();
+        try {
+            int i = vertex * M3DJ_PackedModel.POSITION_COMPONENTS + component;
+            return doublePrecision ? positions.getDouble(i * Double.BYTES) : positions.getFloat(i * Float.BYTES);
+        }
+        finally {
+            arena.Release();
+        }
+    }
+
+    public int GetColorIndex(int vertex) {
+        arena.Acquire();
+        try {
+            return colorIndices.getInt(vertex * Integer.BYTES);
+        }
+        finally {
+            arena.Release();
+        }
+    }
+
+    public int GetSkinIndex(int vertex) {
+        arena.Acquire();
+        try {
+            return skinIndices.getInt(vertex * Integer.BYTES);
+        }
+        finally {
+            arena.Release();
+        }
+    }
+
+    public int GetColor(int color) {
+        arena.Acquire();
+        try {
+            return palette.getInt(color * Integer.BYTES);
+        }
+        finally {
+            arena.Release();
+        }
+    }
+
+    public float GetU(int texCoord) {
+        return GetTexCoord(texCoord * M3DJ_PackedModel.TEXCOORD_COMPONENTS);
+    }
+
+    public float GetV(int texCoord) {
+        return GetTexCoord(texCoord * M3DJ_PackedModel.TEXCOORD_COMPONENTS + 1);
+    }
+
+    private float GetTexCoord(int i) {
+        arena.Acquire();
+        try {
+            return texCoords.getFloat(i * Float.BYTES);
+        }
+        finally {
+            arena.Release();
+        }
+    }
+
+    /**
+     * @return The face streams of the model.
+     * @throws IllegalStateException if the arena is closed.
+     */
+    public M3DJ_PackedFaces GetFaces() {
+        if (!arena.IsOpen()) {
+            throw new IllegalStateException("Arena has been closed.");
+        }
+        return packedFaces;
+    }
+}
@@ -0,0 +1,250 @@
+package com.creedvi.utils.m3dj.model;
+
+import com.creedvi.utils.m3dj.M3DJ;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+
+/**
+ * Triangles of a model stored as one index stream per attribute, three entries per face.
+ * Streams keep the index width of the model (VI_T, or TI_T for texture coordinates).
+ * The texture coordinate, normal and vertex maximum streams are only allocated once a triangle record carries
+ * that attribute; faces without it hold M3D_UNDEF. Materials and parameters are stored as runs: faces from
+ * runFirstFace[i] up to the first face of the next run use runMaterial[i] and runParameter[i].
+ * Faces created with an arena keep their index streams off-heap, freed when the arena is closed; the runs always
+ * stay on the heap.
+ */
+public class M3DJ_PackedFaces {
+
+    public static final int CORNERS = 3;
+
+    public int faceCount;
+    public M3DJ_IndexBuffer vertices;
+    public M3DJ_IndexBuffer texCoords;
+    public M3DJ_IndexBuffer normals;
+    public M3DJ_IndexBuffer vertMax;
+
+    public int runCount;
+    public int[] runFirstFace;
+    public int[] runMaterial;
+    public int[] runParameter;
+
+    private final M3DJ_Arena arena;
+    // Optional streams of a previous load, reused once a face requires them again.
+    private M3DJ_IndexBuffer spareTexCoords;
+    private M3DJ_IndexBuffer spareNormals;
+    private M3DJ_IndexBuffer spareVertMax;
+
+    public M3DJ_PackedFaces() {
+        this(null);
+    }
+
+    /**
+     * @param arena Arena to allocate the index streams from, or null to keep them in arrays.
+     */
+    public M3DJ_PackedFaces(M3DJ_Arena arena) {
+        this.arena = arena;
+        this.vertices = new M3DJ_IndexBuffer(Integer.BYTES, 0, arena);
+        this.runFirstFace = new int[0];
+        this.runMaterial = new int[0];
+        this.runParameter = new int[0];
+    }
+
+    /**
+     * Grows the streams to hold the given number of faces. Optional streams are allocated if the layout flags
+     * of the faces to come require them.
+     * @param faces Total number of faces the streams must hold.
+     * @param vertexIndexSize Size in bytes of vertex indices (VI_T).
+     * @param texCoordIndexSize Size in bytes of texture coordinate indices (TI_T).
+     * @param texCoords true if any of the faces to come has texture coordinates.
+     * @param normals true if any of the faces to come has normals.
+     * @param vertMax true if any of the faces to come has vertex maximums that are kept.
+     */
+    public void EnsureCapacity(int faces, int vertexIndexSize, int texCoordIndexSize,
+                               boolean texCoords, boolean normals, boolean vertMax) {
+        int length = faces * CORNERS;
+        if (this.vertices.Length() == 0 || (faceCount == 0 && this.vertices.indexSize != vertexIndexSize)) {
+            this.vertices = new M3DJ_IndexBuffer(vertexIndexSize, 0, arena);
+        }
+        this.vertices.Grow(length, 0);
+        this.texCoords = Grow(this.texCoords, spareTexCoords, texCoords, texCoordIndexSize, length);
+        this.normals = Grow(this.normals, spareNormals, normals, vertexIndexSize, length);
+        this.vertMax = Grow(this.vertMax, spareVertMax, vertMax, vertexIndexSize, length);
+    }
+
+    private M3DJ_IndexBuffer Grow(M3DJ_IndexBuffer stream, M3DJ_IndexBuffer spare, boolean required, int indexSize, int length) {
+        if (stream == null) {
+            if (!required) {
+                return null;
+            }
+            // Faces already decoded did not carry this attribute.
+            if (spare != null && spare.indexSize == indexSize) {
+                stream = spare;
+                for (int i = 0; i < stream.Length(); i++) {
+                    stream.Set(i, M3DJ.M3D_UNDEF);
+                }
+            }
+            else {
+                stream = new M3DJ_IndexBuffer(indexSize, 0, arena);
+            }
+        }
+        stream.Grow(length, M3DJ.M3D_UNDEF);
+        return stream;
+    }
+
+    /**
+     * Removes every face and run, keeping the streams for the next load.
+     * Optional streams are released until a face requires them again, so they still start out as null.
+     */
+    public void Clear() {
+        faceCount = 0;
+        runCount = 0;
+        if (texCoords != null) {
+            spareTexCoords = texCoords;
+        }
+        if (normals != null) {
+            spareNormals = normals;
+        }
+        if (vertMax != null) {
+            spareVertMax = vertMax;
+        }
+        texCoords = null;
+        normals = null;
+        vertMax = null;
+    }
+
+    /**
+     * Starts a new run at the next face unless the current run already uses the given material and parameter.
+     */
+    public void SetMaterial(int material, int parameter) {
+        // A run that never received a face is dropped, so run starts are strictly increasing.
+        if (runCount > 0 && runFirstFace[runCount - 1] == faceCount) {
+            runCount--;
+        }
+        if (runCount > 0 && runMaterial[runCount - 1] == material && runParameter[runCount - 1] == parameter) {
+            return;
+        }
+        if (runCount == runFirstFace.length) {
+            int capacity = Math.max(4, runCount * 2);
+            runFirstFace = Arrays.copyOf(runFirstFace, capacity);
+            runMaterial = Arrays.copyOf(runMaterial, capacity);
+            runParameter = Arrays.copyOf(runParameter, capacity);
+        }
+        runFirstFace[runCount] = faceCount;
+        runMaterial[runCount] = material;
+        runParameter[runCount] = parameter;
+        runCount++;
+    }
+
+    /**
+     * @return One past the last face of the given run.
+     */
+    public int GetRunEnd(int run) {
+        return run + 1 < runCount ? runFirstFace[run + 1] : faceCount;
+    }
+
+    /**
+     * @return Index of the run holding the given face, or -1 if the face precedes every run.
+     */
+    public int FindRun(int face) {
+        int i = Arrays.binarySearch(runFirstFace, 0, runCount, face);
+        return i >= 0 ? i : -i - 2;
+    }
+
+    public int GetMaterialId(int face) {
+        int run = FindRun(face);
+        return run < 0 ? M3DJ.M3D_UNDEF : runMaterial[run];
+    }
+
+    public int GetParameterId(int face) {
+        int run = FindRun(face);
+        return run < 0 ? M3DJ.M3D_UNDEF : runParameter[run];
+    }
+
+    /**
+     * Splits the faces into submeshes that can be drawn with 16-bit indices from a base vertex.
+     * Every material run is split wherever its vertices would span more than maxVertices; a single triangle
+     * spanning more than that gets a submesh of its own that lists its vertices in a vertex map.
+     * @param maxVertices Largest number of vertices a submesh may span; values above M3DJ_Submesh.MAX_VERTICES
+     *                    are limited to it.
+     */
+    public ArrayList<M3DJ_Submesh> BuildSubmeshes(int maxVertices) {
+        ArrayList<M3DJ_Submesh> submeshes = new ArrayList<>();
+        maxVertices = Math.min(maxVertices, M3DJ_Submesh.MAX_VERTICES);
+
+        for (int run = 0; run < runCount; run++) {
+            int end = GetRunEnd(run);
+            int face = runFirstFace[run];
+
+            while (face < end) {
+                int first = face;
+                int min = Integer.MAX_VALUE;
+                int max = -1;
+
+                for (; face < end; face++) {
+                    int faceMin = min;
+                    int faceMax = max;
+                    for (int i = face * CORNERS; i < (face + 1) * CORNERS; i++) {
+                        int vertex = vertices.Get(i);
+                        if (vertex >= 0) {
+                            faceMin = Math.min(faceMin, vertex);
+                            faceMax = Math.max(faceMax, vertex);
+                        }
+                    }
+                    if (faceMax - faceMin >= maxVertices) {
+                        break;
+                    }
+                    min = faceMin;
+                    max = faceMax;
+                }
+
+                if (face == first) {
+                    // The triangle's own corners are too far apart to share a base vertex.
+                    submeshes.add(BuildMappedSubmesh(run, face));
+                    face++;
+                    continue;
+                }
+
+                M3DJ_Submesh submesh = new M3DJ_Submesh(runMaterial[run], runParameter[run], first, max < 0 ? 0 : min);
+                submesh.faceCount = face - first;
+                submesh.vertexCount = max < 0 ? 0 : max - min + 1;
+                submesh.indices = new short[submesh.faceCount * CORNERS];
+                for (int i = 0; i < submesh.indices.length; i++) {
+                    int vertex = vertices.Get(first * CORNERS + i);
+                    submesh.indices[i] = (short) (vertex < 0 ? 0xFFFF : vertex - submesh.baseVertex);
+                }
+                submeshes.add(submesh);
+            }
+        }
+
+        return submeshes;
+    }
+
+    private M3DJ_Submesh BuildMappedSubmesh(int run, int face) {
+        M3DJ_Submesh submesh = new M3DJ_Submesh(runMaterial[run], runParameter[run], face, 0);
+        submesh.faceCount = 1;
+        submesh.indices = new short[CORNERS];
+
+        int[] vertexMap = new int[CORNERS];
+        int count = 0;
+        for (int corner = 0; corner < CORNERS; corner++) {
+            int vertex = vertices.Get(face * CORNERS + corner);
+            if (vertex < 0) {
+                submesh.indices[corner] = (short) 0xFFFF;
+                continue;
+            }
+            int index = 0;
+            while (index < count && vertexMap[index] != vertex) {
+                index++;
+            }
+            if (index == count) {
+                vertexMap[count++] = vertex;
+            }
+            submesh.indices[corner] = (short) index;
+        }
+
+        submesh.vertexMap = Arrays.copyOf(vertexMap, count);
+        submesh.vertexCount = count;
+        return submesh;
+    }
+}
@@ -0,0 +1,136 @@
+package com.creedvi.utils.m3dj.model;
+
+import java.util.ArrayList;
+
+/**
+ * Model whose vertices, colour map, texture map and faces are held in packed primitive arrays rather than one
+ * object per element. Arrays are sized from the chunk before decoding, so they hold exactly count elements;
+ * a model reloaded through M3DJ.LoadInto keeps arrays that are already large enough, which may then be longer.
+ * The vertices, colors, textureMap and faces lists inherited from M3DJ_Model are left empty; every other chunk
+ * is decoded as it is for M3DJ_Model.
+ * With quantized residency enabled, INT8 and INT16 positions and texture coordinates stay in quantized buffers
+ * instead; the accessors and the Dequantize methods read either form.
+ */
+public class M3DJ_PackedModel extends M3DJ_Model {
+
+    public static final int POSITION_COMPONENTS = 4;
+    public static final int TEXCOORD_COMPONENTS = 2;
+
+    public int vertexCount;
+    // x, y, z, w per vertex. Only one of the three is filled: positionsDouble for double precision models,
+    // quantizedPositions for quantized residency.
+    public float[] positions;
+    public double[] positionsDouble;
+    public M3DJ_QuantizedBuffer quantizedPositions;
+    public int[] colorIndices;
+    public int[] skinIndices;
+
+    public int colorCount;
+    // One colour per int, as stored in the file: red in the lowest byte, alpha in the highest.
+    public int[] palette;
+
+    public int texCoordCount;
+    // u, v per texture coordinate. quantizedTexCoords is filled instead for quantized residency.
+    public float[] texCoords;
+    public M3DJ_QuantizedBuffer quantizedTexCoords;
+
+    public M3DJ_PackedFaces packedFaces;
+    // Only filled when the parser has submesh splitting enabled.
+    public ArrayList<M3DJ_Submesh> submeshes;
+
+    public M3DJ_PackedModel() {
+        super();
+        this.positions = new float[0];
+        this.colorIndices = new int[0];
+        this.skinIndices = new int[0];
+        this.palette = new int[0];
+        this.texCoords = new float[0];
+        this.packedFaces = new M3DJ_PackedFaces();
+        this.submeshes = new ArrayList<>();
+    }
+
+    /**
+     * Empties the model so it can be loaded again, keeping its arrays for the next load.
+     */
+    @Override
+    public void Clear() {
+        super.Clear();
+        vertexCount = 0;
+        colorCount = 0;
+        texCoordCount = 0;
+        packedFaces.Clear();
+        submeshes.clear();
+    }
+
+    public boolean IsDoublePrecision() {
+        return positionsDouble != null;
+    }
+
+    public double GetX(int vertex) {
+        return GetPosition(vertex, 0);
+    }
+
+    public double GetY(int vertex) {
+        return GetPosition(vertex, 1);
+    }
+
+    public double GetZ(int vertex) {
+        return GetPosition(vertex, 2);
+    }
+
+    public double GetW(int vertex) {
+        return GetPosition(vertex, 3);
+    }
+
+    private double GetPosition(int vertex, int component) {
+        int i = vertex * POSITION_COMPONENTS + component;
+        if (quantizedPositions != null) {
+            return quantizedPositions.Get(i);
+        }
+        return positionsDouble != null ? positionsDouble[i] : positions[i];
+    }
+
+    public float GetU(int texCoord) {
+        return GetTexCoord(texCoord * TEXCOORD_COMPONENTS);
+    }
+
+    public float GetV(int texCoord) {
+        return GetTexCoord(texCoord * TEXCOORD_COMPONENTS + 1);
+    }
+
+    private float GetTexCoord(int i) {
+        return quantizedTexCoords != null ? quantizedTexCoords.Get(i) : texCoords[i];
+    }
+
+    /**
+     * Writes x, y, z, w of every vertex to the given array as float, whichever form the positions are kept in.
+     * @param out Array of at least vertexCount * POSITION_COMPONENTS elements.
+     */
+    public void DequantizePositions(float[] out) {
+        int length = vertexCount * POSITION_COMPONENTS;
+        if (quantizedPositions != null) {
+            quantizedPositions.Dequantize(out, length);
+        }
+        else if (positionsDouble != null) {
+            for (int i = 0; i < length; i++) {
+                out[i] = (float) positionsDouble[i];
+            }
+        }
+        else {
+            System.arraycopy(positions, 0, out, 0, length);
+        }
+    }
+
+    /**
+     * Writes u, v of every texture coordinate to the given array as float.
+     * @param out Array of at least texCoordCount * TEXCOORD_COMPONENTS elements.
+     */
+    public void DequantizeTexCoords(float[] out) {
+        if (quantizedTexCoords != null) {
+            quantizedTexCoords.Dequantize(out, texCoordCount * TEXCOORD_COMPONENTS);
+        }
+        else {
+            System.arraycopy(texCoords, 0, out, 0, texCoordCount * TEXCOORD_COMPONENTS);
+        }
+    }
+}
@@ -0,0 +1,99 @@
+package com.creedvi.utils.m3dj.model;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Coordinates kept in the quantized form the model stores them with: a byte[] for INT8 or a short[] for INT16
+ * coordinates. Values are dequantized on access by dividing them by the buffer's divisor, giving the same result
+ * the parser produces when it expands coordinates while loading.
+ */
+public class M3DJ_QuantizedBuffer {
+
+    public final int componentSize;
+    public final double divisor;
+    public byte[] bytes;
+    public short[] shorts;
+
+    public M3DJ_QuantizedBuffer(int componentSize, int length, double divisor) {
+        this.componentSize = componentSize;
+        this.divisor = divisor;
+        if (componentSize == Byte.BYTES) {
+            bytes = new byte[length];
+        }
+        else {
+            shorts = new short[length];
+        }
+    }
+
+    public int Length() {
+        return componentSize == Byte.BYTES ? bytes.length : shorts.length;
+    }
+
+    /**
+     * @return The stored value of the given component, without dequantizing it.
+     */
+    public int GetQuantized(int i) {
+        return componentSize == Byte.BYTES ? bytes[i] : shorts[i];
+    }
+
+    public float Get(int i) {
+        return (float) (GetQuantized(i) / divisor);
+    }
+
+    /**
+     * Copies one component as stored in the file, advancing the buffer past it.
+     */
+    public void Read(int i, ByteBuffer fileData) {
+        if (componentSize == Byte.BYTES) {
+            bytes[i] = fileData.get();
+        }
+        else {
+            shorts[i] = fileData.getShort();
+        }
+    }
+
+    /**
+     * Copies every component as stored in the file, advancing the buffer past them.
+     */
+    public void ReadAll(ByteBuffer fileData) {
+        ReadAll(fileData, Length());
+    }
+
+    /**
+     * Copies the given number of components as stored in the file, advancing the buffer past them.
+     */
+    public void ReadAll(ByteBuffer fileData, int length) {
+        if (componentSize == Byte.BYTES) {
+            fileData.get(bytes, 0, length);
+        }
+        else {
+            fileData.asShortBuffer().get(shorts, 0, length);
+            fileData.position(fileData.position() + length * Short.BYTES);
+        }
+    }
+
+    /**
+     * Dequantizes every component into the given array.
+     * @param out Array of at least Length() elements.
+     */
+    public void Dequantize(float[] out) {
+        Dequantize(out, Length());
+    }
+
+    /**
+     * Dequantizes the given number of components into the given array.
+     * @param out Array of at least length elements.
+     */
+    public void Dequantize(float[] out, int length) {
+        if (componentSize == Byte.BYTES) {
+            for (int i = 0; i < length; i++) {
+                out[i] = (float) (bytes[i] / divisor);
+            }
+        }
+        else {
+            for (int i = 0; i < length; i++) {
+                out[i] = (float) (shorts[i] / divisor);
+            }
+        }
+    }
+}
@@ -0,0 +1,32 @@
+package com.creedvi.utils.m3dj.model;
+
+/**
+ * Consecutive faces sharing a material and parameter whose vertices all lie within 16-bit range of a base vertex.
+ * Vertex index i of the range refers to model vertex baseVertex + i; M3D_UNDEF corners are stored as 0xFFFF.
+ * A triangle whose own corners lie further apart than that is given a submesh of its own with a vertex map:
+ * vertex index i then refers to model vertex vertexMap[i], and baseVertex is 0.
+ */
+public class M3DJ_Submesh {
+
+    // Largest vertex span of a submesh, leaving index 0xFFFF free for undefined corners.
+    public static final int MAX_VERTICES = 65535;
+
+    public int material;
+    public int parameter;
+    public int firstFace;
+    public int faceCount;
+    public int baseVertex;
+    // Number of vertices from baseVertex up to the highest vertex referenced, or the length of vertexMap.
+    public int vertexCount;
+    // Three indices per face, relative to baseVertex. Read with Short.toUnsignedInt.
+    public short[] indices;
+    // Model vertices the indices refer to, or null if they are relative to baseVertex.
+    public int[] vertexMap;
+
+    public M3DJ_Submesh(int material, int parameter, int firstFace, int baseVertex) {
+        this.material = material;
+        this.parameter = parameter;
+        this.firstFace = firstFace;
+        this.baseVertex = baseVertex;
+    }
+}
@@ -4,6 +4,7 @@ import com.creedvi.utils.m3dj.io.Tracelog;
 import com.creedvi.utils.m3dj.model.chunks.VariableTypes.*;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 
 public class M3DJ_Header {
 
@@ -13,6 +14,8 @@ public class M3DJ_Header {
     public String licence;
     public String description;
     public ArrayList<String> stringTable;
+    // Offset of each string of the table; entries past stringTable.size() are unused.
+    public int[] stringOffsets;
 
     public VertexCoordType VC_T;
     public VariableType VI_T;
@@ -34,6 +37,45 @@ public class M3DJ_Header {
         this.licence = "";
         this.description = "";
         this.stringTable = new ArrayList<>();
+        this.stringOffsets = new int[0];
+    }
+
+    /**
+     * Resets the header to its initial state, keeping the string table's storage for the next load.
+     */
+    public void Clear() {
+        this.scale = 0.0f;
+        this.title = "";
+        this.author = "";
+        this.licence = "";
+        this.description = "";
+        this.stringTable.clear();
+        this.VC_T = null;
+        this.VI_T = null;
+        this.SI_T = null;
+        this.CI_T = null;
+        this.TI_T = null;
+        this.BI_T = null;
+        this.NB_T = null;
+        this.SK_T = null;
+        this.FC_T = null;
+        this.HI_T = null;
+        this.FI_T = null;
+        this.VD_T = null;
+        this.VP_T = null;
+    }
+
+    /**
+     * Resolves a string reference from another chunk. Every call for the same offset returns the same instance.
+     * @param offset String offset as stored in the model, relative to the start of the string table.
+     * @return The string starting at the given offset, or an empty string for a null (0) or unknown offset.
+     */
+    public String GetString(int offset) {
+        if (offset <= 0) {
+            return "";
+        }
+        int i = Arrays.binarySearch(stringOffsets, 0, stringTable.size(), offset);
+        return i >= 0 ? stringTable.get(i) : "";
     }
 
     public void DumpBitField(Tracelog logger) {
@@ -6,12 +6,31 @@ public class M3DJ_Preview {
 
     public ByteBuffer imageData;
 
+    // Buffer of a previous load, reused by the next allocation it is large enough for.
+    private ByteBuffer spareImageData;
+
     public M3DJ_Preview() {
 
     }
 
     public void allocateImageBuffer(int size) {
-        this.imageData = ByteBuffer.allocate(size);
+        if (spareImageData != null && spareImageData.capacity() >= size) {
+            this.imageData = spareImageData.clear().limit(size);
+        }
+        else {
+            this.imageData = ByteBuffer.allocate(size);
+        }
+        this.spareImageData = null;
+    }
+
+    /**
+     * Removes the preview, keeping its buffer for the next allocation.
+     */
+    public void Clear() {
+        if (imageData != null) {
+            spareImageData = imageData;
+        }
+        imageData = null;
     }
 
 }
@@ -6,8 +6,8 @@ public class M3DJ_TextureCoordinate {
     public double v;
 
     public M3DJ_TextureCoordinate(double u, double v) {
-        this.u = 0.0f;
-        this.v = 0.0f;
+        this.u = u;
+        this.v = v;
     }
 
     public M3DJ_TextureCoordinate(float u, float v) {
@@ -0,0 +1,195 @@
+package com.creedvi.utils.m3dj;
+
+import com.creedvi.utils.m3dj.io.Tracelog;
+import com.creedvi.utils.m3dj.model.M3DJ_BakedModel;
+import com.creedvi.utils.m3dj.model.M3DJ_IndexBuffer;
+import com.creedvi.utils.m3dj.model.M3DJ_PackedFaces;
+import com.creedvi.utils.m3dj.model.M3DJ_PackedModel;
+
+import java.io.File;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.attribute.FileTime;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+
+/**
+ * Bakes every test model into a cache directory and checks that the opened baked models match the packed models
+ * they were baked from. Then damages a baked file in different ways, and hands one source the baked file of
+ * another, and checks that the cache bakes the model again instead of failing or opening the wrong file.
+ */
+public class bakedParsing {
+
+    private static final String MODEL = "assets/CesiumMan.m3d";
+
+    // Offsets into the baked file header and its first directory entry.
+    private static final int VERTEX_COUNT = 24, FACE_COUNT = 36, RUN_COUNT = 40, SECTION_COUNT = 48;
+    private static final int FIRST_SECTION = 88;
+
+    private static int failCount = 0;
+
+    public static void main(String[] args) throws Exception {
+        M3DJ parser = new M3DJ(Tracelog.LogLevel.LEVEL_ERROR);
+        Path directory = Files.createTempDirectory("m3dj-baked");
+        try {
+            M3DJ_BakedCache cache = new M3DJ_BakedCache(parser, directory.resolve("cache").toString());
+
+            File[] files = new File("assets").listFiles((dir, name) -> name.endsWith(".m3d"));
+            for (File file : files) {
+                M3DJ_PackedModel packed = parser.LoadFilePacked(file.getPath());
+                // Baked on the first load and opened from the baked file on the second.
+                for (int pass = 0; pass < 2; pass++) {
+                    String mismatch = Compare(cache.Load(file.getPath()), packed);
+                    if (mismatch != null) {
+                        System.out.println("M3D-J :: TEST :: Baked " + file.getName() + " differs in " + mismatch + ".");
+                        failCount++;
+                    }
+                }
+            }
+
+            Path baked = cache.GetBakedPath(Paths.get(MODEL));
+            int faceCount = parser.LoadFilePacked(MODEL).packedFaces.faceCount;
+            byte[] pristine = Files.readAllBytes(baked);
+            int metaOffset = (int) Header(pristine).getLong(FIRST_SECTION + 8);
+
+            CheckDamaged(cache, baked, faceCount, pristine, "section count", header -> header.putInt(SECTION_COUNT, Integer.MAX_VALUE));
+            CheckDamaged(cache, baked, faceCount, pristine, "vertex count", header -> header.putInt(VERTEX_COUNT, Integer.MAX_VALUE));
+            CheckDamaged(cache, baked, faceCount, pristine, "face count", header -> header.putInt(FACE_COUNT, -1));
+            CheckDamaged(cache, baked, faceCount, pristine, "run count", header -> header.putInt(RUN_COUNT, header.getInt(RUN_COUNT) + 1000));
+            CheckDamaged(cache, baked, faceCount, pristine, "section offset", header -> header.putLong(FIRST_SECTION + 8, header.capacity() - 4));
+            CheckDamaged(cache, baked, faceCount, pristine, "section length", header -> header.putLong(FIRST_SECTION + 16, Long.MAX_VALUE));
+            CheckDamaged(cache, baked, faceCount, pristine, "material chunks", header -> {
+                for (int i = metaOffset; i < metaOffset + 64; i++) {
+                    header.put(i, (byte) 0x7F);
+                }
+            });
+
+            Files.write(baked, Arrays.copyOf(pristine, FIRST_SECTION + 8));
+            Check("file length", cache, baked, faceCount, pristine);
+
+            // Two sources of the same name, size and modification time in different directories.
+            Path first = Files.copy(Paths.get(MODEL), Files.createDirectories(directory.resolve("first")).resolve("model.m3d"));
+            Path second = Files.copy(Paths.get(MODEL), Files.createDirectories(directory.resolve("second")).resolve("model.m3d"));
+            FileTime time = Files.getLastModifiedTime(first);
+            Files.setLastModifiedTime(second, time);
+
+            cache.Load(first.toString());
+            byte[] firstBaked = Files.readAllBytes(cache.GetBakedPath(first));
+            Files.write(cache.GetBakedPath(second), firstBaked);
+            cache.Load(second.toString());
+            if (Arrays.equals(firstBaked, Files.readAllBytes(cache.GetBakedPath(second)))) {
+                System.out.println("M3D-J :: TEST :: Baked file of another source was opened.");
+                failCount++;
+            }
+        }
+        finally {
+            try (Stream<Path> files = Files.walk(directory)) {
+                files.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+            }
+        }
+
+        System.out.println("M3D-J :: TEST :: " + failCount + " baked model checks failed.");
+        if (failCount > 0) {
+            System.exit(1);
+        }
+    }
+
+    private static String Compare(M3DJ_BakedModel baked, M3DJ_PackedModel packed) {
+        if (baked == null) {
+            return "being null";
+        }
+        if (baked.vertexCount != packed.vertexCount || baked.colorCount != packed.colorCount ||
+            baked.texCoordCount != packed.texCoordCount || baked.packedFaces.faceCount != packed.packedFaces.faceCount ||
+            baked.packedFaces.runCount != packed.packedFaces.runCount) {
+            return "counts";
+        }
+        for (int i = 0; i < packed.vertexCount; i++) {
+            if (baked.GetX(i) != packed.GetX(i) || baked.GetY(i) != packed.GetY(i) || baked.GetZ(i) != packed.GetZ(i) ||
+                baked.GetW(i) != packed.GetW(i)) {
+                return "position " + i;
+            }
+            if (baked.GetColorIndex(i) != packed.colorIndices[i] || baked.GetSkinIndex(i) != packed.skinIndices[i]) {
+                return "vertex " + i;
+            }
+        }
+        for (int i = 0; i < packed.colorCount; i++) {
+            if (baked.GetColor(i) != packed.palette[i]) {
+                return "colour " + i;
+            }
+        }
+        for (int i = 0; i < packed.texCoordCount; i++) {
+            if (baked.GetU(i) != packed.GetU(i) || baked.GetV(i) != packed.GetV(i)) {
+                return "texture coordinate " + i;
+            }
+        }
+
+        M3DJ_PackedFaces bakedFaces = baked.packedFaces;
+        M3DJ_PackedFaces packedFaces = packed.packedFaces;
+        int corners = packedFaces.faceCount * M3DJ_PackedFaces.CORNERS;
+        if (!Equal(bakedFaces.vertices, packedFaces.vertices, corners) || !Equal(bakedFaces.texCoords, packedFaces.texCoords, corners) ||
+            !Equal(bakedFaces.normals, packedFaces.normals, corners)) {
+            return "faces";
+        }
+        for (int run = 0; run < packedFaces.runCount; run++) {
+            if (bakedFaces.runFirstFace[run] != packedFaces.runFirstFace[run] || bakedFaces.runMaterial[run] != packedFaces.runMaterial[run] ||
+                bakedFaces.runParameter[run] != packedFaces.runParameter[run]) {
+                return "run " + run;
+            }
+        }
+
+        if (baked.materials.size() != packed.materials.size() || !String.valueOf(baked.header.title).equals(String.valueOf(packed.header.title))) {
+            return "header or materials";
+        }
+        return null;
+    }
+
+    private static boolean Equal(M3DJ_IndexBuffer baked, M3DJ_IndexBuffer packed, int length) {
+        if (baked == null || packed == null) {
+            return baked == packed;
+        }
+        for (int i = 0; i < length; i++) {
+            if (baked.Get(i) != packed.Get(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static void CheckDamaged(M3DJ_BakedCache cache, Path baked, int faceCount, byte[] pristine, String name,
+                                     Consumer<ByteBuffer> damage) throws Exception {
+        byte[] damaged = pristine.clone();
+        damage.accept(Header(damaged));
+        Files.write(baked, damaged);
+        Check(name, cache, baked, faceCount, pristine);
+    }
+
+    private static void Check(String name, M3DJ_BakedCache cache, Path baked, int faceCount, byte[] pristine) {
+        String outcome = null;
+        try {
+            M3DJ_BakedModel model = cache.Load(MODEL);
+            if (model == null || model.packedFaces.faceCount != faceCount) {
+                outcome = "loaded " + (model == null ? "no model" : model.packedFaces.faceCount + " faces");
+            }
+            else if (!Arrays.equals(pristine, Files.readAllBytes(baked))) {
+                outcome = "was not baked again";
+            }
+        }
+        catch (Exception e) {
+            outcome = "threw " + e;
+        }
+
+        if (outcome != null) {
+            System.out.println("M3D-J :: TEST :: Baked file with a damaged " + name + " " + outcome + ".");
+            failCount++;
+        }
+    }
+
+    private static ByteBuffer Header(byte[] file) {
+        return ByteBuffer.wrap(file).order(ByteOrder.LITTLE_ENDIAN);
+    }
+}
@@ -0,0 +1,169 @@
+package com.creedvi.utils.m3dj;
+
+import com.creedvi.utils.m3dj.io.Tracelog;
+import com.creedvi.utils.m3dj.model.M3DJ_Model;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.IdentityHashMap;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Stream;
+
+/**
+ * Loads copies of the test models through a model cache and checks when it answers from the cache and when it
+ * loads again: unchanged files are hits, changed files are reloaded, files whose content hash still matches keep
+ * their model, the least recently used models are evicted once their estimated size exceeds the bound, and
+ * concurrent requests for the same file share one load. The hit and miss counts are checked along the way.
+ */
+public class cacheParsing {
+
+    private static final String SMALL = "assets/cube.m3d";
+    private static final String MEDIUM = "assets/suzanne.m3d";
+    private static final String LARGE = "assets/mobs_dwarves_character.m3d";
+    private static final String SHARED = "assets/CesiumMan.m3d";
+
+    private static final int THREADS = 16;
+
+    private static int failCount = 0;
+    private static int checkCount = 0;
+
+    public static void main(String[] args) throws Exception {
+        M3DJ parser = new M3DJ(Tracelog.LogLevel.LEVEL_ERROR);
+        Path directory = Files.createTempDirectory("m3dj-cache");
+        try {
+            CheckReload(parser, directory);
+            CheckContentHash(parser, directory);
+            CheckEviction(parser, directory);
+            CheckSharedLoad(parser);
+        }
+        finally {
+            try (Stream<Path> files = Files.walk(directory)) {
+                files.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+            }
+        }
+
+        System.out.println("M3D-J :: TEST :: " + failCount + " of " + checkCount + " model cache checks failed.");
+        if (failCount > 0) {
+            System.exit(1);
+        }
+    }
+
+    private static void CheckReload(M3DJ parser, Path directory) throws Exception {
+        M3DJ_ModelCache cache = new M3DJ_ModelCache(parser, Long.MAX_VALUE);
+        Path file = Copy(SMALL, directory.resolve("reload.m3d"));
+
+        M3DJ_Model first = cache.Get(file.toString());
+        Check("first load", first != null && cache.GetCount() == 1);
+        Check("unchanged file", cache.Get(file.toString()) == first);
+        Check("counts after a hit", cache.GetHitCount() == 1 && cache.GetMissCount() == 1);
+
+        Copy(MEDIUM, file);
+        M3DJ_Model changed = cache.Get(file.toString());
+        Check("changed file", changed != null && changed != first && changed.faces.size() == parser.LoadFile(MEDIUM).faces.size());
+        Check("counts after a reload", cache.GetHitCount() == 1 && cache.GetMissCount() == 2);
+        Check("reloaded entry", cache.GetCount() == 1 && cache.GetBytes() == changed.GetEstimatedBytes());
+    }
+
+    private static void CheckContentHash(M3DJ parser, Path directory) throws Exception {
+        M3DJ_ModelCache cache = new M3DJ_ModelCache(parser, Long.MAX_VALUE);
+        cache.EnableContentHashing(true);
+        Path file = Copy(SMALL, directory.resolve("hash.m3d"));
+
+        M3DJ_Model first = cache.Get(file.toString());
+        Touch(file);
+        Check("touched file with content hashing", cache.Get(file.toString()) == first);
+        Check("touched file still cached", cache.Get(file.toString()) == first);
+        // The touched file is read to hash it, which counts as a miss; the Get after it is a hit again.
+        Check("counts after a hash match", cache.GetHitCount() == 1 && cache.GetMissCount() == 2);
+
+        Copy(MEDIUM, file);
+        M3DJ_Model changed = cache.Get(file.toString());
+        Check("changed file with content hashing", changed != null && changed != first);
+        Check("counts after a hash mismatch", cache.GetHitCount() == 1 && cache.GetMissCount() == 3);
+    }
+
+    private static void CheckEviction(M3DJ parser, Path directory) throws Exception {
+        Path small = Copy(SMALL, directory.resolve("small.m3d"));
+        Path medium = Copy(MEDIUM, directory.resolve("medium.m3d"));
+        Path large = Copy(LARGE, directory.resolve("large.m3d"));
+        long smallBytes = parser.LoadFile(SMALL).GetEstimatedBytes();
+        long mediumBytes = parser.LoadFile(MEDIUM).GetEstimatedBytes();
+        long largeBytes = parser.LoadFile(LARGE).GetEstimatedBytes();
+
+        // Room for all but one byte of the three models, so adding the last one evicts exactly one other.
+        M3DJ_ModelCache cache = new M3DJ_ModelCache(parser, smallBytes + mediumBytes + largeBytes - 1);
+        M3DJ_Model smallModel = cache.Get(small.toString());
+        cache.Get(medium.toString());
+        // Makes the medium model the least recently used one.
+        cache.Get(small.toString());
+        M3DJ_Model largeModel = cache.Get(large.toString());
+
+        Check("eviction count", cache.GetCount() == 2);
+        Check("eviction bytes", cache.GetBytes() == smallBytes + largeBytes);
+        Check("recently used model kept", cache.Get(small.toString()) == smallModel);
+        Check("latest model kept", cache.Get(large.toString()) == largeModel);
+        long misses = cache.GetMissCount();
+        cache.Get(medium.toString());
+        Check("least recently used model evicted", cache.GetMissCount() == misses + 1);
+
+        M3DJ_ModelCache bounded = new M3DJ_ModelCache(parser, smallBytes);
+        Check("model over the bound", bounded.Get(large.toString()) != null && bounded.GetCount() == 0 && bounded.GetBytes() == 0);
+    }
+
+    private static void CheckSharedLoad(M3DJ parser) throws Exception {
+        M3DJ_ModelCache cache = new M3DJ_ModelCache(parser, Long.MAX_VALUE);
+        CountDownLatch start = new CountDownLatch(1);
+        ExecutorService pool = Executors.newFixedThreadPool(THREADS);
+
+        ArrayList<Future<M3DJ_Model>> results = new ArrayList<>();
+        for (int i = 0; i < THREADS; i++) {
+            results.add(pool.submit(() -> {
+                start.await();
+                return cache.Get(SHARED);
+            }));
+        }
+        start.countDown();
+
+        Set<M3DJ_Model> models = Collections.newSetFromMap(new IdentityHashMap<>());
+        for (Future<M3DJ_Model> result : results) {
+            models.add(result.get());
+        }
+        pool.shutdown();
+
+        Check("concurrent loads share one model", models.size() == 1 && !models.contains(null));
+        Check("counts after concurrent loads", cache.GetMissCount() == 1 && cache.GetHitCount() == THREADS - 1);
+    }
+
+    private static void Check(String name, boolean passed) {
+        checkCount++;
+        if (!passed) {
+            System.out.println("M3D-J :: TEST :: Model cache check failed: " + name + ".");
+            failCount++;
+        }
+    }
+
+    /**
+     * Copies a model over the target and moves its modification time forward, so the cache sees a change even on
+     * file systems with coarse timestamps.
+     */
+    private static Path Copy(String model, Path target) throws Exception {
+        Files.copy(Paths.get(model), target, StandardCopyOption.REPLACE_EXISTING);
+        Touch(target);
+        return target;
+    }
+
+    private static void Touch(Path file) throws Exception {
+        FileTime modified = Files.getLastModifiedTime(file);
+        Files.setLastModifiedTime(file, FileTime.fromMillis(modified.toMillis() + 10_000));
+    }
+}
@@ -0,0 +1,210 @@
+package com.creedvi.utils.m3dj;
+
+import com.creedvi.utils.m3dj.io.Tracelog;
+import com.creedvi.utils.m3dj.model.M3DJ_Model;
+
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.Inflater;
+
+/**
+ * Builds a large model by repeating the mesh of a test model many times, loads it asynchronously and cancels the
+ * load from the parser's own debug output as soon as it reaches the first mesh chunk. Checks that the future
+ * reports the cancellation and that the worker stops before the next chunk rather than decoding the rest of the
+ * file up to its end chunk, sequentially, with parallel decoding and with pipelining.
+ */
+public class cancelledParsing {
+
+    private static final String MODEL = "assets/CesiumMan.m3d";
+    private static final int MESH_COPIES = 256;
+    private static final int TIMEOUT_SECONDS = 10;
+
+    private static final String CHUNK_MESSAGE = "Magic reads: ";
+    private static final String CANCELLED_MESSAGE = "Load cancelled.";
+
+    public static void main(String[] args) throws Exception {
+        int failCount = 0;
+        int loadCount = 0;
+
+        Path file = Files.createTempFile("m3dj-cancelled", ".m3d");
+        PrintStream console = System.out;
+        try {
+            Files.write(file, File(Repeat(Body(Files.readAllBytes(Paths.get(MODEL))), "MESH", MESH_COPIES)));
+
+            M3DJ parser = new M3DJ(Tracelog.LogLevel.LEVEL_DEBUG);
+            String[] modes = new String[] { "sequential", "parallel", "pipelined" };
+            for (String mode : modes) {
+                parser.EnableParallelDecoding(mode.equals("parallel"));
+                parser.EnablePipelining(mode.equals("pipelined"));
+
+                Watch watch = new Watch();
+                System.setOut(new PrintStream(watch, true, StandardCharsets.UTF_8));
+                String outcome;
+                try {
+                    watch.load = parser.LoadFileAsync(file.toString());
+                    watch.started.countDown();
+                    outcome = Check(watch);
+                }
+                finally {
+                    System.setOut(console);
+                }
+
+                loadCount++;
+                if (outcome != null) {
+                    console.println("M3D-J :: TEST :: Cancelled " + mode + " load " + outcome + ".");
+                    failCount++;
+                }
+            }
+        }
+        finally {
+            System.setOut(console);
+            Files.deleteIfExists(file);
+        }
+
+        System.out.println("M3D-J :: TEST :: " + failCount + " of " + loadCount + " cancelled loads did not stop early.");
+        if (failCount > 0) {
+            System.exit(1);
+        }
+    }
+
+    /**
+     * @return null if the load was cancelled and stopped at the chunk after the first mesh, otherwise what went wrong.
+     */
+    private static String Check(Watch watch) throws InterruptedException {
+        if (!watch.stopped.await(TIMEOUT_SECONDS, TimeUnit.SECONDS)) {
+            return "did not stop within " + TIMEOUT_SECONDS + "s";
+        }
+        if (!watch.load.isCancelled()) {
+            return "was not reported as cancelled";
+        }
+        try {
+            watch.load.join();
+            return "completed with a model";
+        }
+        catch (CancellationException e) {
+            // Expected.
+        }
+        synchronized (watch) {
+            if (watch.endReached) {
+                return "decoded up to the end chunk";
+            }
+            if (watch.meshes != 1) {
+                return "decoded " + watch.meshes + " of " + (MESH_COPIES + 1) + " mesh chunks";
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Console the parser logs to while it loads. Cancels the load once it reports its first mesh chunk, then
+     * counts the chunks it still goes on to, until it reports that it stopped.
+     */
+    private static class Watch extends OutputStream {
+        final CountDownLatch started = new CountDownLatch(1);
+        final CountDownLatch stopped = new CountDownLatch(1);
+        volatile CompletableFuture<M3DJ_Model> load;
+        int meshes;
+        boolean endReached;
+
+        private final StringBuilder line = new StringBuilder();
+
+        @Override
+        public synchronized void write(int b) {
+            if (b != '\n') {
+                line.append((char) b);
+                return;
+            }
+            String message = line.toString();
+            line.setLength(0);
+
+            if (message.endsWith(CHUNK_MESSAGE + "MESH")) {
+                meshes++;
+                if (meshes == 1) {
+                    try {
+                        // The load may report its first chunks before LoadFileAsync has returned its future.
+                        started.await();
+                    }
+                    catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                    load.cancel(true);
+                }
+            }
+            else if (message.endsWith(CHUNK_MESSAGE + "OMD3")) {
+                endReached = true;
+                stopped.countDown();
+            }
+            else if (message.contains(CANCELLED_MESSAGE)) {
+                stopped.countDown();
+            }
+        }
+    }
+
+    /**
+     * @return The uncompressed chunks of a model file, without its preview.
+     */
+    private static byte[] Body(byte[] file) throws Exception {
+        ByteBuffer data = ByteBuffer.wrap(file).order(ByteOrder.LITTLE_ENDIAN);
+        int offset = 8;
+        if (Magic(file, offset).equals("PRVW")) {
+            offset += data.getInt(offset + 4);
+        }
+        if (Magic(file, offset).equals("HEAD")) {
+            return Arrays.copyOfRange(file, offset, file.length);
+        }
+
+        Inflater inflater = new Inflater();
+        inflater.setInput(file, offset, file.length - offset);
+        byte[] body = new byte[file.length * 4];
+        int length = 0;
+        while (!inflater.finished()) {
+            if (length == body.length) {
+                body = Arrays.copyOf(body, body.length * 2);
+            }
+            length += inflater.inflate(body, length, body.length - length);
+        }
+        inflater.end();
+        return Arrays.copyOf(body, length);
+    }
+
+    /**
+     * @return The body with the given number of copies of its first chunk of the given magic inserted after it.
+     */
+    private static byte[] Repeat(byte[] body, String magic, int copies) {
+        ByteBuffer data = ByteBuffer.wrap(body).order(ByteOrder.LITTLE_ENDIAN);
+        int chunk = 0;
+        while (!Magic(body, chunk).equals(magic)) {
+            chunk += data.getInt(chunk + 4);
+        }
+        int size = data.getInt(chunk + 4);
+
+        ByteBuffer repeated = ByteBuffer.allocate(body.length + size * copies);
+        repeated.put(body, 0, chunk + size);
+        for (int i = 0; i < copies; i++) {
+            repeated.put(body, chunk, size);
+        }
+        repeated.put(body, chunk + size, body.length - chunk - size);
+        return repeated.array();
+    }
+
+    private static byte[] File(byte[] body) {
+        ByteBuffer file = ByteBuffer.allocate(8 + body.length).order(ByteOrder.LITTLE_ENDIAN);
+        file.put("3DMO".getBytes(StandardCharsets.US_ASCII)).putInt(file.capacity()).put(body);
+        return file.array();
+    }
+
+    private static String Magic(byte[] data, int offset) {
+        return new String(data, offset, 4, StandardCharsets.US_ASCII);
+    }
+}
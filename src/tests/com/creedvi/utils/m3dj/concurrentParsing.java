@@ -0,0 +1,132 @@
+package com.creedvi.utils.m3dj;
+
+import com.creedvi.utils.m3dj.io.Tracelog;
+import com.creedvi.utils.m3dj.model.M3DJ_Model;
+import com.creedvi.utils.m3dj.model.chunks.*;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Loads every asset from many threads at once through a single shared parser and checks each result against a
+ * model loaded beforehand on its own. A separate thread keeps reconfiguring the parser with options that must not
+ * change the decoded model while the loads run.
+ */
+public class concurrentParsing {
+
+    private static final int THREADS = 16;
+    private static final int ROUNDS = 8;
+
+    public static void main(String[] args) throws Exception {
+        int failCount = 0;
+
+        File[] files = new File("assets").listFiles((dir, name) -> name.endsWith(".m3d"));
+        if (files == null || files.length == 0) {
+            System.out.println("M3D-J :: TEST :: No model files found in assets.\nExiting...");
+            return;
+        }
+        Arrays.sort(files);
+
+        HashMap<String, String> expected = new HashMap<>();
+        M3DJ reference = new M3DJ(Tracelog.LogLevel.LEVEL_ERROR);
+        for (File file : files) {
+            expected.put(file.getPath(), Summarize(reference.LoadFile(file.getPath())));
+        }
+
+        M3DJ parser = new M3DJ(Tracelog.LogLevel.LEVEL_ERROR);
+
+        ArrayList<String> loads = new ArrayList<>();
+        for (int i = 0; i < ROUNDS; i++) {
+            for (File file : files) {
+                loads.add(file.getPath());
+            }
+        }
+        Collections.shuffle(loads);
+
+        Thread reconfigure = new Thread(() -> {
+            boolean b = false;
+            while (!Thread.currentThread().isInterrupted()) {
+                b = !b;
+                parser.EnableParallelDecoding(b);
+                parser.EnablePipelining(!b);
+                parser.EnableMemoryMapping(b);
+                Thread.onSpinWait();
+            }
+        });
+        reconfigure.setDaemon(true);
+        reconfigure.start();
+
+        ExecutorService pool = Executors.newFixedThreadPool(THREADS);
+        ArrayList<Future<String>> results = new ArrayList<>();
+        for (String path : loads) {
+            results.add(pool.submit(() -> Summarize(parser.LoadFile(path))));
+        }
+
+        for (int i = 0; i < loads.size(); i++) {
+            String path = loads.get(i);
+            String actual;
+            try {
+                actual = results.get(i).get();
+            }
+            catch (Exception e) {
+                actual = "exception: " + e.getCause();
+            }
+
+            if (!expected.get(path).equals(actual)) {
+                System.out.println("M3D-J :: TEST :: Model file (" + path + ") differs when loaded concurrently:" +
+                        "\n\texpected " + expected.get(path) + "\n\tactual   " + actual);
+                failCount++;
+            }
+        }
+
+        pool.shutdown();
+        reconfigure.interrupt();
+
+        System.out.println("M3D-J :: TEST :: " + failCount + " of " + loads.size() + " concurrent loads differed, using " + THREADS + " threads.");
+        if (failCount > 0) {
+            System.exit(1);
+        }
+    }
+
+    private static String Summarize(M3DJ_Model model) {
+        if (model == null) {
+            return "null";
+        }
+
+        double vertexSum = 0;
+        for (M3DJ_Vertex v : model.vertices) {
+            vertexSum += v.x + v.y * 3 + v.z * 5 + v.w * 7 + v.colorIndex * 11 + v.skinIndex * 13;
+        }
+        long faceSum = 0;
+        for (M3DJ_Face f : model.faces) {
+            for (int i = 0; i < 3; i++) {
+                faceSum += f.vertices[i] * 3L + f.normals[i] * 5L + f.texCoords[i] * 7L;
+            }
+            faceSum += f.materialId * 11L + f.paramId * 13L;
+        }
+        long colorSum = 0;
+        for (M3DJ_Color c : model.colors) {
+            colorSum += c.r + c.g * 3L + c.b * 5L + c.a * 7L;
+        }
+        double texCoordSum = 0;
+        for (M3DJ_TextureCoordinate t : model.textureMap) {
+            texCoordSum += t.u + t.v * 3;
+        }
+        StringBuilder materials = new StringBuilder();
+        for (M3DJ_Material m : model.materials) {
+            materials.append(m.name).append(':').append(m.properties.size()).append(';');
+        }
+
+        return model.header.title + " v=" + model.vertices.size() + "/" + vertexSum +
+                " f=" + model.faces.size() + "/" + faceSum +
+                " c=" + model.colors.size() + "/" + colorSum +
+                " t=" + model.textureMap.size() + "/" + texCoordSum +
+                " m=" + materials;
+    }
+}
@@ -0,0 +1,270 @@
+package com.creedvi.utils.m3dj;
+
+import com.creedvi.utils.m3dj.M3DJ_HotReloader.Changes;
+import com.creedvi.utils.m3dj.io.Tracelog;
+import com.creedvi.utils.m3dj.model.M3DJ_Model;
+import com.creedvi.utils.m3dj.model.chunks.*;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+import java.util.zip.Inflater;
+
+/**
+ * Watches an uncompressed copy of a test model with a hot reloader, rewrites one chunk of it at a time and checks
+ * the changes reported for each rewrite, which parts of the model were swapped and which were kept, and that the
+ * patched model matches the file loaded from scratch. A file that is only partly written must leave the model as
+ * it is.
+ */
+public class hotReloadParsing {
+
+    // Has a colour map, several materials and a mesh.
+    private static final String MODEL = "assets/mobs_dwarves_character.m3d";
+
+    private static final int TIMEOUT_SECONDS = 10;
+    private static final int QUIET_MILLISECONDS = 500;
+
+    private static int failCount = 0;
+    private static int checkCount = 0;
+
+    private static final LinkedBlockingQueue<Integer> reported = new LinkedBlockingQueue<>();
+
+    public static void main(String[] args) throws Exception {
+        M3DJ parser = new M3DJ(Tracelog.LogLevel.LEVEL_ERROR);
+        Path directory = Files.createTempDirectory("m3dj-hot");
+        Path file = directory.resolve("model.m3d");
+        byte[] body = Body(Files.readAllBytes(Paths.get(MODEL)));
+        Write(file, body);
+
+        try (M3DJ_HotReloader reloader = new M3DJ_HotReloader(parser)) {
+            M3DJ_Model model = reloader.Watch(file.toString());
+            if (model == null) {
+                System.out.println("M3D-J :: TEST :: Model file (" + MODEL + ") could not be watched.\nExiting...");
+                System.exit(1);
+            }
+            reloader.AddListener((fileName, patched, changes) -> reported.add(changes));
+            int nameSize = model.header.SI_T.size;
+
+            // A vertex edit only replaces the vertices.
+            body[Find(body, "VRTS", 0) + 8] ^= 0x01;
+            Check(reloader, parser, file, body, model, "vertex", Changes.VERTICES);
+
+            // Vertices and materials hold colours looked up in the colour map.
+            body[Find(body, "CMAP", 0) + 8] ^= 0x01;
+            Check(reloader, parser, file, body, model, "colour map", Changes.COLOR_MAP | Changes.VERTICES | Changes.MATERIALS);
+
+            // A property edit keeps the material names, so the faces keep their material indices.
+            int material = Find(body, "MTRL", 0);
+            body[material + Size(body, material) - 1] ^= 0x01;
+            Check(reloader, parser, file, body, model, "material property", Changes.MATERIALS);
+
+            // Swapping the names of two materials moves the faces to the other material.
+            int second = Find(body, "MTRL", material + Size(body, material));
+            for (int i = 0; i < nameSize; i++) {
+                byte name = body[material + 8 + i];
+                body[material + 8 + i] = body[second + 8 + i];
+                body[second + 8 + i] = name;
+            }
+            Check(reloader, parser, file, body, model, "material name", Changes.MATERIALS | Changes.MESH);
+
+            // Every chunk is read through the header, so a header edit reloads the whole model.
+            body[Find(body, "HEAD", 0) + 8] ^= 0x01;
+            Check(reloader, parser, file, body, model, "header", Changes.ALL);
+
+            // A file cut short, as while an editor writes it, leaves the model alone.
+            M3DJ_Model before = Copy(model);
+            byte[] complete = File(body);
+            Files.write(file, Arrays.copyOf(complete, complete.length / 2));
+            int changes = reloader.Reload(file.toString());
+            Integer notified = reported.poll(QUIET_MILLISECONDS, TimeUnit.MILLISECONDS);
+            Check("partial write", changes == 0 && notified == null && Same(before, model));
+
+            // Finishing the write restores the content the model was last patched from.
+            Write(file, body);
+            changes = reloader.Reload(file.toString());
+            notified = reported.poll(QUIET_MILLISECONDS, TimeUnit.MILLISECONDS);
+            Check("completed write", changes == 0 && notified == null && Same(before, model));
+        }
+        finally {
+            try (Stream<Path> files = Files.walk(directory)) {
+                files.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+            }
+        }
+
+        System.out.println("M3D-J :: TEST :: " + failCount + " of " + checkCount + " hot reload checks failed.");
+        if (failCount > 0) {
+            System.exit(1);
+        }
+    }
+
+    /**
+     * Writes the edited file and checks the reported changes, which parts of the model were swapped, and that the
+     * patched model matches the file loaded from scratch.
+     */
+    private static void Check(M3DJ_HotReloader reloader, M3DJ parser, Path file, byte[] body, M3DJ_Model model,
+                              String name, int expected) throws Exception {
+        M3DJ_Model before = Copy(model);
+        Write(file, body);
+
+        // The watcher thread may patch the model before Reload does; either way the listener hears of it once.
+        reloader.Reload(file.toString());
+        Integer changes = reported.poll(TIMEOUT_SECONDS, TimeUnit.SECONDS);
+        if (changes == null || changes != expected) {
+            System.out.println("M3D-J :: TEST :: Hot reload of a " + name + " edit reported " + changes + ", expected " + expected + ".");
+            failCount++;
+        }
+
+        synchronized (model) {
+            Check(name + " header", (model.header != before.header) == ((expected & Changes.HEADER) != 0));
+            Check(name + " colour map", (model.colors != before.colors) == ((expected & Changes.COLOR_MAP) != 0));
+            Check(name + " texture map", (model.textureMap != before.textureMap) == ((expected & Changes.TEXTURE_MAP) != 0));
+            Check(name + " vertices", (model.vertices != before.vertices) == ((expected & Changes.VERTICES) != 0));
+            Check(name + " materials", (model.materials != before.materials) == ((expected & Changes.MATERIALS) != 0));
+            Check(name + " faces", (model.faces != before.faces) == ((expected & Changes.MESH) != 0));
+            Check(name + " patched model", Summarize(model).equals(Summarize(parser.LoadFile(file.toString()))));
+        }
+    }
+
+    private static void Check(String name, boolean passed) {
+        checkCount++;
+        if (!passed) {
+            System.out.println("M3D-J :: TEST :: Hot reload check failed: " + name + ".");
+            failCount++;
+        }
+    }
+
+    /**
+     * @return Model holding the same parts as the given one, to tell afterwards which parts were swapped.
+     */
+    private static M3DJ_Model Copy(M3DJ_Model model) {
+        M3DJ_Model copy = new M3DJ_Model();
+        synchronized (model) {
+            copy.header = model.header;
+            copy.colors = model.colors;
+            copy.textureMap = model.textureMap;
+            copy.vertices = model.vertices;
+            copy.materials = model.materials;
+            copy.faces = model.faces;
+        }
+        return copy;
+    }
+
+    private static boolean Same(M3DJ_Model before, M3DJ_Model model) {
+        synchronized (model) {
+            return model.header == before.header && model.colors == before.colors && model.textureMap == before.textureMap &&
+                   model.vertices == before.vertices && model.materials == before.materials && model.faces == before.faces;
+        }
+    }
+
+    /**
+     * @return The uncompressed chunks of a model file, without its preview.
+     */
+    private static byte[] Body(byte[] file) throws Exception {
+        ByteBuffer data = ByteBuffer.wrap(file).order(ByteOrder.LITTLE_ENDIAN);
+        int offset = 8;
+        if (Magic(file, offset).equals("PRVW")) {
+            offset += data.getInt(offset + 4);
+        }
+        if (Magic(file, offset).equals("HEAD")) {
+            return Arrays.copyOfRange(file, offset, file.length);
+        }
+
+        Inflater inflater = new Inflater();
+        inflater.setInput(file, offset, file.length - offset);
+        byte[] body = new byte[file.length * 4];
+        int length = 0;
+        while (!inflater.finished()) {
+            if (length == body.length) {
+                body = Arrays.copyOf(body, body.length * 2);
+            }
+            length += inflater.inflate(body, length, body.length - length);
+        }
+        inflater.end();
+        return Arrays.copyOf(body, length);
+    }
+
+    private static byte[] File(byte[] body) {
+        ByteBuffer file = ByteBuffer.allocate(8 + body.length).order(ByteOrder.LITTLE_ENDIAN);
+        file.put("3DMO".getBytes(StandardCharsets.US_ASCII)).putInt(file.capacity()).put(body);
+        return file.array();
+    }
+
+    /**
+     * Replaces the file at once, so the watcher thread never reads it half written.
+     */
+    private static void Write(Path file, byte[] body) throws Exception {
+        Path written = file.resolveSibling(file.getFileName() + ".tmp");
+        Files.write(written, File(body));
+        Files.move(written, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * @return Offset of the first chunk with the given magic at or after the given offset, or -1 if there is none.
+     */
+    private static int Find(byte[] body, String magic, int from) {
+        for (int i = from; i + 8 <= body.length && !Magic(body, i).equals("OMD3"); i += Size(body, i)) {
+            if (Magic(body, i).equals(magic)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static int Size(byte[] body, int chunk) {
+        return ByteBuffer.wrap(body).order(ByteOrder.LITTLE_ENDIAN).getInt(chunk + 4);
+    }
+
+    private static String Magic(byte[] data, int offset) {
+        return new String(data, offset, 4, StandardCharsets.US_ASCII);
+    }
+
+    private static String Summarize(M3DJ_Model model) {
+        if (model == null) {
+            return "null";
+        }
+
+        double vertexSum = 0;
+        for (M3DJ_Vertex v : model.vertices) {
+            vertexSum += v.x + v.y * 3 + v.z * 5 + v.w * 7 + v.colorIndex * 11 + v.skinIndex * 13;
+        }
+        long faceSum = 0;
+        for (M3DJ_Face f : model.faces) {
+            for (int i = 0; i < 3; i++) {
+                faceSum += f.vertices[i] * 3L + f.normals[i] * 5L + f.texCoords[i] * 7L;
+            }
+            faceSum += f.materialId * 11L + f.paramId * 13L;
+        }
+        long colorSum = 0;
+        for (M3DJ_Color c : model.colors) {
+            colorSum += c.r + c.g * 3L + c.b * 5L + c.a * 7L;
+        }
+        double texCoordSum = 0;
+        for (M3DJ_TextureCoordinate t : model.textureMap) {
+            texCoordSum += t.u + t.v * 3;
+        }
+        StringBuilder materials = new StringBuilder();
+        for (M3DJ_Material m : model.materials) {
+            materials.append(m.name).append(':');
+            for (M3DJ_Property p : m.properties) {
+                materials.append(p.format).append('=').append(p.GetPropertyValue()).append(',');
+            }
+            materials.append(';');
+        }
+
+        return model.header.title + " s=" + model.header.scale +
+                " v=" + model.vertices.size() + "/" + vertexSum +
+                " f=" + model.faces.size() + "/" + faceSum +
+                " c=" + model.colors.size() + "/" + colorSum +
+                " t=" + model.textureMap.size() + "/" + texCoordSum +
+                " m=" + materials;
+    }
+}
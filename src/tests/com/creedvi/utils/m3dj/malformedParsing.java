@@ -0,0 +1,132 @@
+package com.creedvi.utils.m3dj;
+
+import com.creedvi.utils.m3dj.io.Tracelog;
+import com.creedvi.utils.m3dj.model.M3DJ_Model;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.zip.DeflaterOutputStream;
+
+/**
+ * Loads malformed models through the stream readers, compressed and uncompressed, with and without pipelining,
+ * and checks that every load finishes, failing with a null model or an exception rather than blocking or running
+ * out of memory. Chunks claiming close to 2 GiB must not be allocated before their data arrives, so this is best
+ * run with a small heap, such as -Xmx256m.
+ */
+public class malformedParsing {
+
+    private static final int TIMEOUT_SECONDS = 10;
+
+    public static void main(String[] args) throws Exception {
+        int failCount = 0;
+        int loadCount = 0;
+
+        M3DJ parser = new M3DJ(Tracelog.LogLevel.LEVEL_ERROR);
+
+        byte[][] bodies = new byte[][] {
+                // Vertex chunk claiming far more data than the stream holds.
+                Concat(Header(), Chunk("VRTS", 0x7FFFFFF0, new byte[64])),
+                // Vertex chunk cut short by the end of the stream.
+                Concat(Header(), Chunk("VRTS", 1024 + 8, new byte[16])),
+                // Chunk size smaller than the chunk header.
+                Concat(Header(), Chunk("VRTS", 4, new byte[0])),
+                // No end chunk.
+                Header(),
+        };
+
+        ExecutorService pool = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable);
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        for (boolean pipelined : new boolean[] { false, true }) {
+            parser.EnablePipelining(pipelined);
+
+            for (boolean compressed : new boolean[] { false, true }) {
+                for (int i = 0; i < bodies.length; i++) {
+                    String name = "model " + i + (compressed ? ", compressed" : "") + (pipelined ? ", pipelined" : "");
+                    failCount += Load(pool, parser, name, File(compressed ? Compress(bodies[i]) : bodies[i])) ? 0 : 1;
+                    loadCount++;
+                }
+            }
+
+            // Preview claiming far more data than the stream holds.
+            String name = "preview" + (pipelined ? ", pipelined" : "");
+            failCount += Load(pool, parser, name, File(Concat(Chunk("PRVW", 0x7FFFFFF0, new byte[64]), Header()))) ? 0 : 1;
+            loadCount++;
+        }
+
+        System.out.println("M3D-J :: TEST :: " + failCount + " of " + loadCount + " malformed stream loads did not fail cleanly.");
+        if (failCount > 0) {
+            System.exit(1);
+        }
+    }
+
+    /**
+     * @return true if the load failed cleanly.
+     */
+    private static boolean Load(ExecutorService pool, M3DJ parser, String name, byte[] file) throws InterruptedException {
+        Future<M3DJ_Model> load = pool.submit(() -> parser.LoadStream(new ByteArrayInputStream(file)));
+
+        String outcome;
+        try {
+            M3DJ_Model model = load.get(TIMEOUT_SECONDS, TimeUnit.SECONDS);
+            outcome = model == null ? null : "loaded a model";
+        }
+        catch (TimeoutException e) {
+            outcome = "still blocked after " + TIMEOUT_SECONDS + "s";
+        }
+        catch (Exception e) {
+            outcome = e.getCause() instanceof Error ? "threw " + e.getCause() : null;
+        }
+
+        if (outcome != null) {
+            System.out.println("M3D-J :: TEST :: Malformed " + name + " " + outcome + ".");
+            return false;
+        }
+        return true;
+    }
+
+    private static byte[] Header() {
+        // Scale, bitfield and the four empty strings of the string table.
+        ByteBuffer payload = ByteBuffer.allocate(12).order(ByteOrder.LITTLE_ENDIAN);
+        payload.putFloat(1.0f).putInt(0);
+        return Chunk("HEAD", 8 + payload.capacity(), payload.array());
+    }
+
+    private static byte[] Chunk(String magic, int size, byte[] payload) {
+        ByteBuffer chunk = ByteBuffer.allocate(8 + payload.length).order(ByteOrder.LITTLE_ENDIAN);
+        chunk.put(magic.getBytes(StandardCharsets.US_ASCII)).putInt(size).put(payload);
+        return chunk.array();
+    }
+
+    private static byte[] Concat(byte[] first, byte[] second) {
+        byte[] result = new byte[first.length + second.length];
+        System.arraycopy(first, 0, result, 0, first.length);
+        System.arraycopy(second, 0, result, first.length, second.length);
+        return result;
+    }
+
+    private static byte[] Compress(byte[] body) throws Exception {
+        ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+        try (DeflaterOutputStream stream = new DeflaterOutputStream(compressed)) {
+            stream.write(body);
+        }
+        return compressed.toByteArray();
+    }
+
+    private static byte[] File(byte[] body) {
+        ByteBuffer file = ByteBuffer.allocate(8 + body.length).order(ByteOrder.LITTLE_ENDIAN);
+        file.put("3DMO".getBytes(StandardCharsets.US_ASCII)).putInt(file.capacity()).put(body);
+        return file.array();
+    }
+}
@@ -0,0 +1,81 @@
+package com.creedvi.utils.m3dj;
+
+import com.creedvi.utils.m3dj.io.Tracelog;
+import com.creedvi.utils.m3dj.model.M3DJ_Model;
+import com.creedvi.utils.m3dj.model.chunks.M3DJ_Header;
+
+import java.io.BufferedInputStream;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+
+/**
+ * Starts a second load from inside the callbacks of a visitor and of a progress listener, and checks that neither
+ * the outer nor the nested load is affected. Both models are compressed, so the nested load inflates on the thread
+ * the outer load is still inflating on.
+ */
+public class nestedParsing {
+
+    private static final String OUTER = "assets/CesiumMan.m3d";
+    private static final String INNER = "assets/suzanne.m3d";
+
+    private static int failCount = 0;
+
+    public static void main(String[] args) throws Exception {
+        M3DJ parser = new M3DJ(Tracelog.LogLevel.LEVEL_ERROR);
+        int outerFaces = parser.LoadFile(OUTER).faces.size();
+        int innerFaces = parser.LoadFile(INNER).faces.size();
+
+        for (boolean pipelined : new boolean[] { false, true }) {
+            parser.EnablePipelining(pipelined);
+            String mode = pipelined ? " (pipelined)" : "";
+
+            int[] faces = new int[1];
+            M3DJ_Visitor visitor = new M3DJ_Visitor() {
+                @Override
+                public void VisitHeader(M3DJ_Header header) {
+                    Check("nested load from a visitor" + mode, innerFaces, LoadNested(parser));
+                }
+
+                @Override
+                public void VisitFaces(int first, int count, int material, int parameter, int[] vertices, int[] texCoords, int[] normals) {
+                    faces[0] += count;
+                }
+            };
+
+            Check("visited file" + mode, outerFaces, parser.Visit(OUTER, visitor) ? faces[0] : -1);
+
+            faces[0] = 0;
+            try (InputStream stream = new BufferedInputStream(new FileInputStream(OUTER))) {
+                Check("visited stream" + mode, outerFaces, parser.Visit(stream, visitor) ? faces[0] : -1);
+            }
+
+            M3DJ_Model model = parser.LoadFileProgressive(OUTER, (stage, snapshot) ->
+                    Check("nested load from a progress listener" + mode, innerFaces, LoadNested(parser)));
+            Check("progressive file" + mode, outerFaces, model != null ? model.faces.size() : -1);
+        }
+
+        System.out.println("M3D-J :: TEST :: " + failCount + " nested load checks failed.");
+        if (failCount > 0) {
+            System.exit(1);
+        }
+    }
+
+    private static int LoadNested(M3DJ parser) {
+        try {
+            M3DJ_Model model = parser.LoadFile(INNER);
+            return model != null ? model.faces.size() : -1;
+        }
+        catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static void Check(String name, int expected, int actual) {
+        if (expected != actual) {
+            System.out.println("M3D-J :: TEST :: " + name + " read " + actual + " faces, expected " + expected + ".");
+            failCount++;
+        }
+    }
+}